@@ -28,7 +28,10 @@ import java.util.List;
 import java.util.Map;
 
 import org.apache.log4j.helpers.AppenderAttachableImpl;
+import org.apache.log4j.helpers.LogLog;
+import org.apache.log4j.helpers.RingBuffer;
 import org.apache.log4j.spi.AppenderAttachable;
+import org.apache.log4j.spi.Filter;
 import org.apache.log4j.spi.LoggingEvent;
 
 
@@ -48,6 +51,14 @@ import org.apache.log4j.spi.LoggingEvent;
  * <b>Important note:</b> The <code>AsyncAppender</code> can only be script
  * configured using the {@link org.apache.log4j.xml.DOMConfigurator}.
  * </p>
+ * <p>
+ * By default the events are kept in a list guarded by a monitor shared by
+ * all logging threads and the dispatcher. When the <b>WaitStrategy</b>
+ * option is set, events are instead published into a preallocated
+ * {@link RingBuffer} whose slots are claimed with a compare-and-set, so
+ * that logging threads never take a monitor. This mode requires JDK 1.5 or
+ * later.
+ * </p>
  *
  * @author Ceki G&uuml;lc&uuml;
  * @author Curt Arnold
@@ -99,6 +110,16 @@ public class AsyncAppender extends AppenderSkeleton
    */
   private boolean blocking = true;
 
+  /**
+   * Wait strategy of the ring buffer, null if the ring buffer is not used.
+   */
+  private String waitStrategy;
+
+  /**
+   * Ring buffer, set by activateOptions if a wait strategy is configured.
+   */
+  private volatile RingBuffer ring;
+
   /**
    * Create new instance.
    */
@@ -133,6 +154,79 @@ public class AsyncAppender extends AppenderSkeleton
     }
   }
 
+  /**
+   * {@inheritDoc}
+   */
+  public void activateOptions() {
+    if ((waitStrategy == null) || (ring != null)) {
+      return;
+    }
+
+    RingBuffer newRing;
+    try {
+      newRing =
+        new RingBuffer(
+          bufferSize,
+          RingBuffer.toWaitStrategy(waitStrategy, RingBuffer.BLOCK));
+    } catch (LinkageError e) {
+      LogLog.warn(
+        "The WaitStrategy option requires JDK 1.5 or later, ignoring it.", e);
+      return;
+    }
+
+    //
+    //   wake up the dispatcher so that it switches to the ring buffer
+    //
+    synchronized (buffer) {
+      ring = newRing;
+      buffer.notifyAll();
+    }
+  }
+
+  /**
+   * {@inheritDoc}
+   * <p>
+   * When the ring buffer is used, the threshold and filters are evaluated
+   * without synchronizing on this appender.
+   * </p>
+   */
+  public void doAppend(final LoggingEvent event) {
+    if (ring == null) {
+      super.doAppend(event);
+
+      return;
+    }
+
+    if (closed) {
+      LogLog.error(
+        "Attempted to append to closed appender named [" + name + "].");
+
+      return;
+    }
+
+    if (!isAsSevereAsThreshold(event.getLevel())) {
+      return;
+    }
+
+    Filter f = this.headFilter;
+
+FILTER_LOOP:
+    while (f != null) {
+      switch (f.decide(event)) {
+      case Filter.DENY:
+        return;
+
+      case Filter.ACCEPT:
+        break FILTER_LOOP;
+
+      case Filter.NEUTRAL:
+        f = f.getNext();
+      }
+    }
+
+    append(event);
+  }
+
   /**
    * {@inheritDoc}
    */
@@ -161,12 +255,24 @@ public class AsyncAppender extends AppenderSkeleton
     event.getRenderedMessage();
     event.getThrowableStrRep();
 
+    // The event may be recycled by the caller once this method returns.
+    final LoggingEvent retained = event.toImmutable();
+
+    RingBuffer r = ring;
+    if (r != null) {
+      if (!r.offer(retained, blocking)) {
+        r.discard(retained);
+      }
+
+      return;
+    }
+
     synchronized (buffer) {
       while (true) {
         int previousSize = buffer.size();
 
         if (previousSize < bufferSize) {
-          buffer.add(event);
+          buffer.add(retained);
 
           //
           //   if buffer had been empty
@@ -208,14 +314,14 @@ public class AsyncAppender extends AppenderSkeleton
         //   add event to discard map.
         //
         if (discard) {
-          String loggerName = event.getLoggerName();
+          String loggerName = retained.getLoggerName();
           DiscardSummary summary = (DiscardSummary) discardMap.get(loggerName);
 
           if (summary == null) {
-            summary = new DiscardSummary(event);
+            summary = new DiscardSummary(retained);
             discardMap.put(loggerName, summary);
           } else {
-            summary.add(event);
+            summary.add(retained);
           }
 
           break;
@@ -238,6 +344,10 @@ public class AsyncAppender extends AppenderSkeleton
       buffer.notifyAll();
     }
 
+    if (ring != null) {
+      ring.close();
+    }
+
     try {
       dispatcher.join();
     } catch (InterruptedException e) {
@@ -366,6 +476,9 @@ public class AsyncAppender extends AppenderSkeleton
    * before the calling thread is blocked (if blocking is true)
    * or until messages are summarized and discarded.  Changing
    * the size will not affect messages already in the buffer.
+   * When a wait strategy is set, the size is rounded up to the
+   * next power of two and only taken into account by
+   * {@link #activateOptions}.
    *
    * @param size buffer size, must be positive.
    */
@@ -421,6 +534,31 @@ public class AsyncAppender extends AppenderSkeleton
     return blocking;
   }
 
+  /**
+   * Sets how threads wait on the ring buffer: "spin", "yield",
+   * "park" or "block". Setting this option makes the appender use a
+   * lock-free ring buffer instead of the default event list once
+   * {@link #activateOptions} is called, which warns about unknown
+   * names and uses "block" instead.
+   *
+   * @since 1.2.18
+   * @param value wait strategy, null to keep the default event list.
+   */
+  public void setWaitStrategy(final String value) {
+    waitStrategy = value;
+  }
+
+  /**
+   * Gets the wait strategy of the ring buffer.
+   *
+   * @since 1.2.18
+   * @return the current value of the <b>WaitStrategy</b> option,
+   * may be null.
+   */
+  public String getWaitStrategy() {
+    return waitStrategy;
+  }
+
   /**
    * Summary of discarded logging events for a logger.
    */
@@ -445,6 +583,17 @@ public class AsyncAppender extends AppenderSkeleton
       count = 1;
     }
 
+    /**
+     * Create new instance.
+     *
+     * @param event most severe discarded event, may not be null.
+     * @param count number of discarded events.
+     */
+    public DiscardSummary(final LoggingEvent event, final int count) {
+      maxEvent = event;
+      this.count = count;
+    }
+
     /**
      * Add discarded event to summary.
      *
@@ -544,7 +693,7 @@ public class AsyncAppender extends AppenderSkeleton
             int bufferSize = buffer.size();
             isActive = !parent.closed;
 
-            while ((bufferSize == 0) && isActive) {
+            while ((bufferSize == 0) && isActive && (parent.ring == null)) {
               buffer.wait();
               bufferSize = buffer.size();
               isActive = !parent.closed;
@@ -587,10 +736,63 @@ public class AsyncAppender extends AppenderSkeleton
               }
             }
           }
+
+          if (isActive && (parent.ring != null) && (events == null)) {
+            dispatchRing(parent.ring);
+            isActive = false;
+          }
         }
       } catch (InterruptedException ex) {
         Thread.currentThread().interrupt();
       }
     }
+
+    /**
+     * Dispatch the events of the ring buffer until it is closed.
+     *
+     * @param ring ring buffer, may not be null.
+     */
+    private void dispatchRing(final RingBuffer ring) {
+      LoggingEvent[] events = new LoggingEvent[ring.getCapacity()];
+      int count;
+
+      while ((count = ring.take(events)) >= 0) {
+        synchronized (appenders) {
+          for (int i = 0; i < count; i++) {
+            appenders.appendLoopOnAppenders(events[i]);
+            events[i] = null;
+          }
+        }
+
+        //
+        //   report events discarded due to a full ring
+        //      once the events preceding them have been dispatched
+        //
+        if (ring.size() == 0) {
+          dispatchDiscardSummary(ring);
+        }
+      }
+
+      dispatchDiscardSummary(ring);
+    }
+
+    /**
+     * Dispatch a summary of the events discarded by the ring buffer, if any.
+     *
+     * @param ring ring buffer, may not be null.
+     */
+    private void dispatchDiscardSummary(final RingBuffer ring) {
+      int discarded = ring.getAndResetDiscardCount();
+      if (discarded > 0) {
+        LoggingEvent maxEvent = ring.getMaxDiscarded();
+        if (maxEvent != null) {
+          LoggingEvent summary =
+            new DiscardSummary(maxEvent, discarded).createEvent();
+          synchronized (appenders) {
+            appenders.appendLoopOnAppenders(summary);
+          }
+        }
+      }
+    }
   }
 }
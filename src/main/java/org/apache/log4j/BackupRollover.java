@@ -0,0 +1,115 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.log4j;
+
+import java.io.File;
+
+import org.apache.log4j.helpers.BackgroundWorker;
+import org.apache.log4j.helpers.FileCompressor;
+import org.apache.log4j.helpers.LogLog;
+
+/**
+   The <b>AsyncRollover</b>, <b>CompressBackups</b>,
+   <b>CompressionLevel</b> and <b>MaxPendingCompressions</b> options
+   of the appenders rolling their file over, {@link
+   RollingFileAppender} and {@link DailyRollingFileAppender}, together
+   with the background thread carrying out their rollovers.
+
+   @since 1.2.18 */
+final class BackupRollover {
+
+  /**
+     Are backup files renamed in the background? */
+  boolean asyncRollover = false;
+
+  /**
+     Are backup files compressed? */
+  boolean compressBackups = false;
+
+  /**
+     The level used to compress backup files. */
+  int compressionLevel = java.util.zip.Deflater.DEFAULT_COMPRESSION;
+
+  /**
+     Backup files are left uncompressed when more rollovers than this
+     are waiting. */
+  int maxPendingCompressions = 4;
+
+  /**
+     Runs the file operations of asynchronous rollovers. */
+  private BackgroundWorker worker;
+
+  /**
+     Are rollovers carried out in the background? Compressing backups
+     implies it.  */
+  boolean isAsync() {
+    return asyncRollover || compressBackups;
+  }
+
+  void setCompressionLevel(int compressionLevel) {
+    if(compressionLevel < -1 || compressionLevel > 9) {
+      LogLog.warn("Invalid compression level ["+compressionLevel+"].");
+      return;
+    }
+    this.compressionLevel = compressionLevel;
+  }
+
+  /**
+     Queue <code>task</code> for execution by the background thread of
+     the appender named <code>name</code>. Tasks run one at a time, in
+     order.  */
+  synchronized
+  void execute(Runnable task, String name) {
+    if(worker == null) {
+      worker = new BackgroundWorker("log4j rollover ["+name+"]",
+				    Thread.MIN_PRIORITY);
+    }
+    worker.execute(task);
+  }
+
+  /**
+     Compress <code>file</code> if <b>CompressBackups</b> is set. Must
+     only be called by tasks passed to {@link #execute}.  */
+  void compress(File file) {
+    if(!compressBackups) {
+      return;
+    }
+    BackgroundWorker w;
+    synchronized(this) {
+      w = worker;
+    }
+    if(w != null && w.size() > maxPendingCompressions) {
+      LogLog.warn("Too many pending rollovers, leaving ["+file+
+		  "] uncompressed.");
+      return;
+    }
+    FileCompressor.gzip(file, compressionLevel);
+  }
+
+  /**
+     Wait for the pending rollovers to complete.  */
+  void waitForCompletion() {
+    BackgroundWorker w;
+    synchronized(this) {
+      w = worker;
+    }
+    if(w != null) {
+      w.waitForCompletion();
+    }
+  }
+}
@@ -104,9 +104,26 @@ public class Category implements AppenderAttachable {
   /**
      The assigned level of this category.  The
      <code>level</code> variable need not be assigned a value in
-     which case it is inherited form the hierarchy.  */
+     which case it is inherited form the hierarchy.
+
+     <p>Subclasses should assign it through {@link #setLevel} so that
+     the enabled levels cached by the hierarchy are invalidated.  */
   volatile protected Level level;
 
+  /**
+     Marks {@link #enabledLevel} as not resolved. Its upper half is a
+     level generation never used by a hierarchy.  */
+  static final long UNRESOLVED = Long.MIN_VALUE;
+
+  /**
+     The lowest level integer for which this category is enabled,
+     taking both its effective level and the threshold of its
+     repository into account, in the lower 32 bits, and the level
+     generation of the hierarchy it was computed in, in the upper 32
+     bits. Only maintained when the repository is a {@link Hierarchy},
+     which recomputes it once the generation has moved on.  */
+  volatile long enabledLevel = UNRESOLVED;
+
   /**
      The parent of this category. All categories have at least one
      ancestor which is the root category. */
@@ -123,7 +140,7 @@ public class Category implements AppenderAttachable {
   protected LoggerRepository repository;
 
 
-  AppenderAttachableImpl aai;
+  volatile AppenderAttachableImpl aai;
 
   /** Additivity is set to true by default, that is children inherit
       the appenders of their ancestors by default. If this variable is
@@ -132,7 +149,7 @@ public class Category implements AppenderAttachable {
       of this category will inherit its appenders, unless the children
       have their additivity flag set to <code>false</code> too. See
       the user manual for more details. */
-  protected boolean additive = true;
+  volatile protected boolean additive = true;
 
   /**
      This constructor created a new <code>Category</code> instance and
@@ -194,20 +211,23 @@ public class Category implements AppenderAttachable {
      hierarchy circumventing any evaluation of whether to log or not
      to log the particular log request.
 
+     <p>No lock is taken while walking the hierarchy. Each category
+     publishes an immutable snapshot of its appenders whenever
+     appenders are added or removed, so concurrent configuration
+     changes are seen by the next logging request.
+
      @param event the event to log.  */
   public
   void callAppenders(LoggingEvent event) {
     int writes = 0;
 
     for(Category c = this; c != null; c=c.parent) {
-      // Protected against simultaneous call to addAppender, removeAppender,...
-      synchronized(c) {
-	if(c.aai != null) {
-	  writes += c.aai.appendLoopOnAppenders(event);
-	}
-	if(!c.additive) {
-	  break;
-	}
+      AppenderAttachableImpl appenders = c.aai;
+      if(appenders != null) {
+	writes += appenders.appendLoopOnAppenders(event);
+      }
+      if(!c.additive) {
+	break;
       }
     }
 
@@ -254,9 +274,7 @@ public class Category implements AppenderAttachable {
     @param message the message object to log. */
   public
   void debug(Object message) {
-    if(repository.isDisabled(Level.DEBUG_INT))
-      return;
-    if(Level.DEBUG.isGreaterOrEqual(this.getEffectiveLevel())) {
+    if(isEnabled(Level.DEBUG_INT)) {
       forcedLog(FQCN, Level.DEBUG, message, null);
     }
   }
@@ -273,9 +291,7 @@ public class Category implements AppenderAttachable {
    @param t the exception to log, including its stack trace.  */
   public
   void debug(Object message, Throwable t) {
-    if(repository.isDisabled(Level.DEBUG_INT))
-      return;
-    if(Level.DEBUG.isGreaterOrEqual(this.getEffectiveLevel()))
+    if(isEnabled(Level.DEBUG_INT))
       forcedLog(FQCN, Level.DEBUG, message, t);
   }
 
@@ -299,9 +315,7 @@ public class Category implements AppenderAttachable {
     @param message the message object to log */
   public
   void error(Object message) {
-    if(repository.isDisabled(Level.ERROR_INT))
-      return;
-    if(Level.ERROR.isGreaterOrEqual(this.getEffectiveLevel()))
+    if(isEnabled(Level.ERROR_INT))
       forcedLog(FQCN, Level.ERROR, message, null);
   }
 
@@ -316,9 +330,7 @@ public class Category implements AppenderAttachable {
    @param t the exception to log, including its stack trace.  */
   public
   void error(Object message, Throwable t) {
-    if(repository.isDisabled(Level.ERROR_INT))
-      return;
-    if(Level.ERROR.isGreaterOrEqual(this.getEffectiveLevel()))
+    if(isEnabled(Level.ERROR_INT))
       forcedLog(FQCN, Level.ERROR, message, t);
 
   }
@@ -359,9 +371,7 @@ public class Category implements AppenderAttachable {
     @param message the message object to log */
   public
   void fatal(Object message) {
-    if(repository.isDisabled(Level.FATAL_INT))
-      return;
-    if(Level.FATAL.isGreaterOrEqual(this.getEffectiveLevel()))
+    if(isEnabled(Level.FATAL_INT))
       forcedLog(FQCN, Level.FATAL, message, null);
   }
 
@@ -376,19 +386,27 @@ public class Category implements AppenderAttachable {
    @param t the exception to log, including its stack trace.  */
   public
   void fatal(Object message, Throwable t) {
-    if(repository.isDisabled(Level.FATAL_INT))
-      return;
-    if(Level.FATAL.isGreaterOrEqual(this.getEffectiveLevel()))
+    if(isEnabled(Level.FATAL_INT))
       forcedLog(FQCN, Level.FATAL, message, t);
   }
 
 
   /**
-     This method creates a new logging event and logs the event
+     This method creates a new logging event, or fills in the
+     calling thread's event when events are reused, and logs the event
      without further checks.  */
   protected
   void forcedLog(String fqcn, Priority level, Object message, Throwable t) {
-    callAppenders(new LoggingEvent(fqcn, this, level, message, t));
+    if(LogEventBase.isReuseEvents()) {
+      LoggingEvent event = LoggingEvent.obtain(fqcn, this, level, message, t);
+      try {
+	callAppenders(event);
+      } finally {
+	event.release();
+      }
+    } else {
+      callAppenders(new LoggingEvent(fqcn, this, level, message, t));
+    }
   }
 
 
@@ -660,9 +678,7 @@ public class Category implements AppenderAttachable {
     @param message the message object to log */
   public
   void info(Object message) {
-    if(repository.isDisabled(Level.INFO_INT))
-      return;
-    if(Level.INFO.isGreaterOrEqual(this.getEffectiveLevel()))
+    if(isEnabled(Level.INFO_INT))
       forcedLog(FQCN, Level.INFO, message, null);
   }
 
@@ -677,9 +693,7 @@ public class Category implements AppenderAttachable {
    @param t the exception to log, including its stack trace.  */
   public
   void info(Object message, Throwable t) {
-    if(repository.isDisabled(Level.INFO_INT))
-      return;
-    if(Level.INFO.isGreaterOrEqual(this.getEffectiveLevel()))
+    if(isEnabled(Level.INFO_INT))
       forcedLog(FQCN, Level.INFO, message, t);
   }
 
@@ -731,9 +745,7 @@ public class Category implements AppenderAttachable {
     *   */
   public
   boolean isDebugEnabled() {
-    if(repository.isDisabled( Level.DEBUG_INT))
-      return false;
-    return Level.DEBUG.isGreaterOrEqual(this.getEffectiveLevel());
+    return isEnabled(Level.DEBUG_INT);
   }
 
   /**
@@ -746,9 +758,7 @@ public class Category implements AppenderAttachable {
   */
   public
   boolean isEnabledFor(Priority level) {
-    if(repository.isDisabled(level.level))
-      return false;
-    return level.isGreaterOrEqual(this.getEffectiveLevel());
+    return isEnabled(level.level);
   }
 
   /**
@@ -760,9 +770,7 @@ public class Category implements AppenderAttachable {
   */
   public
   boolean isInfoEnabled() {
-    if(repository.isDisabled(Level.INFO_INT))
-      return false;
-    return Level.INFO.isGreaterOrEqual(this.getEffectiveLevel());
+    return isEnabled(Level.INFO_INT);
   }
 
 
@@ -776,10 +784,7 @@ public class Category implements AppenderAttachable {
      @since 0.8.4 */
   public
   void l7dlog(Priority priority, String key, Throwable t) {
-    if(repository.isDisabled(priority.level)) {
-      return;
-    }
-    if(priority.isGreaterOrEqual(this.getEffectiveLevel())) {
+    if(isEnabled(priority.level)) {
       String msg = getResourceBundleString(key);
       // if message corresponding to 'key' could not be found in the
       // resource bundle, then default to 'key'.
@@ -800,10 +805,7 @@ public class Category implements AppenderAttachable {
   */
   public
   void l7dlog(Priority priority, String key,  Object[] params, Throwable t) {
-    if(repository.isDisabled(priority.level)) {
-      return;
-    }
-    if(priority.isGreaterOrEqual(this.getEffectiveLevel())) {
+    if(isEnabled(priority.level)) {
       String pattern = getResourceBundleString(key);
       String msg;
       if(pattern == null)
@@ -819,10 +821,7 @@ public class Category implements AppenderAttachable {
    */
   public
   void log(Priority priority, Object message, Throwable t) {
-    if(repository.isDisabled(priority.level)) {
-      return;
-    }
-    if(priority.isGreaterOrEqual(this.getEffectiveLevel()))
+    if(isEnabled(priority.level))
       forcedLog(FQCN, priority, message, t);
   }
 
@@ -831,10 +830,7 @@ public class Category implements AppenderAttachable {
  */
   public
   void log(Priority priority, Object message) {
-    if(repository.isDisabled(priority.level)) {
-      return;
-    }
-    if(priority.isGreaterOrEqual(this.getEffectiveLevel()))
+    if(isEnabled(priority.level))
       forcedLog(FQCN, priority, message, null);
   }
 
@@ -849,10 +845,7 @@ public class Category implements AppenderAttachable {
      @param t The throwable of the logging request, may be null.  */
   public
   void log(String callerFQCN, Priority level, Object message, Throwable t) {
-    if(repository.isDisabled(level.level)) {
-      return;
-    }
-    if(level.isGreaterOrEqual(this.getEffectiveLevel())) {
+    if(isEnabled(level.level)) {
       forcedLog(callerFQCN, level, message, t);
     }
   }
@@ -960,7 +953,11 @@ public class Category implements AppenderAttachable {
      <p>Null values are admitted.  */
   public
   void setLevel(Level level) {
+    Level previous = this.level;
     this.level = level;
+    if(previous != level) {
+      fireLevelChanged();
+    }
   }
 
 
@@ -973,7 +970,35 @@ public class Category implements AppenderAttachable {
   */
   public
   void setPriority(Priority priority) {
-    this.level = (Level) priority;
+    setLevel((Level) priority);
+  }
+
+  /**
+     Let the hierarchy know that the effective level of this category
+     and its descendants may have changed.  */
+  private
+  void fireLevelChanged() {
+    if(repository instanceof Hierarchy) {
+      ((Hierarchy) repository).levelsChanged();
+    }
+  }
+
+  /**
+     Is this category enabled for the level integer passed as
+     parameter? This is the check performed by all the printing
+     methods.
+
+     <p>When attached to a {@link Hierarchy}, the outcome of walking
+     the hierarchy and of the repository threshold is cached, so that
+     a disabled request costs two volatile reads and comparisons.
+     Other repositories are consulted on every call.  */
+  final
+  boolean isEnabled(int level) {
+    LoggerRepository r = repository;
+    if(r instanceof Hierarchy) {
+      return level >= ((Hierarchy) r).getEnabledLevel(this);
+    }
+    return !r.isDisabled(level) && level >= getEffectiveLevel().level;
   }
 
 
@@ -1036,10 +1061,7 @@ public class Category implements AppenderAttachable {
     @param message the message object to log.  */
   public
   void warn(Object message) {
-    if(repository.isDisabled( Level.WARN_INT))
-      return;
-
-    if(Level.WARN.isGreaterOrEqual(this.getEffectiveLevel()))
+    if(isEnabled(Level.WARN_INT))
       forcedLog(FQCN, Level.WARN, message, null);
   }
 
@@ -1054,9 +1076,7 @@ public class Category implements AppenderAttachable {
    @param t the exception to log, including its stack trace.  */
   public
   void warn(Object message, Throwable t) {
-    if(repository.isDisabled(Level.WARN_INT))
-      return;
-    if(Level.WARN.isGreaterOrEqual(this.getEffectiveLevel()))
+    if(isEnabled(Level.WARN_INT))
       forcedLog(FQCN, Level.WARN, message, t);
   }
 }
@@ -29,6 +29,7 @@ import java.util.Calendar;
 import java.util.TimeZone;
 import java.util.Locale;
 
+import org.apache.log4j.helpers.FileCompressor;
 import org.apache.log4j.helpers.LogLog;
 import org.apache.log4j.spi.LoggingEvent;
 
@@ -183,6 +184,8 @@ public class DailyRollingFileAppender extends FileAppender {
 
   int checkPeriod = TOP_OF_TROUBLE;
 
+  private final BackupRollover rollover = new BackupRollover();
+
   // The gmtTimeZone is used only in computeCheckPeriod() method.
   static final TimeZone gmtTimeZone = TimeZone.getTimeZone("GMT");
 
@@ -219,6 +222,95 @@ public class DailyRollingFileAppender extends FileAppender {
     return datePattern;
   }
 
+  /**
+     Returns the value of the <b>AsyncRollover</b> option, which is
+     always true if <b>CompressBackups</b> is set.
+
+     @since 1.2.18 */
+  public boolean getAsyncRollover() {
+    return rollover.isAsync();
+  }
+
+  /**
+     The <b>AsyncRollover</b> option takes a boolean value. It is set
+     to <code>false</code> by default. If true, a rollover only renames
+     the current file to a temporary name and opens a fresh one while
+     logging is blocked. The temporary file is then
+     renamed to its dated name by a background thread.
+
+     @since 1.2.18 */
+  public void setAsyncRollover(boolean asyncRollover) {
+    rollover.asyncRollover = asyncRollover;
+  }
+
+  /**
+     Returns the value of the <b>CompressBackups</b> option.
+
+     @since 1.2.18 */
+  public boolean getCompressBackups() {
+    return rollover.compressBackups;
+  }
+
+  /**
+     The <b>CompressBackups</b> option takes a boolean value. It is set
+     to <code>false</code> by default. If true, each new backup file is
+     compressed with gzip, adding the ".gz" extension to its name, by
+     the low priority background thread of <b>AsyncRollover</b>, which
+     this option implies.
+
+     @since 1.2.18 */
+  public void setCompressBackups(boolean compressBackups) {
+    rollover.compressBackups = compressBackups;
+  }
+
+  /**
+     Returns the value of the <b>CompressionLevel</b> option.
+
+     @since 1.2.18 */
+  public int getCompressionLevel() {
+    return rollover.compressionLevel;
+  }
+
+  /**
+     The <b>CompressionLevel</b> option takes a value from 1, fastest,
+     to 9, smallest output. The default, -1, selects the default level
+     of the deflater.
+
+     @since 1.2.18 */
+  public void setCompressionLevel(int compressionLevel) {
+    rollover.setCompressionLevel(compressionLevel);
+  }
+
+  /**
+     Returns the value of the <b>MaxPendingCompressions</b> option.
+
+     @since 1.2.18 */
+  public int getMaxPendingCompressions() {
+    return rollover.maxPendingCompressions;
+  }
+
+  /**
+     The <b>MaxPendingCompressions</b> option bounds the backlog of the
+     background thread. A backup file is left uncompressed if more than
+     this number of rollovers are still waiting when its turn comes, so
+     that a burst of rollovers cannot keep the thread busy compressing
+     files indefinitely. The default is 4.
+
+     @since 1.2.18 */
+  public void setMaxPendingCompressions(int maxPendingCompressions) {
+    rollover.maxPendingCompressions = maxPendingCompressions;
+  }
+
+  /**
+     Close this appender and wait for any backup file still being renamed to
+     complete.
+
+     @since 1.2.18 */
+  public void close() {
+    super.close();
+    rollover.waitForCompletion();
+  }
+
   public void activateOptions() {
     super.activateOptions();
     if(datePattern != null && fileName != null) {
@@ -316,6 +408,12 @@ public class DailyRollingFileAppender extends FileAppender {
       return;
     }
 
+    if (getAsyncRollover()) {
+      rollOverAsync();
+      scheduledFilename = datedFilename;
+      return;
+    }
+
     // close current file, and rename it to datedFilename
     this.closeFile();
 
@@ -343,6 +441,41 @@ public class DailyRollingFileAppender extends FileAppender {
     scheduledFilename = datedFilename;
   }
 
+  /**
+     Move the current file aside and open a new one, leaving the
+     renaming to <code>scheduledFilename</code> to the background
+     thread.  */
+  private void rollOverAsync() {
+    final File pending = moveAside();
+    try {
+      this.setFile(fileName, true, this.bufferedIO, this.bufferSize);
+    }
+    catch(IOException e) {
+      errorHandler.error("setFile("+fileName+", true) call failed.");
+    }
+    if (pending != null) {
+      final File target = new File(scheduledFilename);
+      rollover.execute(new Runnable() {
+          public void run() {
+            if (target.exists()) {
+              target.delete();
+            }
+            File compressed =
+              new File(target.getPath() + FileCompressor.GZIP_EXTENSION);
+            if (compressed.exists()) {
+              compressed.delete();
+            }
+            if (pending.renameTo(target)) {
+              LogLog.debug(pending +" -> "+ target);
+              rollover.compress(target);
+            } else {
+              LogLog.error("Failed to rename ["+pending+"] to ["+target+"].");
+            }
+          }
+        }, name);
+    }
+  }
+
   /**
    * This method differentiates DailyRollingFileAppender from its
    * super class.
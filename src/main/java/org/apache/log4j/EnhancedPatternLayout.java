@@ -462,6 +462,12 @@ public class EnhancedPatternLayout extends Layout {
    */
   private boolean handlesExceptions;
 
+  /**
+   * True if a subclass replaces format(LoggingEvent).
+   */
+  private final boolean formatOverridden =
+    overridesFormat(this, EnhancedPatternLayout.class);
+
   /**
      Constructs a EnhancedPatternLayout using the DEFAULT_LAYOUT_PATTERN.
 
@@ -548,6 +554,25 @@ public class EnhancedPatternLayout extends Layout {
       return buf.toString();
   }
 
+  /**
+   * Appends a formatted logging event to a buffer without creating
+   * an intermediate string.
+   * @param event logging event to be formatted.
+   * @param output buffer receiving the formatted event.
+   * @since 1.2.18
+   */
+  public void format(final LoggingEvent event, final StringBuffer output) {
+      if (formatOverridden) {
+          super.format(event, output);
+          return;
+      }
+      for(PatternConverter c = head;
+          c != null;
+          c = c.next) {
+          c.format(output, event);
+      }
+  }
+
   /**
    * Will return false if any of the conversion specifiers in the pattern
    * handles {@link Exception Exceptions}.
@@ -25,6 +25,7 @@ import java.io.IOException;
 import java.io.InterruptedIOException;
 import java.io.Writer;
 
+import org.apache.log4j.helpers.ChannelWriter;
 import org.apache.log4j.helpers.LogLog;
 import org.apache.log4j.helpers.QuietWriter;
 import org.apache.log4j.spi.ErrorCode;
@@ -66,6 +67,20 @@ public class FileAppender extends WriterAppender {
    */
   protected int bufferSize = 8*1024;
 
+  /**
+     Do we write through a file channel? */
+  private boolean channelIO = false;
+
+  /**
+     Time in milliseconds after which buffered output is written out
+     in channel mode. */
+  private long flushInterval = 0;
+
+  /**
+     Writes out the output left buffered by the <b>FlushInterval</b>
+     option, or <code>null</code>. */
+  private Flusher flusher;
+
 
   /**
      The default constructor does not do anything.
@@ -175,11 +190,43 @@ public class FileAppender extends WriterAppender {
     }
   }
 
+  /**
+     Close the current file and rename it to a new temporary name in
+     the same directory, so that a fresh file can be opened under the
+     original name while the renamed file is dealt with in the
+     background.
+
+     @return the renamed file, or <code>null</code> if it could not be
+     renamed, in which case it is left closed under its original name.
+     @since 1.2.18 */
+  protected
+  File moveAside() {
+    closeFile();
+    File file = new File(fileName);
+    long n = System.currentTimeMillis();
+    File pending;
+    do {
+      pending = new File(fileName + "." + (n++) + ".pending");
+    } while(pending.exists());
+    if(file.renameTo(pending)) {
+      LogLog.debug("Renamed file " + file + " to " + pending);
+      return pending;
+    }
+    LogLog.error("Failed to rename ["+fileName+"] to ["+pending+"].");
+    return null;
+  }
+
  /**
      Closes the previously opened file.
   */
   protected
   void closeFile() {
+    synchronized(this) {
+      if(flusher != null) {
+	flusher = null;
+	notifyAll();
+      }
+    }
     if(this.qw != null) {
       try {
 	this.qw.close();
@@ -260,6 +307,62 @@ public class FileAppender extends WriterAppender {
     this.bufferSize = bufferSize;
   }
 
+  /**
+     Returns the value of the <b>ChannelIO</b> option.
+
+     @since 1.2.18 */
+  public
+  boolean getChannelIO() {
+    return channelIO;
+  }
+
+  /**
+     The <b>ChannelIO</b> option takes a boolean value. It is set to
+     <code>false</code> by default. If true, the output of the layout
+     is encoded into a direct buffer of <b>BufferSize</b> bytes, using
+     the character set named by the <b>Encoding</b> option, and written
+     to the file's {@link java.nio.channels.FileChannel}. No
+     <code>OutputStreamWriter</code> or <code>BufferedWriter</code> is
+     involved.
+
+     <p>The buffer is written out after each event if
+     <b>ImmediateFlush</b> is true, otherwise when it is full or, if
+     <b>FlushInterval</b> is set, once it has held output for that
+     long. <b>BufferedIO</b> has the same effect as setting
+     <b>ImmediateFlush</b> to false.
+
+     <p>Note: Actual opening of the file is made when {@link
+     #activateOptions} is called, not when the options are set.
+
+     @since 1.2.18 */
+  public
+  void setChannelIO(boolean channelIO) {
+    this.channelIO = channelIO;
+  }
+
+  /**
+     Returns the value of the <b>FlushInterval</b> option.
+
+     @since 1.2.18 */
+  public
+  long getFlushInterval() {
+    return flushInterval;
+  }
+
+  /**
+     The <b>FlushInterval</b> option takes a number of milliseconds
+     after which buffered output is written to the file in
+     <b>ChannelIO</b> mode, by the next event or, if none is logged,
+     by a background thread. It is ignored in other modes and unless
+     <b>ImmediateFlush</b> is false. The default, 0, only writes the
+     buffer out when it is full.
+
+     @since 1.2.18 */
+  public
+  void setFlushInterval(long flushInterval) {
+    this.flushInterval = flushInterval;
+  }
+
   /**
     <p>Sets and <i>opens</i> the file where the log output will
     go. The specified file must be writable.
@@ -286,6 +389,31 @@ public class FileAppender extends WriterAppender {
     }
 
     reset();
+    Writer fw = createFileWriter(fileName, append, bufferedIO, bufferSize);
+    this.setQWForFiles(fw);
+    if(fw instanceof ChannelWriter && flushInterval > 0 && !immediateFlush) {
+      flusher = new Flusher((ChannelWriter) fw, name != null ? name : fileName);
+      flusher.start();
+    }
+    this.fileName = fileName;
+    this.fileAppend = append;
+    this.bufferedIO = bufferedIO;
+    this.bufferSize = bufferSize;
+    writeHeader();
+    LogLog.debug("setFile ended");
+  }
+
+
+  /**
+     Opens <code>fileName</code> and returns the writer the quiet
+     writer will write to. Parent directories are created as needed.
+     Subclasses may override this method to write to the file by
+     other means.
+
+     @since 1.2.18 */
+  protected
+  Writer createFileWriter(String fileName, boolean append, boolean bufferedIO,
+			  int bufferSize) throws IOException {
     FileOutputStream ostream = null;
     try {
           //
@@ -310,20 +438,19 @@ public class FileAppender extends WriterAppender {
              throw ex;
           }
     }
-    Writer fw = createWriter(ostream);
-    if(bufferedIO) {
-      fw = new BufferedWriter(fw, bufferSize);
+    Writer fw;
+    if(channelIO) {
+      fw = new ChannelWriter(ostream.getChannel(), getEncoding(), bufferSize,
+			     flushInterval);
+    } else {
+      fw = createWriter(ostream);
+      if(bufferedIO) {
+	fw = new BufferedWriter(fw, bufferSize);
+      }
     }
-    this.setQWForFiles(fw);
-    this.fileName = fileName;
-    this.fileAppend = append;
-    this.bufferedIO = bufferedIO;
-    this.bufferSize = bufferSize;
-    writeHeader();
-    LogLog.debug("setFile ended");
+    return fw;
   }
 
-
   /**
      Sets the quiet writer being used.
 
@@ -344,5 +471,37 @@ public class FileAppender extends WriterAppender {
     this.fileName = null;
     super.reset();
   }
-}
 
+  /**
+     Writes out the output buffered by a {@link ChannelWriter} when no
+     event has done so within the flush interval. The thread ends once
+     it is no longer the flusher of the appender.  */
+  private
+  final
+  class Flusher extends Thread {
+
+    private final ChannelWriter writer;
+
+    Flusher(ChannelWriter writer, String label) {
+      super("FileAppender-flusher ["+label+"]");
+      setDaemon(true);
+      this.writer = writer;
+    }
+
+    public
+    void run() {
+      synchronized(FileAppender.this) {
+	while(flusher == this) {
+	  try {
+	    FileAppender.this.wait(flushInterval);
+	  } catch(InterruptedException e) {
+	    return;
+	  }
+	  if(flusher == this && writer.hasBufferedOutput()) {
+	    qw.flush();
+	  }
+	}
+      }
+    }
+  }
+}
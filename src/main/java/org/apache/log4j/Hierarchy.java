@@ -60,6 +60,10 @@ import org.apache.log4j.spi.ThrowableRenderer;
    to the provision node. Other descendants of the same ancestor add
    themselves to the previously created provision node.
 
+   <p>Loggers that already exist are looked up in a {@link LoggerIndex}
+   without taking any lock. Only the creation of a logger, along with
+   the maintenance of provision nodes, is serialized.
+
    @author Ceki G&uuml;lc&uuml;
 
 */
@@ -69,12 +73,19 @@ public class Hierarchy implements LoggerRepository, RendererSupport, ThrowableRe
   private Vector listeners;
 
   Hashtable ht;
+  /** Existing loggers, searchable without locking. Written under ht. */
+  private final LoggerIndex index = new LoggerIndex();
   Logger root;
   RendererMap rendererMap;
 
   int thresholdInt;
   Level threshold;
 
+  /**
+     Incremented, while holding the lock on <code>ht</code>, each
+     time a level or the threshold changes.  */
+  private volatile int levelGeneration;
+
   boolean emittedNoAppenderWarning = false;
   boolean emittedNoResourceBundleWarning = false;
 
@@ -127,7 +138,10 @@ public class Hierarchy implements LoggerRepository, RendererSupport, ThrowableRe
   public
   void clear() {
     //System.out.println("\n\nAbout to clear internal hash table.");
-    ht.clear();
+    synchronized(ht) {
+      ht.clear();
+      index.clear();
+    }
   }
 
   public
@@ -151,6 +165,10 @@ public class Hierarchy implements LoggerRepository, RendererSupport, ThrowableRe
   */
   public
   Logger exists(String name) {
+    Logger logger = index.get(name);
+    if(logger != null) {
+      return logger;
+    }
     Object o = ht.get(new CategoryKey(name));
     if(o instanceof Logger) {
       return (Logger) o;
@@ -184,9 +202,43 @@ public class Hierarchy implements LoggerRepository, RendererSupport, ThrowableRe
     if(l != null) {
       thresholdInt = l.level;
       threshold = l;
+      levelsChanged();
     }
   }
 
+  /**
+     Invalidate the enabled level cached by every logger in this
+     hierarchy, by moving to the next level generation. Called
+     whenever the level of a logger or the threshold of the hierarchy
+     changes.  */
+  void levelsChanged() {
+    synchronized(ht) {
+      int generation = levelGeneration + 1;
+      if(generation == (int) (Category.UNRESOLVED >>> 32)) {
+	generation++;
+      }
+      levelGeneration = generation;
+    }
+  }
+
+  /**
+     Return the lowest level integer for which <code>cat</code> is
+     enabled, computing and caching it unless it was cached in the
+     current level generation. A value computed while the levels
+     change is cached under the previous generation, so that it is
+     computed again on the next call.  */
+  int getEnabledLevel(Category cat) {
+    long cached = cat.enabledLevel;
+    int generation = levelGeneration;
+    if((int) (cached >>> 32) == generation) {
+      return (int) cached;
+    }
+    int effective = cat.getEffectiveLevel().level;
+    int enabled = (effective > thresholdInt) ? effective : thresholdInt;
+    cat.enabledLevel = ((long) generation << 32) | (enabled & 0xFFFFFFFFL);
+    return enabled;
+  }
+
   public
   void fireAddAppenderEvent(Category logger, Appender appender) {
     if(listeners != null) {
@@ -263,12 +315,16 @@ public class Hierarchy implements LoggerRepository, RendererSupport, ThrowableRe
   public
   Logger getLogger(String name, LoggerFactory factory) {
     //System.out.println("getInstance("+name+") called.");
+    // Fast path for existing loggers, no locking involved.
+    Logger logger = index.get(name);
+    if(logger != null) {
+      return logger;
+    }
+
     CategoryKey key = new CategoryKey(name);
     // Synchronize to prevent write conflicts. Read conflicts (in
     // getChainedLevel method) are possible only if variable
     // assignments are non-atomic.
-    Logger logger;
-
     synchronized(ht) {
       Object o = ht.get(key);
       if(o == null) {
@@ -276,6 +332,7 @@ public class Hierarchy implements LoggerRepository, RendererSupport, ThrowableRe
 	logger.setHierarchy(this);
 	ht.put(key, logger);
 	updateParents(logger);
+	index.put(name, logger);
 	return logger;
       } else if(o instanceof Logger) {
 	return (Logger) o;
@@ -286,6 +343,11 @@ public class Hierarchy implements LoggerRepository, RendererSupport, ThrowableRe
 	ht.put(key, logger);
 	updateChildren((ProvisionNode) o, logger);
 	updateParents(logger);
+	index.put(name, logger);
+	if(logger.level != null) {
+	  // the children now inherit the level of the new logger
+	  levelsChanged();
+	}
 	return logger;
       }
       else {
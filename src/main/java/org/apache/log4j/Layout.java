@@ -42,6 +42,22 @@ public abstract class Layout implements OptionHandler {
   public
   String format(LoggingEvent event);
 
+  /**
+     Format <code>event</code> and append the result to
+     <code>output</code>. The base class appends the string returned
+     by {@link #format(LoggingEvent)}. Layouts able to write directly
+     into the buffer override this method so that appenders need not
+     create an intermediate string for each event.
+
+     @since 1.2.18 */
+  public
+  void format(LoggingEvent event, StringBuffer output) {
+    String s = format(event);
+    if(s != null) {
+      output.append(s);
+    }
+  }
+
   /**
      Returns the content type output by this layout. The base class
      returns "text/plain". 
@@ -86,4 +102,18 @@ public abstract class Layout implements OptionHandler {
   public
   boolean ignoresThrowable();
 
+  /**
+     Returns <code>true</code> if the class of <code>layout</code>
+     overrides the {@link #format(LoggingEvent)} method declared by
+     <code>base</code>, in which case the overriding method must be
+     honoured by {@link #format(LoggingEvent, StringBuffer)} as well.  */
+  static
+  boolean overridesFormat(Layout layout, Class base) {
+    try {
+      return layout.getClass().getMethod("format",
+		      new Class[] {LoggingEvent.class}).getDeclaringClass() != base;
+    } catch(NoSuchMethodException e) {
+      return false;
+    }
+  }
 }
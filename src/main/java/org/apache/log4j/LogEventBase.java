@@ -2,6 +2,7 @@ package org.apache.log4j;
 
 import org.apache.log4j.helpers.Loader;
 import org.apache.log4j.helpers.LogLog;
+import org.apache.log4j.helpers.OptionConverter;
 import org.apache.log4j.spi.LocationInfo;
 import org.apache.log4j.spi.LoggerRepository;
 import org.apache.log4j.spi.RendererSupport;
@@ -22,6 +23,20 @@ import java.util.*;
  * To change this template use File | Settings | File Templates.
  */
 public class LogEventBase implements java.io.Serializable {
+    // Pinned so that adding methods does not change the serialized form.
+    static final long serialVersionUID = 2853204655171057426L;
+
+    /**
+     * System property enabling the reuse of logging events, see
+     * {@link #setReuseEvents}.
+     * @since 1.2.18
+     */
+    public static final String REUSE_EVENTS_KEY = "log4j.reuseEvents";
+
+    private static volatile boolean reuseEvents =
+      OptionConverter.toBoolean(
+        OptionConverter.getSystemProperty(REUSE_EVENTS_KEY, null), false);
+
     protected static final String TO_LEVEL = "toLevel";
     protected static final Class[] TO_LEVEL_PARAMS = new Class[] {int.class};
     protected static final Hashtable methodCache = new Hashtable(3); // use a tiny table
@@ -50,6 +65,9 @@ public class LogEventBase implements java.io.Serializable {
      *  to do it again.  Note that its value is always false when
      *  serialized. See also the getMDC and getMDCCopy methods.  */
     protected boolean mdcCopyLookupRequired = true;
+    /** Is mdcCopy shared with the MDC or other events? If so, it must
+     *  be copied before being modified. */
+    private transient boolean mdcCopyShared;
     /** The application supplied message of logging event. */
     protected transient Object message;
     /** The application supplied message rendered through the log4j
@@ -91,10 +109,146 @@ public class LogEventBase implements java.io.Serializable {
      * */
     public String categoryName;
 
+    /** Is this a per-thread event recycled after each logging request? */
+    private transient boolean reusable;
+
+    /** Is this reusable event currently filled in? */
+    private transient boolean inUse;
+
     public LogEventBase() {
         super();
     }
 
+    /**
+     * Are logging events reused? When enabled, {@link Category} fills
+     * in a per-thread event for each logging request and clears it as
+     * soon as all the appenders have been called, instead of
+     * allocating a new event. Appenders keeping a reference to an event
+     * beyond their <code>append</code> call must keep the result of
+     * {@link org.apache.log4j.spi.LoggingEvent#toImmutable} instead.
+     * All the appenders shipped with log4j do so.
+     *
+     * <p>Disabled by default, enabled by setting the
+     * <code>log4j.reuseEvents</code> system property to
+     * <code>true</code>.
+     *
+     * @since 1.2.18
+     */
+    public static boolean isReuseEvents() {
+      return reuseEvents;
+    }
+
+    /**
+     * Enable or disable the reuse of logging events.
+     * @param reuse true to reuse logging events.
+     * @since 1.2.18
+     */
+    public static void setReuseEvents(boolean reuse) {
+      reuseEvents = reuse;
+    }
+
+    /**
+     * Is this event recycled once the logging request completes?
+     * @since 1.2.18
+     */
+    public final boolean isReusable() {
+      return reusable;
+    }
+
+    /**
+     * Mark this event as recycled by its creator.
+     */
+    protected final void setReusable() {
+      reusable = true;
+    }
+
+    /**
+     * Claim this reusable event for a new logging request.
+     * @return false if the event is already in use, for instance when
+     * an appender logs from within its <code>append</code> method.
+     */
+    protected final boolean acquire() {
+      if(inUse) {
+        return false;
+      }
+      inUse = true;
+      return true;
+    }
+
+    /**
+     * Fill in the fields set when a logging request is issued.
+     */
+    protected final void fill(String fqnOfCategoryClass, Category logger,
+                              Priority level, Object message,
+                              Throwable throwable) {
+      this.fqnOfCategoryClass = fqnOfCategoryClass;
+      this.logger = logger;
+      this.categoryName = logger.getName();
+      this.level = level;
+      this.message = message;
+      if(throwable != null) {
+        this.throwableInfo = new ThrowableInformation(throwable, logger);
+      }
+      timeStamp = System.currentTimeMillis();
+    }
+
+    /**
+     * Clear a reusable event once the appenders are done with it. Does
+     * nothing for other events.
+     * @since 1.2.18
+     */
+    public final void release() {
+      if(!reusable) {
+        return;
+      }
+      logger = null;
+      ndc = null;
+      mdcCopy = null;
+      mdcCopyShared = false;
+      ndcLookupRequired = true;
+      mdcCopyLookupRequired = true;
+      message = null;
+      renderedMessage = null;
+      threadName = null;
+      throwableInfo = null;
+      fqnOfCategoryClass = null;
+      level = null;
+      timeStamp = 0;
+      locationInfo = null;
+      categoryName = null;
+      inUse = false;
+    }
+
+    /**
+     * Copy the state of this event into <code>copy</code>, resolving
+     * every field that depends on the calling thread.
+     * @param copy a newly created event.
+     */
+    protected final void copyInto(LogEventBase copy) {
+      getNDC();
+      getMDCCopy();
+      getThreadName();
+      getRenderedMessage();
+      copy.logger = logger;
+      copy.ndc = ndc;
+      copy.ndcLookupRequired = false;
+      if(mdcCopy != null) {
+        copy.mdcCopy = mdcCopy;
+        copy.mdcCopyShared = true;
+        mdcCopyShared = true;
+      }
+      copy.mdcCopyLookupRequired = false;
+      copy.message = message;
+      copy.renderedMessage = renderedMessage;
+      copy.threadName = threadName;
+      copy.throwableInfo = throwableInfo;
+      copy.fqnOfCategoryClass = fqnOfCategoryClass;
+      copy.level = level;
+      copy.timeStamp = timeStamp;
+      copy.locationInfo = locationInfo;
+      copy.categoryName = categoryName;
+    }
+
     /**
        Returns the time when the application started, in milliseconds
        elapsed since 01.01.1970.  */
@@ -163,20 +317,39 @@ public class LogEventBase implements java.io.Serializable {
     /**
        Obtain a copy of this thread's MDC prior to serialization or
        asynchronous logging.
+
+       <p>The MDC replaces its table instead of modifying it, so the
+       copy is the table itself. It is only cloned if a property of
+       this event is changed.
     */
     public
     void getMDCCopy() {
       if(mdcCopyLookupRequired) {
         mdcCopyLookupRequired = false;
-        // the clone call is required for asynchronous logging.
-        // See also bug #5932.
         Hashtable t = MDC.getContext();
         if(t != null) {
-      mdcCopy = (Hashtable) t.clone();
+          mdcCopy = t;
+          mdcCopyShared = true;
         }
       }
     }
 
+    /**
+     * Return the MDC copy of this event, ready to be modified.
+     */
+    private Hashtable getWritableMDCCopy() {
+      if (mdcCopy == null) {
+          getMDCCopy();
+      }
+      if (mdcCopy == null) {
+          mdcCopy = new Hashtable();
+      } else if (mdcCopyShared) {
+          mdcCopy = (Hashtable) mdcCopy.clone();
+          mdcCopyShared = false;
+      }
+      return mdcCopy;
+    }
+
     public
     String getRenderedMessage() {
        if(renderedMessage == null && message != null) {
@@ -322,13 +495,7 @@ public class LogEventBase implements java.io.Serializable {
      */
     public final void setProperty(final String propName,
                             final String propValue) {
-          if (mdcCopy == null) {
-              getMDCCopy();
-          }
-          if (mdcCopy == null) {
-              mdcCopy = new Hashtable();
-          }
-          mdcCopy.put(propName, propValue);
+          getWritableMDCCopy().put(propName, propValue);
     }
 
     /**
@@ -425,7 +592,7 @@ public class LogEventBase implements java.io.Serializable {
      */
     public LocationInfo getLocationInformation() {
       if(locationInfo == null) {
-        locationInfo = new LocationInfo(new Throwable(), getFQNOfLoggerClass());
+        locationInfo = LocationInfo.getLocationInfo(getFQNOfLoggerClass());
       }
       return locationInfo;
     }
@@ -476,12 +643,6 @@ public class LogEventBase implements java.io.Serializable {
        * @since 1.2.16
        */
       public Object removeProperty(String propName) {
-          if (mdcCopy == null) {
-              getMDCCopy();
-          }
-          if (mdcCopy == null) {
-              mdcCopy = new Hashtable();
-          }
-          return mdcCopy.remove(propName);
+          return getWritableMDCCopy().remove(propName);
       }
 }
@@ -23,6 +23,7 @@ import org.apache.log4j.spi.RepositorySelector;
 import org.apache.log4j.spi.DefaultRepositorySelector;
 import org.apache.log4j.spi.RootLogger;
 import org.apache.log4j.spi.NOPLoggerRepository;
+import org.apache.log4j.helpers.ConfigWatcher;
 import org.apache.log4j.helpers.Loader;
 import org.apache.log4j.helpers.OptionConverter;
 import org.apache.log4j.helpers.LogLog;
@@ -265,6 +266,7 @@ public class LogManager {
   public
   static
   void shutdown() {
+    ConfigWatcher.shutdown();
     getLoggerRepository().shutdown();
   }
 
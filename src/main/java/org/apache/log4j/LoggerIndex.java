@@ -0,0 +1,107 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.log4j;
+
+/**
+   LoggerIndex maps names to the loggers already created by a {@link
+   Hierarchy} and can be searched without holding any lock.
+
+   <p>Entries are immutable and are only ever added, by a single
+   writer holding the hierarchy lock, at the head of their bucket. A
+   reader may therefore fail to see a logger that was just added, in
+   which case it falls back to the locked lookup in the hierarchy, but
+   it never sees a partially constructed entry.
+
+   @since 1.2.18
+*/
+final class LoggerIndex {
+
+  private static final int INITIAL_CAPACITY = 64;
+
+  private static final class Entry {
+    final String name;
+    final int hash;
+    final Logger logger;
+    final Entry next;
+
+    Entry(String name, int hash, Logger logger, Entry next) {
+      this.name = name;
+      this.hash = hash;
+      this.logger = logger;
+      this.next = next;
+    }
+  }
+
+  /** The buckets; the length is always a power of two. */
+  private volatile Entry[] table = new Entry[INITIAL_CAPACITY];
+
+  /** Number of entries. Only accessed by the writer. */
+  private int count;
+
+  /**
+     Return the logger named <code>name</code>, or <code>null</code>
+     if it is not (yet) visible in this index.  */
+  Logger get(String name) {
+    int hash = name.hashCode();
+    Entry[] tab = table;
+    for(Entry e = tab[hash & (tab.length - 1)]; e != null; e = e.next) {
+      if(e.hash == hash && name.equals(e.name)) {
+	return e.logger;
+      }
+    }
+    return null;
+  }
+
+  /**
+     Add a newly created logger. Must be called while holding the
+     hierarchy lock, once the logger has been linked to its parent.  */
+  void put(String name, Logger logger) {
+    Entry[] tab = table;
+    if(count >= tab.length - (tab.length >>> 2)) {
+      tab = rehash(tab);
+    }
+    int hash = name.hashCode();
+    int i = hash & (tab.length - 1);
+    tab[i] = new Entry(name, hash, logger, tab[i]);
+    count++;
+    // The volatile write publishes the new entry to readers.
+    table = tab;
+  }
+
+  /**
+     Remove all entries. Must be called while holding the hierarchy
+     lock.  */
+  void clear() {
+    count = 0;
+    table = new Entry[INITIAL_CAPACITY];
+  }
+
+  private
+  static
+  Entry[] rehash(Entry[] tab) {
+    Entry[] newTab = new Entry[tab.length << 1];
+    int mask = newTab.length - 1;
+    for(int i = 0; i < tab.length; i++) {
+      for(Entry e = tab[i]; e != null; e = e.next) {
+	int j = e.hash & mask;
+	newTab[j] = new Entry(e.name, e.hash, e.logger, newTab[j]);
+      }
+    }
+    return newTab;
+  }
+}
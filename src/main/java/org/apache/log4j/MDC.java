@@ -36,6 +36,11 @@ import java.util.Hashtable;
  * child thread automatically inherits a <em>copy</em> of the mapped
  * diagnostic context of its parent.
  * <p/>
+ * <p>The context map of a thread is never modified once it has been
+ * stored: <code>put</code> and <code>remove</code> replace it with a
+ * modified copy. Logging events and child threads therefore share the
+ * map instead of copying it.</p>
+ *
  * <p>The MDC class requires JDK 1.2 or above. Under JDK 1.1 the MDC
  * will always return empty values but otherwise will not affect or
  * harm your application.</p>
@@ -122,7 +127,8 @@ public class MDC {
 
     /**
      * Get the current thread's MDC as a hashtable. This method is
-     * intended to be used internally.
+     * intended to be used internally. The returned table may be shared
+     * with logging events and must not be modified.
      */
     public static Hashtable getContext() {
         if (mdc != null) {
@@ -151,9 +157,13 @@ public class MDC {
             Hashtable ht = (Hashtable) ((ThreadLocalMap) tlm).get();
             if (ht == null) {
                 ht = new Hashtable(HT_SIZE);
-                ((ThreadLocalMap) tlm).set(ht);
+            } else if (o != null && ht.get(key) == o) {
+                return;
+            } else {
+                ht = (Hashtable) ht.clone();
             }
             ht.put(key, o);
+            ((ThreadLocalMap) tlm).set(ht);
         }
     }
 
@@ -173,11 +183,14 @@ public class MDC {
     private void remove0(String key) {
         if (!java1 && tlm != null) {
             Hashtable ht = (Hashtable) ((ThreadLocalMap) tlm).get();
-            if (ht != null) {
-                ht.remove(key);
-                // clean up if this was the last key
-                if (ht.isEmpty()) {
-                        clear0();
+            if (ht != null && ht.containsKey(key)) {
+                if (ht.size() == 1) {
+                    // clean up if this was the last key
+                    clear0();
+                } else {
+                    ht = (Hashtable) ht.clone();
+                    ht.remove(key);
+                    ((ThreadLocalMap) tlm).set(ht);
                 }
             }
         }
@@ -193,10 +206,8 @@ public class MDC {
 
     private void clear0() {
         if (!java1 && tlm != null) {
-            Hashtable ht = (Hashtable) ((ThreadLocalMap) tlm).get();
-            if (ht != null) {
-                ht.clear();
-            }
+            // The table may be shared, so it is dropped, not cleared.
+            ((ThreadLocalMap) tlm).set(null);
             if (removeMethod != null) {
                 // java 1.3/1.4 does not have remove - will suffer from a memory leak
                 try {
@@ -0,0 +1,163 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.log4j;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.Writer;
+
+import org.apache.log4j.helpers.CountingQuietWriter;
+import org.apache.log4j.helpers.LogLog;
+import org.apache.log4j.helpers.MappedFileWriter;
+import org.apache.log4j.helpers.OptionConverter;
+
+/**
+   MemoryMappedFileAppender appends log events to a file through a
+   memory mapped region of <b>RegionSize</b> bytes, 32MB by default. A
+   new region is mapped each time the previous one is full.
+
+   <p>Appending an event only copies its encoded bytes into memory
+   owned by the operating system, so events are visible to readers of
+   the file at once and survive a crash of the JVM, whatever the value
+   of <b>ImmediateFlush</b>. If <b>ForceInterval</b> is set, the
+   mapped region is also forced to the storage device on the first
+   event logged at least that many milliseconds after the previous
+   force, protecting recent events against a crash of the operating
+   system. <b>BufferedIO</b> and <b>BufferSize</b> are ignored.
+
+   <p>While the file is open, its length is rounded up to the end of
+   the mapped region. It is truncated to the length actually written
+   when the appender is closed.
+
+   <p>The file is not rolled over unless <b>MaxFileSize</b> is set, in
+   which case it is rolled over as by {@link RollingFileAppender}.
+   Some platforms do not allow a mapped file to be renamed until the
+   mapping has been garbage collected.
+
+   @since 1.2.18 */
+public class MemoryMappedFileAppender extends RollingFileAppender {
+
+  /** The default region size is 32MB. */
+  public static final int DEFAULT_REGION_SIZE = 32*1024*1024;
+
+  private int regionSize = DEFAULT_REGION_SIZE;
+
+  private long forceInterval = 0;
+
+  /** The writer of the file currently open. */
+  private MappedFileWriter mappedWriter;
+
+  /**
+     The default constructor creates an appender which does not roll
+     its file over.  */
+  public
+  MemoryMappedFileAppender() {
+    maxFileSize = Long.MAX_VALUE;
+  }
+
+  /**
+    Instantiate a <code>MemoryMappedFileAppender</code> and open the
+    file designated by <code>filename</code>.
+
+    <p>If the <code>append</code> parameter is true, the file will be
+    appended to. Otherwise, the file designated by
+    <code>filename</code> will be truncated before being opened.  */
+  public
+  MemoryMappedFileAppender(Layout layout, String filename, boolean append)
+                                                             throws IOException {
+    maxFileSize = Long.MAX_VALUE;
+    this.layout = layout;
+    this.setFile(filename, append, false, bufferSize);
+  }
+
+  /**
+     Returns the size in bytes of the mapped regions.  */
+  public
+  int getMappedRegionSize() {
+    return regionSize;
+  }
+
+  /**
+     Set the size in bytes of the mapped regions.
+
+     <p>This method is equivalent to {@link #setRegionSize} except
+     that it takes an <code>int</code>.  */
+  public
+  void setMappedRegionSize(int regionSize) {
+    this.regionSize = regionSize;
+  }
+
+  /**
+     The <b>RegionSize</b> option takes a size in bytes, which may be
+     suffixed by "KB", "MB" or "GB" as for the <b>MaxFileSize</b>
+     option. Values of 2GB and above are not supported.
+
+     <p>Note: The new size applies to files opened after this call.  */
+  public
+  void setRegionSize(String value) {
+    long size = OptionConverter.toFileSize(value, regionSize);
+    if(size <= 0 || size > Integer.MAX_VALUE) {
+      LogLog.warn("Invalid region size ["+value+"], using "+regionSize+".");
+      return;
+    }
+    regionSize = (int) size;
+  }
+
+  /**
+     Returns the value of the <b>ForceInterval</b> option.  */
+  public
+  long getForceInterval() {
+    return forceInterval;
+  }
+
+  /**
+     The <b>ForceInterval</b> option takes a number of milliseconds
+     after which the mapped region is forced to the storage device.
+     The default, 0, leaves writing the region back to the operating
+     system.  */
+  public
+  void setForceInterval(long forceInterval) {
+    this.forceInterval = forceInterval;
+  }
+
+  public
+  synchronized
+  void setFile(String fileName, boolean append, boolean bufferedIO, int bufferSize)
+                                                                 throws IOException {
+    super.setFile(fileName, append, bufferedIO, bufferSize);
+    // The length of a mapped file includes the unused part of its
+    // last region.
+    if(append) {
+      ((CountingQuietWriter) qw).setCount(mappedWriter.getLength());
+    }
+  }
+
+  /**
+     Map <code>fileName</code> instead of opening an output stream.  */
+  protected
+  Writer createFileWriter(String fileName, boolean append, boolean bufferedIO,
+			  int bufferSize) throws IOException {
+    File parentDir = new File(fileName).getParentFile();
+    if(parentDir != null && !parentDir.exists()) {
+      parentDir.mkdirs();
+    }
+    mappedWriter = new MappedFileWriter(fileName, append, getEncoding(),
+					regionSize, forceInterval);
+    return mappedWriter;
+  }
+}
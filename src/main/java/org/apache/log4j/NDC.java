@@ -20,12 +20,9 @@
 
 package org.apache.log4j;
 
-import java.util.Hashtable;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
 import java.util.Stack;
-import java.util.Enumeration;
-import java.util.Vector;
-
-import org.apache.log4j.helpers.LogLog;
 
 /**
    The NDC class implements <i>nested diagnostic contexts</i> as
@@ -80,13 +77,10 @@ import org.apache.log4j.helpers.LogLog;
    the same category) can still be distinguished because each client
    request will have a different NDC tag.
 
-   <p>Heavy duty systems should call the {@link #remove} method when
-   leaving the run method of a thread. This ensures that the memory
-   used by the thread can be freed by the Java garbage
-   collector. There is a mechanism to lazily remove references to dead
-   threads. In practice, this means that you can be a little sloppy
-   and sometimes forget to call {@link #remove} before exiting a
-   thread.
+   <p>The diagnostic context of a thread is stored in a {@link
+   ThreadLocal}, so it is reclaimed with the thread and threads never
+   contend for it. Threads of a pool should still call the {@link
+   #remove} method when they are done with a context.
    
    <p>A thread may inherit the nested diagnostic context of another
    (possibly parent) thread using the {@link #inherit inherit}
@@ -101,27 +95,24 @@ import org.apache.log4j.helpers.LogLog;
  
 public class NDC {
 
-  // The synchronized keyword is not used in this class. This may seem
-  // dangerous, especially since the class will be used by
-  // multiple-threads. In particular, all threads share the same
-  // hashtable (the "ht" variable). This is OK since java hashtables
-  // are thread safe. Same goes for Stacks.
-
-  // More importantly, when inheriting diagnostic contexts the child
-  // thread is handed a clone of the parent's NDC.  It follows that
-  // each thread has its own NDC (i.e. stack).
+  // Each thread's stack is only ever accessed by that thread, which
+  // finds it through a ThreadLocal without taking any shared lock.
+  // When inheriting diagnostic contexts the child thread is handed a
+  // clone of the parent's NDC.  It follows that each thread has its
+  // own NDC (i.e. stack).
 
-  static Hashtable ht = new Hashtable();
+  private static final ThreadLocal stacks = new ThreadLocal();
 
-  static int pushCounter = 0; // the number of times push has been called
-                              // after the latest call to lazyRemove
+  /** ThreadLocal.remove, which is only available in JDK 1.5 and later. */
+  private static Method removeMethod;
 
-  // The number of times we allow push to be called before we call lazyRemove
-  // 5 is a relatively small number. As such, lazyRemove is not called too
-  // frequently. We thus avoid the cost of creating an Enumeration too often.
-  // The higher this number, the longer is the avarage period for which all
-  // logging calls in all threads are blocked.
-  static final int REAP_THRESHOLD = 5;
+  static {
+    try {
+      removeMethod = ThreadLocal.class.getMethod("remove", null);
+    } catch (NoSuchMethodException e) {
+      // java prior 1.5
+    }
+  }
   
   // No instances allowed.
   private NDC() {}
@@ -131,10 +122,7 @@ public class NDC {
    *   @return NDC stack for current thread.
    */
   private static Stack getCurrentStack() {
-      if (ht != null) {
-          return (Stack) ht.get(Thread.currentThread());
-      }
-      return null;
+      return (Stack) stacks.get();
   }
 
 
@@ -206,7 +194,7 @@ public class NDC {
   static
   void inherit(Stack stack) {
     if(stack != null)
-      ht.put(Thread.currentThread(), stack);
+      stacks.set(stack);
   }
 
 
@@ -240,51 +228,6 @@ public class NDC {
       return stack.size();      
   }
 
-  private
-  static
-  void lazyRemove() {
-    if (ht == null) return;
-     
-    // The synchronization on ht is necessary to prevent JDK 1.2.x from
-    // throwing ConcurrentModificationExceptions at us. This sucks BIG-TIME.
-    // One solution is to write our own hashtable implementation.
-    Vector v;
-    
-    synchronized(ht) {
-      // Avoid calling clean-up too often.
-      if(++pushCounter <= REAP_THRESHOLD) {
-	return; // We release the lock ASAP.
-      } else {
-	pushCounter = 0; // OK let's do some work.
-      }
-
-      int misses = 0;
-      v = new Vector(); 
-      Enumeration enumeration = ht.keys();
-      // We give up after 4 straigt missses. That is 4 consecutive
-      // inspected threads in 'ht' that turn out to be alive.
-      // The higher the proportion on dead threads in ht, the higher the
-      // chances of removal.
-      while(enumeration.hasMoreElements() && (misses <= 4)) {
-	Thread t = (Thread) enumeration.nextElement();
-	if(t.isAlive()) {
-	  misses++;
-	} else {
-	  misses = 0;
-	  v.addElement(t);
-	}
-      }
-    } // synchronized
-
-    int size = v.size();
-    for(int i = 0; i < size; i++) {
-      Thread t = (Thread) v.elementAt(i);
-      LogLog.debug("Lazy NDC removal for thread [" + t.getName() + "] ("+ 
-		   ht.size() + ").");
-      ht.remove(t);
-    }
-  }
-
   /**
      Clients should call this method before leaving a diagnostic
      context.
@@ -340,8 +283,7 @@ public class NDC {
     if(stack == null) {
       DiagnosticContext dc = new DiagnosticContext(message, null);      
       stack = new Stack();
-      Thread key = Thread.currentThread();
-      ht.put(key, stack);
+      stacks.set(stack);
       stack.push(dc);
     } else if (stack.isEmpty()) {
       DiagnosticContext dc = new DiagnosticContext(message, null);            
@@ -355,31 +297,25 @@ public class NDC {
   /**
      Remove the diagnostic context for this thread.
 
-     <p>Each thread that created a diagnostic context by calling
-     {@link #push} should call this method before exiting. Otherwise,
-     the memory used by the <b>thread</b> cannot be reclaimed by the
-     VM.
-
-     <p>As this is such an important problem in heavy duty systems and
-     because it is difficult to always guarantee that the remove
-     method is called before exiting a thread, this method has been
-     augmented to lazily remove references to dead threads. In
-     practice, this means that you can be a little sloppy and
-     occasionally forget to call {@link #remove} before exiting a
-     thread. However, you must call <code>remove</code> sometime. If
-     you never call it, then your application is sure to run out of
-     memory.
-     
+     <p>The diagnostic context of a thread is reclaimed when the
+     thread ends. Threads which outlive their use, such as the threads
+     of a pool, should call this method once done so that their stack
+     does not outlive its use either.
   */
   static
   public
   void remove() {
-    if (ht != null) {
-        ht.remove(Thread.currentThread());
-    
-        // Lazily remove dead-thread references in ht.
-        lazyRemove();
+    if (removeMethod != null) {
+      try {
+        removeMethod.invoke(stacks, null);
+        return;
+      } catch (IllegalAccessException e) {
+        // should not happen
+      } catch (InvocationTargetException e) {
+        // should not happen
+      }
     }
+    stacks.set(null);
   }
 
   /**
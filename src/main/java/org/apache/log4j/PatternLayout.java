@@ -421,6 +421,10 @@ public class PatternLayout extends Layout {
 
   private PatternConverter head;
 
+  // true if a subclass replaces format(LoggingEvent)
+  private final boolean formatOverridden =
+    overridesFormat(this, PatternLayout.class);
+
   /**
      Constructs a PatternLayout using the DEFAULT_LAYOUT_PATTERN.
 
@@ -508,4 +512,20 @@ public class PatternLayout extends Layout {
     }
     return sbuf.toString();
   }
+
+  /**
+     Appends the output of the conversion pattern to
+     <code>output</code> without creating an intermediate string.
+
+     @since 1.2.18
+  */
+  public void format(LoggingEvent event, StringBuffer output) {
+    if(formatOverridden) {
+      super.format(event, output);
+      return;
+    }
+    for(PatternConverter c = head; c != null; c = c.next) {
+      c.format(output, event);
+    }
+  }
 }
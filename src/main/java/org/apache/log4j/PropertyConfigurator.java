@@ -36,6 +36,7 @@ import java.util.Iterator;
 import java.util.Map;
 
 import org.apache.log4j.config.PropertySetter;
+import org.apache.log4j.helpers.ConfigWatcher;
 import org.apache.log4j.helpers.FileWatchdog;
 import org.apache.log4j.helpers.LogLog;
 import org.apache.log4j.helpers.OptionConverter;
@@ -458,10 +459,12 @@ new PropertyConfigurator().doConfigure(inputStream,
 
   /**
      Read the configuration file <code>configFilename</code> if it
-     exists. Moreover, a thread will be created that will periodically
-     check if <code>configFilename</code> has been created or
-     modified. The period is determined by the <code>delay</code>
-     argument. If a change or file creation is detected, then
+     exists. Moreover, the {@link ConfigWatcher} thread shared by all
+     watched files will check if <code>configFilename</code> has been
+     created or modified. The file system is asked to report changes
+     when possible, otherwise the file is checked periodically and the
+     period is determined by the <code>delay</code> argument. If a
+     change or file creation is detected, then
      <code>configFilename</code> is read to configure log4j.
 
       @param configFilename A file in key=value format.
@@ -472,7 +475,7 @@ new PropertyConfigurator().doConfigure(inputStream,
   void configureAndWatch(String configFilename, long delay) {
     PropertyWatchdog pdog = new PropertyWatchdog(configFilename);
     pdog.setDelay(delay);
-    pdog.start();
+    ConfigWatcher.watch(pdog);
   }
 
 
@@ -772,6 +775,20 @@ new PropertyConfigurator().doConfigure(inputStream,
     }
   }
 
+  /**
+     Return the appender named <code>appenderName</code> as defined in
+     <code>props</code>, creating and configuring it unless an appender
+     of that name is already in the {@link #registry}. Allows
+     subclasses to reconfigure appenders one at a time.
+
+     @since 1.2.18 */
+  protected
+  Appender parseAppender(Properties props, String appenderName,
+			 LoggerRepository hierarchy) {
+    repository = hierarchy;
+    return parseAppender(props, appenderName);
+  }
+
   Appender parseAppender(Properties props, String appenderName) {
     Appender appender = registryGet(appenderName);
     if((appender != null)) {
@@ -27,6 +27,7 @@ import java.io.InterruptedIOException;
 import org.apache.log4j.helpers.OptionConverter;
 import org.apache.log4j.helpers.LogLog;
 import org.apache.log4j.helpers.CountingQuietWriter;
+import org.apache.log4j.helpers.FileCompressor;
 import org.apache.log4j.spi.LoggingEvent;
 
 /**
@@ -56,6 +57,8 @@ public class RollingFileAppender extends FileAppender {
 
   private long nextRollover = 0;
 
+  private final BackupRollover rollover = new BackupRollover();
+
   /**
      The default constructor simply calls its {@link
      FileAppender#FileAppender parents constructor}.  */
@@ -122,6 +125,11 @@ public class RollingFileAppender extends FileAppender {
      <p>If <code>MaxBackupIndex</code> is equal to zero, then the
      <code>File</code> is truncated with no backup files created.
 
+     <p>If the <b>AsyncRollover</b> option is set, <code>File</code>
+     is renamed to a temporary name and a new <code>File</code> is
+     created at once, while the backup files are renamed in the
+     background.
+
    */
   public // synchronization not necessary since doAppend is alreasy synched
   void rollOver() {
@@ -137,23 +145,15 @@ public class RollingFileAppender extends FileAppender {
     }
     LogLog.debug("maxBackupIndex="+maxBackupIndex);
 
+    if(maxBackupIndex > 0 && getAsyncRollover()) {
+      rollOverAsync();
+      return;
+    }
+
     boolean renameSucceeded = true;
     // If maxBackups <= 0, then there is no file renaming to be done.
     if(maxBackupIndex > 0) {
-      // Delete the oldest file, to keep Windows happy.
-      file = new File(fileName + '.' + maxBackupIndex);
-      if (file.exists())
-       renameSucceeded = file.delete();
-
-      // Map {(maxBackupIndex - 1), ..., 2, 1} to {maxBackupIndex, ..., 3, 2}
-      for (int i = maxBackupIndex - 1; i >= 1 && renameSucceeded; i--) {
-	file = new File(fileName + "." + i);
-	if (file.exists()) {
-	  target = new File(fileName + '.' + (i + 1));
-	  LogLog.debug("Renaming file " + file + " to " + target);
-	  renameSucceeded = file.renameTo(target);
-	}
-      }
+      renameSucceeded = shiftBackups(fileName, maxBackupIndex, "");
 
     if(renameSucceeded) {
       // Rename fileName to fileName.1
@@ -200,6 +200,70 @@ public class RollingFileAppender extends FileAppender {
     }
   }
 
+  /**
+     Move the current file aside and open a new one, leaving the
+     renaming of the backup files to the background thread.  */
+  private
+  void rollOverAsync() {
+    final File pending = moveAside();
+    try {
+      // If the file could not be moved aside, keep appending to it.
+      this.setFile(fileName, pending == null, bufferedIO, bufferSize);
+      if(pending != null) {
+        nextRollover = 0;
+      }
+    }
+    catch(IOException e) {
+        if (e instanceof InterruptedIOException) {
+            Thread.currentThread().interrupt();
+        }
+        LogLog.error("setFile("+fileName+", "+(pending == null)+") call failed.", e);
+    }
+    if(pending != null) {
+      final String baseName = fileName;
+      final int maxIndex = maxBackupIndex;
+      rollover.execute(new Runnable() {
+          public void run() {
+            File target = new File(baseName + "." + 1);
+            if(shiftBackups(baseName, maxIndex, "")
+               && shiftBackups(baseName, maxIndex, FileCompressor.GZIP_EXTENSION)
+               && pending.renameTo(target)) {
+              LogLog.debug("Renamed file " + pending + " to " + target);
+              rollover.compress(target);
+            } else {
+              LogLog.error("Failed to rename ["+pending+"] to ["+target+"].");
+            }
+          }
+        }, name);
+    }
+  }
+
+  /**
+     Delete the oldest backup file and map {(maxBackupIndex - 1), ...,
+     2, 1} to {maxBackupIndex, ..., 3, 2}, where backup <i>i</i> is
+     named <code>fileName.i</code> followed by <code>suffix</code>.
+     Returns false if a file could not be deleted or renamed.  */
+  private
+  static
+  boolean shiftBackups(String fileName, int maxBackupIndex, String suffix) {
+    boolean renameSucceeded = true;
+    // Delete the oldest file, to keep Windows happy.
+    File file = new File(fileName + '.' + maxBackupIndex + suffix);
+    if (file.exists())
+      renameSucceeded = file.delete();
+
+    // Map {(maxBackupIndex - 1), ..., 2, 1} to {maxBackupIndex, ..., 3, 2}
+    for (int i = maxBackupIndex - 1; i >= 1 && renameSucceeded; i--) {
+      file = new File(fileName + "." + i + suffix);
+      if (file.exists()) {
+        File target = new File(fileName + '.' + (i + 1) + suffix);
+        LogLog.debug("Renaming file " + file + " to " + target);
+        renameSucceeded = file.renameTo(target);
+      }
+    }
+    return renameSucceeded;
+  }
+
   public
   synchronized
   void setFile(String fileName, boolean append, boolean bufferedIO, int bufferSize)
@@ -260,6 +324,104 @@ public class RollingFileAppender extends FileAppender {
     maxFileSize = OptionConverter.toFileSize(value, maxFileSize + 1);
   }
 
+  /**
+     Returns the value of the <b>AsyncRollover</b> option, which is
+     always true if <b>CompressBackups</b> is set.
+
+     @since 1.2.18 */
+  public
+  boolean getAsyncRollover() {
+    return rollover.isAsync();
+  }
+
+  /**
+     The <b>AsyncRollover</b> option takes a boolean value. It is set
+     to <code>false</code> by default. If true, a rollover only renames
+     the current file to a temporary name and opens a fresh one while
+     logging is blocked. The backup files are then
+     shifted by a background thread, one rollover at a time.
+
+     @since 1.2.18 */
+  public
+  void setAsyncRollover(boolean asyncRollover) {
+    rollover.asyncRollover = asyncRollover;
+  }
+
+  /**
+     Returns the value of the <b>CompressBackups</b> option.
+
+     @since 1.2.18 */
+  public
+  boolean getCompressBackups() {
+    return rollover.compressBackups;
+  }
+
+  /**
+     The <b>CompressBackups</b> option takes a boolean value. It is set
+     to <code>false</code> by default. If true, each new backup file is
+     compressed with gzip, adding the ".gz" extension to its name, by
+     the low priority background thread of <b>AsyncRollover</b>, which
+     this option implies.
+
+     @since 1.2.18 */
+  public
+  void setCompressBackups(boolean compressBackups) {
+    rollover.compressBackups = compressBackups;
+  }
+
+  /**
+     Returns the value of the <b>CompressionLevel</b> option.
+
+     @since 1.2.18 */
+  public
+  int getCompressionLevel() {
+    return rollover.compressionLevel;
+  }
+
+  /**
+     The <b>CompressionLevel</b> option takes a value from 1, fastest,
+     to 9, smallest output. The default, -1, selects the default level
+     of the deflater.
+
+     @since 1.2.18 */
+  public
+  void setCompressionLevel(int compressionLevel) {
+    rollover.setCompressionLevel(compressionLevel);
+  }
+
+  /**
+     Returns the value of the <b>MaxPendingCompressions</b> option.
+
+     @since 1.2.18 */
+  public
+  int getMaxPendingCompressions() {
+    return rollover.maxPendingCompressions;
+  }
+
+  /**
+     The <b>MaxPendingCompressions</b> option bounds the backlog of the
+     background thread. A backup file is left uncompressed if more than
+     this number of rollovers are still waiting when its turn comes, so
+     that a burst of rollovers cannot keep the thread busy compressing
+     files indefinitely. The default is 4.
+
+     @since 1.2.18 */
+  public
+  void setMaxPendingCompressions(int maxPendingCompressions) {
+    rollover.maxPendingCompressions = maxPendingCompressions;
+  }
+
+  /**
+     Close this appender and wait for any backup files still being shifted to
+     complete.
+
+     @since 1.2.18 */
+  public
+  void close() {
+    super.close();
+    rollover.waitForCompletion();
+  }
+
   protected
   void setQWForFiles(Writer writer) {
      this.qw = new CountingQuietWriter(writer, errorHandler);
@@ -69,6 +69,18 @@ public class WriterAppender extends AppenderSkeleton {
   */
   protected QuietWriter qw;
 
+  private static final int BUF_SIZE = 256;
+  private static final int MAX_CAPACITY = 1024;
+
+  /**
+     The buffer each event is formatted into. Only used by the thread
+     holding this appender's lock.  */
+  private StringBuffer formatBuffer = new StringBuffer(BUF_SIZE);
+
+  // the writer last checked by writesBuffer() and the result
+  private QuietWriter checkedWriter;
+  private boolean bufferWritable;
+
 
   /**
      This default constructor does nothing.  */
@@ -298,6 +310,37 @@ public class WriterAppender extends AppenderSkeleton {
   }
 
 
+  /**
+     Returns <code>false</code> if <code>writer</code> must be given
+     strings because its class replaces {@link QuietWriter#write(String)}
+     only. The answer is remembered until {@link #qw} changes.  */
+  private
+  boolean writesBuffer(QuietWriter writer) {
+    if(writer != checkedWriter) {
+      checkedWriter = writer;
+      bufferWritable = !overridesWrite(writer);
+    }
+    return bufferWritable;
+  }
+
+  /**
+     Returns <code>true</code> if the class of <code>writer</code>
+     overrides {@link QuietWriter#write(String)} below the class
+     declaring {@link QuietWriter#write(StringBuffer)}.  */
+  static
+  boolean overridesWrite(QuietWriter writer) {
+    try {
+      Class c = writer.getClass();
+      Class string = c.getMethod("write",
+		      new Class[] {String.class}).getDeclaringClass();
+      Class buffer = c.getMethod("write",
+		      new Class[] {StringBuffer.class}).getDeclaringClass();
+      return string != buffer && buffer.isAssignableFrom(string);
+    } catch(NoSuchMethodException e) {
+      return false;
+    }
+  }
+
   /**
      Actual writing occurs here.
 
@@ -307,7 +350,19 @@ public class WriterAppender extends AppenderSkeleton {
      @since 0.9.0 */
   protected
   void subAppend(LoggingEvent event) {
-    this.qw.write(this.layout.format(event));
+    StringBuffer buf = formatBuffer;
+    if(buf.capacity() > MAX_CAPACITY) {
+      buf = new StringBuffer(BUF_SIZE);
+      formatBuffer = buf;
+    } else {
+      buf.setLength(0);
+    }
+    this.layout.format(event, buf);
+    if(writesBuffer(this.qw)) {
+      this.qw.write(buf);
+    } else {
+      this.qw.write(buf.toString());
+    }
 
     if(layout.ignoresThrowable()) {
       String[] s = event.getThrowableStrRep();
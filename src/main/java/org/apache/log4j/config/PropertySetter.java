@@ -22,6 +22,7 @@ package org.apache.log4j.config;
 import org.apache.log4j.Appender;
 import org.apache.log4j.Level;
 import org.apache.log4j.Priority;
+import org.apache.log4j.helpers.Loader;
 import org.apache.log4j.helpers.LogLog;
 import org.apache.log4j.helpers.OptionConverter;
 import org.apache.log4j.spi.OptionHandler;
@@ -34,7 +35,10 @@ import java.beans.PropertyDescriptor;
 import java.io.InterruptedIOException;
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
+import java.util.Collections;
 import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.Map;
 import java.util.Properties;
 
 /**
@@ -54,6 +58,12 @@ import java.util.Properties;
    will cause the invocations anObject.setName("Joe"), anObject.setAge(32),
    and setMale(true) if such methods exist with those signatures.
    Otherwise an {@link IntrospectionException} are thrown.
+
+   <p>The properties found for a class are shared by all the
+   PropertySetters of objects of that class, so that each class is
+   introspected once. Classes loaded by a class loader unknown to log4j
+   are introspected for every PropertySetter, so that they can be
+   unloaded.
   
    @author Anders Kristensen
    @since 1.1
@@ -61,6 +71,19 @@ import java.util.Properties;
 public class PropertySetter {
   protected Object obj;
   protected PropertyDescriptor[] props;
+
+  /**
+     The properties of {@link #props} by name, or null if
+     <code>props</code> was not set by {@link #introspect}.  */
+  private Map propsByName;
+
+  /**
+     Introspected properties by class. The map is replaced rather than
+     modified.  */
+  private static volatile Map introspected = Collections.EMPTY_MAP;
+
+  /** The maximum number of classes whose properties are remembered. */
+  static final int MAX_INTROSPECTED = 1024;
   
   /**
     Create a new PropertySetter for the specified Object. This is done
@@ -79,13 +102,28 @@ public class PropertySetter {
    */
   protected
   void introspect() {
-    try {
-      BeanInfo bi = Introspector.getBeanInfo(obj.getClass());
-      props = bi.getPropertyDescriptors();
-    } catch (IntrospectionException ex) {
-      LogLog.error("Failed to introspect "+obj+": " + ex.getMessage());
-      props = new PropertyDescriptor[0];
+    Class clazz = obj.getClass();
+    Map cache = introspected;
+    BeanProperties bean = (BeanProperties) cache.get(clazz);
+    if (bean == null) {
+      try {
+        BeanInfo bi = Introspector.getBeanInfo(clazz);
+        bean = new BeanProperties(bi.getPropertyDescriptors());
+      } catch (IntrospectionException ex) {
+        LogLog.error("Failed to introspect "+obj+": " + ex.getMessage());
+        props = new PropertyDescriptor[0];
+        return;
+      }
+      if (cache.size() < MAX_INTROSPECTED && Loader.isVisible(clazz)) {
+        synchronized (PropertySetter.class) {
+          Map copy = new HashMap(introspected);
+          copy.put(clazz, bean);
+          introspected = copy;
+        }
+      }
     }
+    props = bean.descriptors;
+    propsByName = bean.byName;
   }
   
 
@@ -292,7 +330,10 @@ public class PropertySetter {
   protected
   PropertyDescriptor getPropertyDescriptor(String name) {
     if (props == null) introspect();
-    
+
+    if (propsByName != null) {
+      return (PropertyDescriptor) propsByName.get(name);
+    }
     for (int i = 0; i < props.length; i++) {
       if (name.equals(props[i].getName())) {
 	return props[i];
@@ -307,4 +348,23 @@ public class PropertySetter {
       ((OptionHandler) obj).activateOptions();
     }
   }
+
+  /**
+     The properties of a class, indexed by name.  */
+  private
+  static
+  final
+  class BeanProperties {
+    final PropertyDescriptor[] descriptors;
+    final Map byName;
+
+    BeanProperties(PropertyDescriptor[] descriptors) {
+      this.descriptors = descriptors;
+      byName = new HashMap();
+      for (int i = descriptors.length - 1; i >= 0; i--) {
+        // the first of several properties of the same name wins
+        byName.put(descriptors[i].getName(), descriptors[i]);
+      }
+    }
+  }
 }
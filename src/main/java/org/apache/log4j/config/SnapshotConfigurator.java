@@ -0,0 +1,425 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.log4j.config;
+
+import org.apache.log4j.PropertyConfigurator;
+import org.apache.log4j.helpers.Loader;
+import org.apache.log4j.helpers.LogLog;
+import org.apache.log4j.helpers.OptionConverter;
+import org.apache.log4j.spi.Configurator;
+import org.apache.log4j.spi.LoggerRepository;
+import org.apache.log4j.xml.DOMConfigurator;
+import org.apache.log4j.xml.Log4jEntityResolver;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.NamedNodeMap;
+import org.w3c.dom.Node;
+import org.w3c.dom.NodeList;
+import org.xml.sax.ErrorHandler;
+import org.xml.sax.SAXParseException;
+
+import javax.xml.parsers.DocumentBuilder;
+import javax.xml.parsers.DocumentBuilderFactory;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.net.URLConnection;
+import java.util.ArrayList;
+import java.util.Enumeration;
+import java.util.List;
+import java.util.Properties;
+
+/**
+   Configures log4j from a snapshot of a configuration file, compiled
+   ahead of time, sparing the parsing and validation of the file at
+   startup.
+
+   <p>A snapshot is created from a properties or XML configuration
+   file with
+   <pre>
+     java org.apache.log4j.config.SnapshotConfigurator log4j.xml log4j.snapshot
+   </pre>
+   which parses and validates the file, checks that the classes it
+   names can be loaded and writes its contents in a binary form: the
+   properties, or the tree of XML elements with external entities
+   expanded. Variable substitution is still performed when the
+   snapshot is loaded, by the {@link PropertyConfigurator} or the
+   {@link DOMConfigurator} which is given the contents of the snapshot.
+
+   <p>{@link OptionConverter#selectAndConfigure(URL, String,
+   LoggerRepository)}, and thus the default initialization, uses this
+   configurator for files whose name ends with ".snapshot", so that
+   <code>-Dlog4j.configuration=log4j.snapshot</code> is enough to use
+   a snapshot. If the file the snapshot was compiled from has been
+   modified since, it is parsed instead of the snapshot.
+
+   @since 1.2.18 */
+public class SnapshotConfigurator implements Configurator {
+
+  /** "L4JS" */
+  static final int MAGIC = 0x4C344A53;
+  static final int VERSION = 1;
+
+  static final int PROPERTIES = 'P';
+  static final int XML = 'X';
+
+  static final int ELEMENT_NODE = 'E';
+  static final int TEXT_NODE = 'T';
+
+  public
+  SnapshotConfigurator() {
+  }
+
+  /**
+     Read the snapshot at <code>url</code>.  */
+  public
+  void doConfigure(URL url, LoggerRepository repository) {
+    LogLog.debug("Reading configuration snapshot from URL " + url);
+    InputStream istream = null;
+    try {
+      URLConnection uConn = url.openConnection();
+      uConn.setUseCaches(false);
+      istream = uConn.getInputStream();
+      doConfigure(istream, repository);
+    } catch(IOException e) {
+      if (e instanceof InterruptedIOException) {
+        Thread.currentThread().interrupt();
+      }
+      LogLog.error("Could not read configuration snapshot from URL [" + url + "].", e);
+    } finally {
+      if (istream != null) {
+        try {
+          istream.close();
+        } catch(IOException ignore) {
+        }
+      }
+    }
+  }
+
+  /**
+     Read a snapshot from <code>inputStream</code>.  */
+  public
+  void doConfigure(InputStream inputStream, LoggerRepository repository) {
+    try {
+      DataInputStream in = new DataInputStream(new BufferedInputStream(inputStream));
+      if (in.readInt() != MAGIC || in.readUnsignedByte() != VERSION) {
+        LogLog.error("[" + inputStream + "] is not a configuration snapshot of this log4j version.");
+        return;
+      }
+      String source = in.readUTF();
+      long lastModified = in.readLong();
+      URL sourceURL = toURL(source);
+      if (sourceURL != null && getLastModified(sourceURL) > lastModified) {
+        LogLog.debug("[" + source + "] is newer than its snapshot, parsing it.");
+        OptionConverter.selectAndConfigure(sourceURL, null, repository);
+        return;
+      }
+      int kind = in.readUnsignedByte();
+      if (kind == PROPERTIES) {
+        Properties props = new Properties();
+        int count = in.readInt();
+        for (int i = 0; i < count; i++) {
+          String key = in.readUTF();
+          props.setProperty(key, in.readUTF());
+        }
+        new PropertyConfigurator().doConfigure(props, repository);
+      } else if (kind == XML) {
+        Document doc = DocumentBuilderFactory.newInstance().newDocumentBuilder().newDocument();
+        Element root = (Element) readNode(in, doc);
+        doc.appendChild(root);
+        new DOMConfigurator().doConfigure(root, repository);
+      } else {
+        LogLog.error("Unknown kind of configuration snapshot [" + kind + "].");
+      }
+    } catch(IOException e) {
+      if (e instanceof InterruptedIOException) {
+        Thread.currentThread().interrupt();
+      }
+      LogLog.error("Could not read configuration snapshot.", e);
+    } catch(Exception e) {
+      LogLog.error("Could not configure from snapshot.", e);
+    }
+  }
+
+  /**
+     Compile the configuration file at <code>source</code> into a
+     snapshot written to <code>out</code>. XML files are recognized
+     by their ".xml" extension.
+
+     @return false if the configuration is not valid, in which case the
+     problems have been reported through {@link LogLog} and nothing has
+     been written. */
+  public
+  static
+  boolean compile(URL source, OutputStream out) throws Exception {
+    URLConnection uConn = source.openConnection();
+    uConn.setUseCaches(false);
+    long lastModified = uConn.getLastModified();
+    List errors = new ArrayList();
+    Properties props = null;
+    Element root = null;
+    InputStream istream = uConn.getInputStream();
+    try {
+      if (source.getFile().endsWith(".xml")) {
+        root = parse(istream, source, errors);
+        checkClasses(root, errors);
+      } else {
+        props = new Properties();
+        props.load(istream);
+        checkClasses(props, errors);
+      }
+    } finally {
+      istream.close();
+    }
+    if (!errors.isEmpty()) {
+      for (int i = 0; i < errors.size(); i++) {
+        LogLog.error(source + ": " + errors.get(i));
+      }
+      return false;
+    }
+
+    DataOutputStream dos = new DataOutputStream(new BufferedOutputStream(out));
+    dos.writeInt(MAGIC);
+    dos.writeByte(VERSION);
+    dos.writeUTF(source.toExternalForm());
+    dos.writeLong(lastModified);
+    if (root != null) {
+      dos.writeByte(XML);
+      writeNode(dos, root);
+    } else {
+      dos.writeByte(PROPERTIES);
+      dos.writeInt(props.size());
+      for (Enumeration e = props.propertyNames(); e.hasMoreElements(); ) {
+        String key = (String) e.nextElement();
+        dos.writeUTF(key);
+        dos.writeUTF(props.getProperty(key));
+      }
+    }
+    dos.flush();
+    return true;
+  }
+
+  /**
+     Parse and validate an XML configuration file the way the {@link
+     DOMConfigurator} does, recording errors instead of logging them.  */
+  private
+  static
+  Element parse(InputStream istream, URL source, final List errors) throws Exception {
+    DocumentBuilderFactory dbf = DocumentBuilderFactory.newInstance();
+    dbf.setValidating(true);
+    DocumentBuilder docBuilder = dbf.newDocumentBuilder();
+    docBuilder.setErrorHandler(new ErrorHandler() {
+      public void error(SAXParseException ex) {
+        errors.add("line " + ex.getLineNumber() + ": " + ex.getMessage());
+      }
+      public void fatalError(SAXParseException ex) {
+        error(ex);
+      }
+      public void warning(SAXParseException ex) {
+        LogLog.warn("line " + ex.getLineNumber() + ": " + ex.getMessage());
+      }
+    });
+    docBuilder.setEntityResolver(new Log4jEntityResolver());
+    org.xml.sax.InputSource inputSource = new org.xml.sax.InputSource(istream);
+    inputSource.setSystemId(source.toString());
+    return docBuilder.parse(inputSource).getDocumentElement();
+  }
+
+  private
+  static
+  void checkClasses(Element element, List errors) {
+    String className = element.getAttribute("class");
+    if (className.length() > 0) {
+      checkClass(className, errors);
+    }
+    NodeList children = element.getChildNodes();
+    for (int i = 0; i < children.getLength(); i++) {
+      if (children.item(i) instanceof Element) {
+        checkClasses((Element) children.item(i), errors);
+      }
+    }
+  }
+
+  /**
+     Check the classes of the appenders and of their layouts.  */
+  private
+  static
+  void checkClasses(Properties props, List errors) {
+    String prefix = "log4j.appender.";
+    for (Enumeration e = props.propertyNames(); e.hasMoreElements(); ) {
+      String key = (String) e.nextElement();
+      if (key.startsWith(prefix)) {
+        int dot = key.indexOf('.', prefix.length());
+        if (dot < 0 || key.substring(dot).equals(".layout")) {
+          checkClass(props.getProperty(key).trim(), errors);
+        }
+      }
+    }
+  }
+
+  private
+  static
+  void checkClass(String className, List errors) {
+    // names with variables are only known at runtime
+    if (className.indexOf("${") >= 0) {
+      return;
+    }
+    try {
+      Loader.loadClass(className);
+    } catch(ClassNotFoundException e) {
+      errors.add("class [" + className + "] not found.");
+    } catch(LinkageError e) {
+      errors.add("class [" + className + "] could not be loaded: " + e);
+    }
+  }
+
+  private
+  static
+  void writeNode(DataOutputStream dos, Element element) throws IOException {
+    dos.writeByte(ELEMENT_NODE);
+    dos.writeUTF(element.getTagName());
+    NamedNodeMap attributes = element.getAttributes();
+    dos.writeShort(attributes.getLength());
+    for (int i = 0; i < attributes.getLength(); i++) {
+      Node attribute = attributes.item(i);
+      dos.writeUTF(attribute.getNodeName());
+      dos.writeUTF(attribute.getNodeValue());
+    }
+    NodeList children = element.getChildNodes();
+    List kept = new ArrayList();
+    for (int i = 0; i < children.getLength(); i++) {
+      Node child = children.item(i);
+      if (child instanceof Element
+          || (child.getNodeType() == Node.TEXT_NODE
+              || child.getNodeType() == Node.CDATA_SECTION_NODE)
+             && child.getNodeValue().trim().length() > 0) {
+        kept.add(child);
+      }
+    }
+    dos.writeInt(kept.size());
+    for (int i = 0; i < kept.size(); i++) {
+      Node child = (Node) kept.get(i);
+      if (child instanceof Element) {
+        writeNode(dos, (Element) child);
+      } else {
+        dos.writeByte(TEXT_NODE);
+        dos.writeUTF(child.getNodeValue());
+      }
+    }
+  }
+
+  private
+  static
+  Node readNode(DataInputStream in, Document doc) throws IOException {
+    int type = in.readUnsignedByte();
+    if (type == TEXT_NODE) {
+      return doc.createTextNode(in.readUTF());
+    }
+    if (type != ELEMENT_NODE) {
+      throw new IOException("Unknown node type [" + type + "].");
+    }
+    Element element = doc.createElement(in.readUTF());
+    int attributes = in.readUnsignedShort();
+    for (int i = 0; i < attributes; i++) {
+      String name = in.readUTF();
+      element.setAttribute(name, in.readUTF());
+    }
+    int children = in.readInt();
+    for (int i = 0; i < children; i++) {
+      element.appendChild(readNode(in, doc));
+    }
+    return element;
+  }
+
+  /**
+     Return the time <code>url</code> was last modified, or 0 if it is
+     unknown or if <code>url</code> does not exist.  */
+  static
+  long getLastModified(URL url) {
+    if ("file".equals(url.getProtocol())) {
+      return new File(url.getFile()).lastModified();
+    }
+    try {
+      URLConnection uConn = url.openConnection();
+      uConn.setUseCaches(false);
+      long lastModified = uConn.getLastModified();
+      // close the connection opened by getLastModified
+      uConn.getInputStream().close();
+      return lastModified;
+    } catch(IOException e) {
+      if (e instanceof InterruptedIOException) {
+        Thread.currentThread().interrupt();
+      }
+      return 0;
+    }
+  }
+
+  private
+  static
+  URL toURL(String s) {
+    try {
+      return new URL(s);
+    } catch(MalformedURLException e) {
+      return null;
+    }
+  }
+
+  /**
+     Compile a configuration file into a snapshot.
+
+     <p>Usage: <code>java org.apache.log4j.config.SnapshotConfigurator
+     source snapshot</code>, where <code>source</code> is a file name
+     or a URL. Exits with a non-zero status if the configuration is not
+     valid.  */
+  public
+  static
+  void main(String[] args) throws Exception {
+    if (args.length != 2) {
+      System.err.println("Usage: java " + SnapshotConfigurator.class.getName()
+                         + " source snapshot");
+      System.exit(1);
+    }
+    URL source = toURL(args[0]);
+    if (source == null) {
+      source = new File(args[0]).getAbsoluteFile().toURL();
+    }
+    File snapshot = new File(args[1]);
+    File temp = new File(snapshot.getPath() + ".tmp");
+    OutputStream out = new FileOutputStream(temp);
+    boolean valid;
+    try {
+      valid = compile(source, out);
+    } finally {
+      out.close();
+    }
+    if (!valid || (snapshot.exists() && !snapshot.delete()) || !temp.renameTo(snapshot)) {
+      temp.delete();
+      System.err.println("Could not write snapshot [" + snapshot + "].");
+      System.exit(1);
+    }
+  }
+}
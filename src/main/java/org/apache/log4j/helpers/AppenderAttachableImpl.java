@@ -28,18 +28,31 @@ import java.util.Enumeration;
    A straightforward implementation of the {@link AppenderAttachable}
    interface.
 
+   <p>Changes to the list of appenders are serialized on this
+   instance and publish a new immutable array of appenders. {@link
+   #appendLoopOnAppenders} only reads the latest published array so
+   that the logging path does not take any lock.
+
    @author Ceki G&uuml;lc&uuml;
    @since version 0.9.1 */
 public class AppenderAttachableImpl implements AppenderAttachable {
-  
+
+  private static final Appender[] EMPTY = new Appender[0];
+
   /** Array of appenders. */
   protected Vector  appenderList;
 
+  /**
+     Copy-on-write snapshot of <code>appenderList</code>. It is never
+     modified once published.  */
+  private volatile Appender[] appenderArray = EMPTY;
+
   /**
      Attach an appender. If the appender is already in the list in
      won't be added again.
   */
   public
+  synchronized
   void addAppender(Appender newAppender) {
     // Null values for newAppender parameter are strictly forbidden.
     if(newAppender == null)
@@ -48,24 +61,21 @@ public class AppenderAttachableImpl implements AppenderAttachable {
     if(appenderList == null) {
       appenderList = new Vector(1);
     }
-    if(!appenderList.contains(newAppender))
+    if(!appenderList.contains(newAppender)) {
       appenderList.addElement(newAppender);
+      publish();
+    }
   }
 
   /**
      Call the <code>doAppend</code> method on all attached appenders.  */
   public
   int appendLoopOnAppenders(LoggingEvent event) {
-    int size = 0;
-    Appender appender;
-
-    if(appenderList != null) {
-      size = appenderList.size();
-      for(int i = 0; i < size; i++) {
-	appender = (Appender) appenderList.elementAt(i);
-	appender.doAppend(event);
-      }
-    }    
+    Appender[] appenders = appenderArray;
+    int size = appenders.length;
+    for(int i = 0; i < size; i++) {
+      appenders[i].doAppend(event);
+    }
     return size;
   }
 
@@ -78,10 +88,17 @@ public class AppenderAttachableImpl implements AppenderAttachable {
    */
   public
   Enumeration getAllAppenders() {
-    if(appenderList == null)
+    Appender[] appenders = appenderArray;
+    // EMPTY is only published while appenderList is null; once all
+    // appenders have been removed one by one, an empty enumeration
+    // is returned.
+    if(appenders == EMPTY)
       return null;
-    else 
-      return appenderList.elements();    
+    Vector v = new Vector(appenders.length);
+    for(int i = 0; i < appenders.length; i++) {
+      v.addElement(appenders[i]);
+    }
+    return v.elements();
   }
 
   /**
@@ -93,15 +110,13 @@ public class AppenderAttachableImpl implements AppenderAttachable {
    */
   public
   Appender getAppender(String name) {
-     if(appenderList == null || name == null)
+     if(name == null)
       return null;
 
-     int size = appenderList.size();
-     Appender appender;
-     for(int i = 0; i < size; i++) {
-       appender = (Appender) appenderList.elementAt(i);
-       if(name.equals(appender.getName()))
-	  return appender;
+     Appender[] appenders = appenderArray;
+     for(int i = 0; i < appenders.length; i++) {
+       if(name.equals(appenders[i].getName()))
+	  return appenders[i];
      }
      return null;    
   }
@@ -114,14 +129,12 @@ public class AppenderAttachableImpl implements AppenderAttachable {
      @since 1.2 */
   public 
   boolean isAttached(Appender appender) {
-    if(appenderList == null || appender == null)
+    if(appender == null)
       return false;
 
-     int size = appenderList.size();
-     Appender a;
-     for(int i = 0; i < size; i++) {
-       a  = (Appender) appenderList.elementAt(i);
-       if(a == appender)
+     Appender[] appenders = appenderArray;
+     for(int i = 0; i < appenders.length; i++) {
+       if(appenders[i] == appender)
 	  return true;
      }
      return false;    
@@ -133,12 +146,14 @@ public class AppenderAttachableImpl implements AppenderAttachable {
    * Remove and close all previously attached appenders.
    * */
   public
+  synchronized
   void removeAllAppenders() {
     if(appenderList != null) {
-      int len = appenderList.size();      
-      for(int i = 0; i < len; i++) {
-	Appender a = (Appender) appenderList.elementAt(i);
-	a.close();
+      // Stop handing out the appenders before closing them.
+      Appender[] appenders = appenderArray;
+      appenderArray = EMPTY;
+      for(int i = 0; i < appenders.length; i++) {
+	appenders[i].close();
       }
       appenderList.removeAllElements();
       appenderList = null;      
@@ -150,10 +165,13 @@ public class AppenderAttachableImpl implements AppenderAttachable {
      Remove the appender passed as parameter form the list of attached
      appenders.  */
   public
+  synchronized
   void removeAppender(Appender appender) {
     if(appender == null || appenderList == null) 
       return;
-    appenderList.removeElement(appender);    
+    if(appenderList.removeElement(appender)) {
+      publish();
+    }
   }
 
 
@@ -162,15 +180,27 @@ public class AppenderAttachableImpl implements AppenderAttachable {
     list of appenders.  
   */
   public
+  synchronized
   void removeAppender(String name) {
     if(name == null || appenderList == null) return;
     int size = appenderList.size();
     for(int i = 0; i < size; i++) {
       if(name.equals(((Appender)appenderList.elementAt(i)).getName())) {
 	 appenderList.removeElementAt(i);
+	 publish();
 	 break;
       }
     }
   }
 
+  /**
+     Replace the published snapshot with a fresh copy of
+     <code>appenderList</code>. Must be called while holding the lock
+     on this instance.  */
+  private
+  void publish() {
+    Appender[] appenders = new Appender[appenderList.size()];
+    appenderList.copyInto(appenders);
+    appenderArray = appenders;
+  }
 }
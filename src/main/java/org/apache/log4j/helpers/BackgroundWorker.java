@@ -0,0 +1,117 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.log4j.helpers;
+
+import java.util.LinkedList;
+
+/**
+   BackgroundWorker runs tasks one at a time, in the order they were
+   submitted, on a daemon thread. The thread is started when a task is
+   submitted to an idle worker and ends once no task is left, so an
+   idle worker holds no thread.
+
+   @since 1.2.18 */
+public class BackgroundWorker implements Runnable {
+
+  private final String name;
+  private final int priority;
+  private final LinkedList tasks = new LinkedList();
+  private Thread thread;
+
+  /**
+     @param name the name of the worker thread.  */
+  public
+  BackgroundWorker(String name) {
+    this(name, Thread.NORM_PRIORITY);
+  }
+
+  /**
+     @param name the name of the worker thread.
+     @param priority the priority of the worker thread.  */
+  public
+  BackgroundWorker(String name, int priority) {
+    this.name = name;
+    this.priority = priority;
+  }
+
+  /**
+     The number of tasks waiting to be run, not counting the task
+     being run.  */
+  public
+  int size() {
+    synchronized(tasks) {
+      return tasks.size();
+    }
+  }
+
+  /**
+     Queue <code>task</code> for execution.  */
+  public
+  void execute(Runnable task) {
+    synchronized(tasks) {
+      tasks.addLast(task);
+      if(thread == null) {
+	thread = new Thread(this, name);
+	thread.setDaemon(true);
+	thread.setPriority(priority);
+	thread.start();
+      }
+    }
+  }
+
+  /**
+     Wait until all queued tasks have been run. Returns
+     <code>false</code> if the calling thread is interrupted first.  */
+  public
+  boolean waitForCompletion() {
+    synchronized(tasks) {
+      while(thread != null) {
+	if(thread == Thread.currentThread()) {
+	  return true;
+	}
+	try {
+	  tasks.wait();
+	} catch(InterruptedException e) {
+	  Thread.currentThread().interrupt();
+	  return false;
+	}
+      }
+    }
+    return true;
+  }
+
+  public
+  void run() {
+    while(true) {
+      Runnable task;
+      synchronized(tasks) {
+	if(tasks.isEmpty()) {
+	  thread = null;
+	  tasks.notifyAll();
+	  return;
+	}
+	task = (Runnable) tasks.removeFirst();
+      }
+      try {
+	task.run();
+      } catch(RuntimeException e) {
+	LogLog.error("Background task failed in ["+name+"].", e);
+      }
+    }
+  }
+}
@@ -0,0 +1,115 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.log4j.helpers;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+
+/**
+   ChannelWriter encodes characters into a direct byte buffer which is
+   written to a channel when it is full, when {@link #flush} is called
+   or, if a flush interval is set, on the first write taking place at
+   least that long after the channel was last written to. Output left
+   in the buffer when writes stop is only written by {@link #flush}.
+
+   <p>Unlike the {@link java.io.OutputStreamWriter} and {@link
+   java.io.BufferedWriter} pair it replaces, this writer takes no
+   lock. It must only be used by one thread at a time, which is the
+   case for the writer of an appender.
+
+   @since 1.2.18 */
+public class ChannelWriter extends EncodingWriter {
+
+  private final WritableByteChannel channel;
+  private final long flushInterval;
+
+  /** Time of the last write to the channel. */
+  private long lastDrain;
+
+  /**
+     @param channel the destination of the encoded bytes.
+     @param encoding the name of the character set, or <code>null</code>
+     for the platform default.
+     @param bufferSize the size in bytes of the buffer.
+     @param flushInterval if positive, the interval in milliseconds
+     after which a write also writes the buffer to the channel.  */
+  public
+  ChannelWriter(WritableByteChannel channel, String encoding, int bufferSize,
+		long flushInterval) {
+    super(encoding);
+    this.channel = channel;
+    this.buffer = ByteBuffer.allocateDirect(
+      Math.max(bufferSize, getMinimumBufferSize()));
+    this.flushInterval = flushInterval;
+    this.lastDrain = System.currentTimeMillis();
+  }
+
+  /**
+     Write the buffered bytes to the channel.  */
+  public
+  void flush() throws IOException {
+    ensureOpen();
+    drain();
+  }
+
+  /**
+     Encode any pending character, write the buffered bytes and close
+     the channel.  */
+  public
+  void close() throws IOException {
+    try {
+      if(finish()) {
+	drain();
+      }
+    } finally {
+      channel.close();
+    }
+  }
+
+  /**
+     Returns <code>true</code> if bytes are waiting in the buffer to be
+     written to the channel.  */
+  public
+  boolean hasBufferedOutput() {
+    return buffer.position() > 0;
+  }
+
+  protected
+  void bufferFull() throws IOException {
+    drain();
+  }
+
+  protected
+  void written() throws IOException {
+    if(flushInterval > 0 && buffer.position() > 0
+       && System.currentTimeMillis() - lastDrain >= flushInterval) {
+      drain();
+    }
+  }
+
+  private
+  void drain() throws IOException {
+    buffer.flip();
+    while(buffer.hasRemaining()) {
+      channel.write(buffer);
+    }
+    buffer.clear();
+    lastDrain = System.currentTimeMillis();
+  }
+}
@@ -0,0 +1,255 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.log4j.helpers;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+   ConfigWatcher checks the files of any number of {@link
+   FileWatchdog}s from a single daemon thread.
+
+   <p>On JDK 7 and later, the directories of the watched files are
+   registered with a <code>java.nio.file.WatchService</code>, so a
+   change is noticed as soon as the file system reports it and no
+   polling takes place. A file is checked {@link #QUIET_PERIOD}
+   milliseconds after the last event concerning it, so that a burst of
+   writes causes a single reconfiguration. Files whose directory cannot
+   be watched, and all files on older JDKs, are polled every {@link
+   FileWatchdog#setDelay delay} milliseconds as by {@link
+   FileWatchdog#run}.
+
+   <p>The thread is started by the first call to {@link #watch} and
+   stopped by {@link #shutdown}, which {@link
+   org.apache.log4j.LogManager#shutdown} calls.
+
+   @since 1.2.18 */
+public final class ConfigWatcher implements Runnable {
+
+  /**
+     Milliseconds to wait after the last change to a file before
+     checking it.  */
+  public static final long QUIET_PERIOD = 100;
+
+  private static ConfigWatcher current;
+
+  private final List entries = new ArrayList();
+  private final Thread thread;
+
+  /** Null if changes are only detected by polling. */
+  private DirectoryWatcher directories;
+
+  /** Guarded by entries. */
+  private boolean waiting;
+  private boolean stopped;
+
+  private
+  ConfigWatcher() {
+    try {
+      directories = new DirectoryWatcher();
+    } catch(IOException e) {
+      LogLog.debug("Could not create a watch service, polling instead.", e);
+    } catch(LinkageError e) {
+      LogLog.debug("No watch service available, polling instead.");
+    } catch(RuntimeException e) {
+      LogLog.debug("Could not create a watch service, polling instead.", e);
+    }
+    thread = new Thread(this, "log4j ConfigWatcher");
+    thread.setDaemon(true);
+  }
+
+  /**
+     Check the file of <code>watchdog</code> for changes from the
+     shared thread, calling its {@link FileWatchdog#doOnChange}
+     method when it is created or modified. The watchdog must not be
+     started.  */
+  public
+  static
+  synchronized
+  void watch(FileWatchdog watchdog) {
+    if(current == null) {
+      current = new ConfigWatcher();
+      current.add(watchdog);
+      current.thread.start();
+    } else {
+      current.add(watchdog);
+    }
+  }
+
+  /**
+     Stop watching all files and end the shared thread. Files may be
+     watched again afterwards.  */
+  public
+  static
+  void shutdown() {
+    ConfigWatcher watcher;
+    synchronized(ConfigWatcher.class) {
+      watcher = current;
+      current = null;
+    }
+    if(watcher != null) {
+      watcher.stop();
+    }
+  }
+
+  private
+  void add(FileWatchdog watchdog) {
+    Entry entry = new Entry(watchdog);
+    synchronized(entries) {
+      entry.watched = register(entry);
+      entries.add(entry);
+      wakeUp();
+    }
+  }
+
+  private
+  void stop() {
+    synchronized(entries) {
+      stopped = true;
+      entries.clear();
+      wakeUp();
+    }
+    if(directories != null) {
+      directories.close();
+    }
+  }
+
+  /**
+     Interrupt the thread if it is waiting, so that it reconsiders its
+     timeout. It is never interrupted while checking files.  */
+  private
+  void wakeUp() {
+    if(waiting) {
+      thread.interrupt();
+    }
+  }
+
+  private
+  boolean register(Entry entry) {
+    File dir = entry.file.getParentFile();
+    return directories != null && dir != null && directories.register(dir);
+  }
+
+  public
+  void run() {
+    List due = new ArrayList();
+    while(true) {
+      long timeout = Long.MAX_VALUE;
+      synchronized(entries) {
+	if(stopped) {
+	  return;
+	}
+	long now = System.currentTimeMillis();
+	for(int i = 0; i < entries.size(); i++) {
+	  Entry entry = (Entry) entries.get(i);
+	  if(entry.due != 0 && entry.due <= now) {
+	    entry.due = 0;
+	    due.add(entry);
+	  } else if(!entry.watched && entry.nextPoll <= now) {
+	    entry.nextPoll = now + entry.watchdog.delay;
+	    due.add(entry);
+	  }
+	  if(entry.due != 0) {
+	    timeout = Math.min(timeout, entry.due - now);
+	  }
+	  if(!entry.watched) {
+	    timeout = Math.min(timeout, entry.nextPoll - now);
+	  }
+	}
+	waiting = due.isEmpty();
+      }
+
+      if(!due.isEmpty()) {
+	check(due);
+	due.clear();
+	continue;
+      }
+
+      List changed = Collections.EMPTY_LIST;
+      try {
+	if(directories != null) {
+	  changed = directories.poll(timeout == Long.MAX_VALUE ? -1 : timeout);
+	} else {
+	  Thread.sleep(timeout);
+	}
+      } catch(InterruptedException e) {
+	// woken up by add or stop
+      }
+
+      synchronized(entries) {
+	waiting = false;
+	// Clear an interrupt which raced with the end of the wait.
+	Thread.interrupted();
+	long deadline = System.currentTimeMillis() + QUIET_PERIOD;
+	for(int i = 0; i < changed.size(); i++) {
+	  File file = (File) changed.get(i);
+	  for(int j = 0; j < entries.size(); j++) {
+	    Entry entry = (Entry) entries.get(j);
+	    if(file.equals(entry.file) || file.equals(entry.file.getParentFile())) {
+	      entry.due = deadline;
+	    }
+	  }
+	}
+      }
+    }
+  }
+
+  private
+  void check(List due) {
+    for(int i = 0; i < due.size(); i++) {
+      Entry entry = (Entry) due.get(i);
+      synchronized(entries) {
+	if(stopped) {
+	  return;
+	}
+      }
+      try {
+	entry.watchdog.checkAndConfigure();
+      } catch(RuntimeException e) {
+	LogLog.error("Could not reconfigure from ["+entry.file+"].", e);
+      }
+      synchronized(entries) {
+	if(entry.watchdog.interrupted) {
+	  entries.remove(entry);
+	} else if(directories != null) {
+	  // The directory may have been created or replaced.
+	  entry.watched = register(entry);
+	}
+      }
+    }
+  }
+
+  private static final class Entry {
+    final FileWatchdog watchdog;
+    final File file;
+    boolean watched;
+    /** Time at which to check the file after an event, or 0. */
+    long due;
+    /** Time of the next check if the file is polled. */
+    long nextPoll;
+
+    Entry(FileWatchdog watchdog) {
+      this.watchdog = watchdog;
+      this.file = watchdog.file.getAbsoluteFile();
+      this.nextPoll = System.currentTimeMillis() + watchdog.delay;
+    }
+  }
+}
@@ -50,6 +50,17 @@ public class CountingQuietWriter extends QuietWriter {
     }
   }
 
+  public
+  void write(StringBuffer buffer) {
+    try {
+      writeBuffer(buffer);
+      count += buffer.length();
+    }
+    catch(IOException e) {
+      errorHandler.error("Write failure.", e, ErrorCode.WRITE_FAILURE);
+    }
+  }
+
   public
   long getCount() {
     return count;
@@ -0,0 +1,113 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.log4j.helpers;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+   Reports changes to the entries of directories through a
+   <code>java.nio.file.WatchService</code>.
+
+   <p>This class requires JDK 7 or later. It is only loaded by {@link
+   ConfigWatcher}, which falls back to polling when it cannot be
+   loaded.
+
+   @since 1.2.18 */
+final class DirectoryWatcher {
+
+  private static final WatchEvent.Kind[] KINDS = {
+    StandardWatchEventKinds.ENTRY_CREATE,
+    StandardWatchEventKinds.ENTRY_MODIFY,
+    StandardWatchEventKinds.ENTRY_DELETE
+  };
+
+  private final WatchService service;
+
+  DirectoryWatcher() throws IOException {
+    service = FileSystems.getDefault().newWatchService();
+  }
+
+  /**
+     Watch <code>directory</code>. Registering a directory again has
+     no effect.
+
+     @return false if the directory cannot be watched.  */
+  boolean register(File directory) {
+    try {
+      directory.toPath().register(service, KINDS);
+      return true;
+    } catch(IOException e) {
+      LogLog.debug("Cannot watch directory ["+directory+"].", e);
+    } catch(RuntimeException e) {
+      LogLog.debug("Cannot watch directory ["+directory+"].", e);
+    }
+    return false;
+  }
+
+  /**
+     Wait for changes, at most <code>timeout</code> milliseconds or
+     indefinitely if <code>timeout</code> is negative.
+
+     @return the files which changed. A directory is returned when
+     events were lost or the directory can no longer be watched.  */
+  List poll(long timeout) throws InterruptedException {
+    List changed = new ArrayList();
+    try {
+      WatchKey key = timeout < 0 ? service.take()
+	                         : service.poll(timeout, TimeUnit.MILLISECONDS);
+      while(key != null) {
+	Path dir = (Path) key.watchable();
+	for(Iterator i = key.pollEvents().iterator(); i.hasNext();) {
+	  WatchEvent event = (WatchEvent) i.next();
+	  if(event.kind() == StandardWatchEventKinds.OVERFLOW) {
+	    changed.add(dir.toFile());
+	  } else {
+	    changed.add(dir.resolve((Path) event.context()).toFile());
+	  }
+	}
+	if(!key.reset()) {
+	  changed.add(dir.toFile());
+	}
+	key = service.poll();
+      }
+    } catch(ClosedWatchServiceException e) {
+      // closed by ConfigWatcher.shutdown
+    }
+    return changed;
+  }
+
+  void close() {
+    try {
+      service.close();
+    } catch(IOException e) {
+      LogLog.debug("Could not close watch service.", e);
+    }
+  }
+}
@@ -0,0 +1,210 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.log4j.helpers;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CodingErrorAction;
+
+/**
+   EncodingWriter encodes characters with a single {@link
+   CharsetEncoder} straight into a byte buffer supplied by its
+   subclass, which decides what to do when the buffer is full.
+
+   <p>No lock is taken. An EncodingWriter must only be used by one
+   thread at a time, which is the case for the writer of an appender.
+
+   @since 1.2.18 */
+public abstract class EncodingWriter extends Writer {
+
+  private final CharsetEncoder encoder;
+
+  /**
+     The buffer characters are encoded into. Set by subclasses, and
+     replaced or emptied by {@link #bufferFull}. */
+  protected ByteBuffer buffer;
+
+  /** High surrogate left over by the previous write, if any. */
+  private char pending;
+  private boolean hasPending;
+  private final CharBuffer pair = CharBuffer.allocate(2);
+
+  private boolean closed;
+
+  /**
+     @param encoding the name of the character set, or <code>null</code>
+     for the platform default.  */
+  protected
+  EncodingWriter(String encoding) {
+    this.encoder = getCharset(encoding).newEncoder()
+      .onMalformedInput(CodingErrorAction.REPLACE)
+      .onUnmappableCharacter(CodingErrorAction.REPLACE);
+  }
+
+  private
+  static
+  Charset getCharset(String encoding) {
+    if(encoding != null) {
+      try {
+	return Charset.forName(encoding);
+      } catch(IllegalArgumentException e) {
+	LogLog.warn("Error initializing output writer.");
+	LogLog.warn("Unsupported encoding?");
+      }
+    }
+    // Charset.defaultCharset() is not available before JDK 1.5.
+    return Charset.forName(
+      new OutputStreamWriter(new ByteArrayOutputStream()).getEncoding());
+  }
+
+  /**
+     The smallest buffer size able to hold the encoding of any
+     character.  */
+  protected
+  int getMinimumBufferSize() {
+    return (int) Math.ceil(encoder.maxBytesPerChar() * 2);
+  }
+
+  /**
+     The number of bytes every character is encoded into if the
+     encoding has a fixed width, otherwise 1.  */
+  protected
+  int getCharacterWidth() {
+    float average = encoder.averageBytesPerChar();
+    return average == (int) average ? (int) average : 1;
+  }
+
+  /**
+     Called when {@link #buffer} has no room left for the next
+     encoded character. Implementations must empty the buffer or
+     replace it.  */
+  protected
+  abstract
+  void bufferFull() throws IOException;
+
+  /**
+     Called at the end of every write. The base class does nothing.  */
+  protected
+  void written() throws IOException {
+  }
+
+  public
+  void write(char[] cbuf, int off, int len) throws IOException {
+    ensureOpen();
+    if(hasPending && len > 0) {
+      completePair(cbuf[off]);
+      off++;
+      len--;
+    }
+    encode(CharBuffer.wrap(cbuf, off, len));
+    written();
+  }
+
+  public
+  void write(String str, int off, int len) throws IOException {
+    ensureOpen();
+    if(hasPending && len > 0) {
+      completePair(str.charAt(off));
+      off++;
+      len--;
+    }
+    encode(CharBuffer.wrap(str, off, off + len));
+    written();
+  }
+
+  public
+  void write(String str) throws IOException {
+    write(str, 0, str.length());
+  }
+
+  public
+  void write(int c) throws IOException {
+    ensureOpen();
+    if(hasPending) {
+      completePair((char) c);
+    } else {
+      pair.clear();
+      pair.put((char) c);
+      pair.flip();
+      encode(pair);
+    }
+    written();
+  }
+
+  /**
+     Mark this writer closed and encode any pending character. Returns
+     <code>false</code> if the writer was already closed.  */
+  protected
+  final
+  boolean finish() throws IOException {
+    if(closed) {
+      return false;
+    }
+    closed = true;
+    pair.clear();
+    if(hasPending) {
+      pair.put(pending);
+      hasPending = false;
+    }
+    pair.flip();
+    while(encoder.encode(pair, buffer, true).isOverflow()) {
+      bufferFull();
+    }
+    while(encoder.flush(buffer).isOverflow()) {
+      bufferFull();
+    }
+    return true;
+  }
+
+  protected
+  final
+  void ensureOpen() throws IOException {
+    if(closed) {
+      throw new IOException("Writer closed.");
+    }
+  }
+
+  private
+  void completePair(char c) throws IOException {
+    hasPending = false;
+    pair.clear();
+    pair.put(pending);
+    pair.put(c);
+    pair.flip();
+    encode(pair);
+  }
+
+  private
+  void encode(CharBuffer in) throws IOException {
+    while(encoder.encode(in, buffer, false).isOverflow()) {
+      bufferFull();
+    }
+    // The encoder leaves a trailing high surrogate in the input until
+    // it sees the character that follows.
+    if(in.hasRemaining()) {
+      pending = in.get();
+      hasPending = true;
+    }
+  }
+}
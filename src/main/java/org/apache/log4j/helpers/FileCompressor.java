@@ -0,0 +1,92 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.log4j.helpers;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+   Compresses files in the gzip format.
+
+   @since 1.2.18 */
+public final class FileCompressor {
+
+  /** The extension appended to the names of compressed files. */
+  public static final String GZIP_EXTENSION = ".gz";
+
+  private FileCompressor() {
+  }
+
+  /**
+     Compress <code>source</code> into <code>source.gz</code> and
+     delete <code>source</code>. If compression fails, the partially
+     written target is deleted and <code>source</code> is kept.
+
+     @param level the deflater compression level, from 0 to 9, or -1
+     for the default level.
+     @return true if the file was compressed.  */
+  public
+  static
+  boolean gzip(File source, final int level) {
+    File target = new File(source.getPath() + GZIP_EXTENSION);
+    boolean done = false;
+    try {
+      InputStream in = new FileInputStream(source);
+      try {
+	OutputStream out = new GZIPOutputStream(new FileOutputStream(target),
+						8192) {
+	    {
+	      def.setLevel(level);
+	    }
+	  };
+	try {
+	  byte[] buf = new byte[8192];
+	  int n;
+	  while((n = in.read(buf)) > 0) {
+	    out.write(buf, 0, n);
+	  }
+	} finally {
+	  out.close();
+	}
+	done = true;
+      } finally {
+	in.close();
+      }
+    } catch(IOException e) {
+      if (e instanceof InterruptedIOException) {
+	Thread.currentThread().interrupt();
+      }
+      LogLog.error("Could not compress ["+source+"].", e);
+    }
+    if(!done) {
+      target.delete();
+      return false;
+    }
+    if(!source.delete()) {
+      LogLog.warn("Could not delete ["+source+"] after compressing it.");
+    }
+    LogLog.debug("Compressed " + source + " to " + target);
+    return true;
+  }
+}
@@ -25,6 +25,9 @@ import java.io.File;
    Check every now and then that a certain file has not changed. If it
    has, then call the {@link #doOnChange} method.
 
+   <p>Instead of starting each watchdog as a thread of its own, it may
+   be handed to {@link ConfigWatcher#watch}, which checks all watched
+   files from a single thread.
 
    @author Ceki G&uuml;lc&uuml;
    @since version 0.9.1 */
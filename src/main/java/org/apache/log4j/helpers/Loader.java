@@ -197,4 +197,51 @@ public class Loader  {
     }
     return Class.forName(clazz);
   }
+
+  /**
+     Load the specified class as {@link #loadClass(String)} does,
+     without initializing it unless <code>initialize</code> is
+     <code>true</code>.
+
+     @since 1.2.18 */
+  static public Class loadClass(String clazz, boolean initialize)
+                                          throws ClassNotFoundException {
+    if(!java1 && !ignoreTCL) {
+      try {
+	ClassLoader tcl = getTCL();
+	if(tcl != null) {
+	  return Class.forName(clazz, initialize, tcl);
+	}
+      } catch(InvocationTargetException e) {
+	if (e.getTargetException() instanceof InterruptedException
+	    || e.getTargetException() instanceof InterruptedIOException) {
+	  Thread.currentThread().interrupt();
+	}
+      } catch(Throwable t) {
+      }
+    }
+    return Class.forName(clazz, initialize, Loader.class.getClassLoader());
+  }
+
+  /**
+     Is <code>clazz</code> loaded by the class loader of log4j or one
+     of its parents? Classes for which this method returns
+     <code>false</code> must not be referenced by static caches of
+     log4j, lest they could never be unloaded.
+
+     @since 1.2.18 */
+  public
+  static
+  boolean isVisible(Class clazz) {
+    ClassLoader loader = clazz.getClassLoader();
+    if(loader == null) {
+      return true;
+    }
+    for(ClassLoader l = Loader.class.getClassLoader(); l != null; l = l.getParent()) {
+      if(l == loader) {
+	return true;
+      }
+    }
+    return false;
+  }
 }
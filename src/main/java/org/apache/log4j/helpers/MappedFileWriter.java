@@ -0,0 +1,185 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.log4j.helpers;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+   MappedFileWriter encodes characters directly into a memory mapped
+   region of a file. When the region is full, the next region of the
+   same size is mapped, growing the file. On close, the file is
+   truncated to the length actually written.
+
+   <p>Writing only copies bytes into memory owned by the operating
+   system, so the output survives a crash of the JVM. It may not
+   survive a crash of the operating system unless a force interval is
+   set. If the JVM dies, the file keeps the zero bytes of the unused
+   part of the last region, which are skipped when the file is opened
+   again in append mode.
+
+   <p>This writer takes no lock and must only be used by one thread at
+   a time.
+
+   @since 1.2.18 */
+public class MappedFileWriter extends EncodingWriter {
+
+  private final RandomAccessFile file;
+  private final FileChannel channel;
+  private final int regionSize;
+  private final long forceInterval;
+
+  /** Offset in the file of the current region. */
+  private long regionStart;
+  private MappedByteBuffer region;
+
+  /** Time of the last call to force. */
+  private long lastForce;
+
+  /**
+     Open <code>fileName</code> and map its first region.
+
+     @param fileName the file to write to.
+     @param append if true, writing starts after the last byte of the
+     file which is not zero, otherwise the file is truncated.
+     @param encoding the name of the character set, or <code>null</code>
+     for the platform default.
+     @param regionSize the size in bytes of each mapped region.
+     @param forceInterval if positive, the interval in milliseconds
+     after which a write also forces the region to the storage device.  */
+  public
+  MappedFileWriter(String fileName, boolean append, String encoding,
+		   int regionSize, long forceInterval) throws IOException {
+    super(encoding);
+    this.regionSize = Math.max(regionSize, getMinimumBufferSize());
+    this.forceInterval = forceInterval;
+    this.lastForce = System.currentTimeMillis();
+    file = new RandomAccessFile(fileName, "rw");
+    try {
+      channel = file.getChannel();
+      if(append) {
+	map(dataLength());
+      } else {
+	file.setLength(0);
+	map(0);
+      }
+    } catch(IOException e) {
+      file.close();
+      throw e;
+    }
+  }
+
+  /**
+     The number of bytes in the file once it is closed.  */
+  public
+  long getLength() {
+    return regionStart + region.position();
+  }
+
+  /**
+     Does nothing as the written bytes are already visible to other
+     readers of the file.  */
+  public
+  void flush() throws IOException {
+    ensureOpen();
+  }
+
+  /**
+     Encode any pending character, truncate the file to the length
+     written and close it.  */
+  public
+  void close() throws IOException {
+    try {
+      if(finish()) {
+	long length = getLength();
+	if(forceInterval > 0) {
+	  region.force();
+	}
+	region = null;
+	buffer = null;
+	try {
+	  channel.truncate(length);
+	} catch(IOException e) {
+	  // Some platforms refuse to truncate a file which is still
+	  // mapped; the mapping is only released by garbage collection.
+	  LogLog.warn("Could not truncate mapped file to "+length+" bytes.", e);
+	}
+      }
+    } finally {
+      file.close();
+    }
+  }
+
+  protected
+  void bufferFull() throws IOException {
+    map(getLength());
+  }
+
+  protected
+  void written() throws IOException {
+    if(forceInterval > 0
+       && System.currentTimeMillis() - lastForce >= forceInterval) {
+      region.force();
+      lastForce = System.currentTimeMillis();
+    }
+  }
+
+  /**
+     The length of the file without the zero bytes left at its end by
+     a writer which was not closed, rounded up to a whole number of
+     characters.  */
+  private
+  long dataLength() throws IOException {
+    long length = channel.size();
+    ByteBuffer bytes = ByteBuffer.allocate(8*1024);
+    while(length > 0) {
+      bytes.clear();
+      long start = Math.max(0, length - bytes.capacity());
+      bytes.limit((int) (length - start));
+      while(bytes.hasRemaining()) {
+	if(channel.read(bytes, start + bytes.position()) < 0) {
+	  break;
+	}
+      }
+      int i = bytes.position() - 1;
+      while(i >= 0 && bytes.get(i) == 0) {
+	i--;
+      }
+      if(i >= 0) {
+	length = start + i + 1;
+	break;
+      }
+      length = start;
+    }
+    int width = getCharacterWidth();
+    return (length + width - 1) / width * width;
+  }
+
+  private
+  void map(long position) throws IOException {
+    if(region != null && forceInterval > 0) {
+      region.force();
+    }
+    region = channel.map(FileChannel.MapMode.READ_WRITE, position, regionSize);
+    regionStart = position;
+    buffer = region;
+  }
+}
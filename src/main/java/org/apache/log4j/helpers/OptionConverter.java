@@ -495,7 +495,9 @@ configurator.doConfigure(inputStream, hierarchy);
      {@link Configurator}, or null. If this value is null then a default
      configurator of {@link PropertyConfigurator} is used, unless the
      filename pointed to by <code>url</code> ends in '.xml', in which case
-     {@link org.apache.log4j.xml.DOMConfigurator} is used.
+     {@link org.apache.log4j.xml.DOMConfigurator} is used, or in
+     '.snapshot', in which case {@link
+     org.apache.log4j.config.SnapshotConfigurator} is used.
      @param hierarchy The {@link org.apache.log4j.Hierarchy} to act on.
 
      @since 1.1.4 */
@@ -509,6 +511,9 @@ configurator.doConfigure(inputStream, hierarchy);
    if(clazz == null && filename != null && filename.endsWith(".xml")) {
      clazz = "org.apache.log4j.xml.DOMConfigurator";
    }
+   if(clazz == null && filename != null && filename.endsWith(".snapshot")) {
+     clazz = "org.apache.log4j.config.SnapshotConfigurator";
+   }
 
    if(clazz != null) {
      LogLog.debug("Preferred configurator class: " + clazz);
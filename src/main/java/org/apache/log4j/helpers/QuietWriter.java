@@ -19,6 +19,7 @@ package org.apache.log4j.helpers;
 
 import java.io.Writer;
 import java.io.FilterWriter;
+import java.io.IOException;
 import org.apache.log4j.spi.ErrorHandler;
 import org.apache.log4j.spi.ErrorCode;
 
@@ -35,6 +36,12 @@ public class QuietWriter extends FilterWriter {
 
   protected ErrorHandler errorHandler;
 
+  private static final int BUF_SIZE = 256;
+  private static final int MAX_CAPACITY = 1024;
+
+  // characters copied out of the buffers passed to write(StringBuffer)
+  private char[] chars = new char[BUF_SIZE];
+
   public
   QuietWriter(Writer writer, ErrorHandler errorHandler) {
     super(writer);
@@ -53,6 +60,43 @@ public class QuietWriter extends FilterWriter {
     }
   }
 
+  /**
+     Write the contents of <code>buffer</code> without creating a
+     string. Callers must not write from several threads at once.
+     {@link org.apache.log4j.WriterAppender} writes strings instead
+     to subclasses which override {@link #write(String)} but not this
+     method.
+
+     @since 1.2.18 */
+  public
+  void write(StringBuffer buffer) {
+    try {
+      writeBuffer(buffer);
+    } catch(Exception e) {
+      errorHandler.error("Failed to write ["+buffer+"].", e,
+			 ErrorCode.WRITE_FAILURE);
+    }
+  }
+
+  /**
+     Copy the contents of <code>buffer</code> to the underlying writer.
+
+     @since 1.2.18 */
+  protected
+  final
+  void writeBuffer(StringBuffer buffer) throws IOException {
+    int len = buffer.length();
+    char[] c = chars;
+    if(len > c.length) {
+      c = new char[len];
+      if(len <= MAX_CAPACITY) {
+	chars = c;
+      }
+    }
+    buffer.getChars(0, len, c, 0);
+    out.write(c, 0, len);
+  }
+
   public
   void flush() {
     try {
@@ -0,0 +1,308 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.log4j.helpers;
+
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.LockSupport;
+
+import org.apache.log4j.spi.LoggingEvent;
+
+/**
+   <code>RingBuffer</code> is a bounded multi-producer, single-consumer
+   queue of {@link LoggingEvent} objects used by the {@link
+   org.apache.log4j.AsyncAppender} when a wait strategy is configured.
+
+   <p>The slots are preallocated and their number is rounded up to a
+   power of two. Producers claim a sequence number with a
+   compare-and-set and then publish the event into the matching
+   slot. Neither producers nor the consumer ever take a monitor; how
+   they wait for free slots or for new events is determined by the
+   wait strategy.
+
+   <p>This class requires JDK 1.5 or later.
+
+   @since 1.2.18 */
+public class RingBuffer {
+
+  /** Busy spin while waiting. Lowest latency, burns a CPU. */
+  public static final int SPIN = 0;
+
+  /** Call {@link Thread#yield} while waiting. */
+  public static final int YIELD = 1;
+
+  /** Sleep for a short fixed period while waiting. */
+  public static final int PARK = 2;
+
+  /**
+     The consumer sleeps until a producer wakes it up. Producers
+     waiting for a free slot sleep for short periods.  */
+  public static final int BLOCK = 3;
+
+  static final long PARK_NANOS = 100000L;
+
+  private final LoggingEvent[] slots;
+  private final AtomicIntegerArray published;
+  private final int mask;
+  private final int shift;
+  private final int waitStrategy;
+
+  /** Next sequence number to be claimed by a producer. */
+  private final AtomicLong claimed = new AtomicLong();
+
+  /** Next sequence number to be read by the consumer. */
+  private volatile long consumed;
+
+  private volatile Thread consumer;
+  private volatile boolean consumerWaiting;
+  private volatile boolean closed;
+
+  private final AtomicLong discardCount = new AtomicLong();
+  private final AtomicReference maxDiscarded = new AtomicReference();
+
+  /**
+     Create a ring holding at least <code>size</code> events.
+
+     @param size minimum number of slots, must be positive.
+     @param waitStrategy one of {@link #SPIN}, {@link #YIELD},
+     {@link #PARK} or {@link #BLOCK}.  */
+  public
+  RingBuffer(int size, int waitStrategy) {
+    if(size < 1) {
+      throw new IllegalArgumentException("The size argument ("+size+
+					 ") is not a positive integer.");
+    }
+    int capacity = 1;
+    int bits = 0;
+    while(capacity < size) {
+      capacity <<= 1;
+      bits++;
+    }
+    slots = new LoggingEvent[capacity];
+    published = new AtomicIntegerArray(capacity);
+    for(int i = 0; i < capacity; i++) {
+      published.set(i, -1);
+    }
+    mask = capacity - 1;
+    shift = bits;
+    this.waitStrategy = waitStrategy;
+  }
+
+  /**
+     Convert a wait strategy name, one of "spin", "yield", "park" or
+     "block", to its integer value. Returns <code>defaultValue</code>
+     if the name is <code>null</code>, or with a warning if it is not
+     recognized.  */
+  public
+  static
+  int toWaitStrategy(String value, int defaultValue) {
+    if(value == null) {
+      return defaultValue;
+    }
+    String s = value.trim();
+    if("spin".equalsIgnoreCase(s)) return SPIN;
+    if("yield".equalsIgnoreCase(s)) return YIELD;
+    if("park".equalsIgnoreCase(s)) return PARK;
+    if("block".equalsIgnoreCase(s)) return BLOCK;
+    LogLog.warn("Unknown wait strategy ["+value+"], using ["+
+		toString(defaultValue)+"].");
+    return defaultValue;
+  }
+
+  /**
+     Return the name of a wait strategy.  */
+  public
+  static
+  String toString(int waitStrategy) {
+    switch(waitStrategy) {
+    case SPIN: return "spin";
+    case YIELD: return "yield";
+    case PARK: return "park";
+    default: return "block";
+    }
+  }
+
+  /**
+     The number of slots in this ring.  */
+  public
+  int getCapacity() {
+    return slots.length;
+  }
+
+  /**
+     The number of events published but not yet consumed.  */
+  public
+  int size() {
+    return (int) (claimed.get() - consumed);
+  }
+
+  /**
+     Place <code>event</code> in the ring.
+
+     <p>If the ring is full and <code>block</code> is
+     <code>true</code>, the caller waits for a free slot. The event is
+     not placed and <code>false</code> is returned if the ring is full
+     and <code>block</code> is <code>false</code>, if the calling thread
+     is interrupted while waiting, or if the ring has been closed.  */
+  public
+  boolean offer(LoggingEvent event, boolean block) {
+    long seq;
+    while(true) {
+      if(closed) {
+	return false;
+      }
+      seq = claimed.get();
+      if(seq - consumed >= slots.length) {
+	// The consumer must never wait for itself.
+	if(!block || Thread.currentThread() == consumer
+	   || Thread.currentThread().isInterrupted()) {
+	  return false;
+	}
+	waitForSpace();
+	continue;
+      }
+      if(claimed.compareAndSet(seq, seq + 1)) {
+	break;
+      }
+    }
+    int index = (int) seq & mask;
+    slots[index] = event;
+    published.set(index, (int) (seq >>> shift));
+    if(consumerWaiting) {
+      LockSupport.unpark(consumer);
+    }
+    return true;
+  }
+
+  /**
+     Wait until at least one event is available, then move as many
+     available events as fit into <code>dest</code>. Must only be
+     called from a single consumer thread.
+
+     @return the number of events moved, or -1 once the ring has been
+     closed and all published events have been consumed or if the
+     calling thread has been interrupted.  */
+  public
+  int take(LoggingEvent[] dest) {
+    consumer = Thread.currentThread();
+    long next = consumed;
+    while(!isPublished(next)) {
+      if((closed && claimed.get() == next)
+	 || Thread.currentThread().isInterrupted()) {
+	return -1;
+      }
+      waitForEvent(next);
+    }
+    int count = 0;
+    while(count < dest.length && isPublished(next)) {
+      int index = (int) next & mask;
+      dest[count++] = slots[index];
+      slots[index] = null; // help garbage collection
+      next++;
+    }
+    consumed = next;
+    return count;
+  }
+
+  /**
+     Stop accepting events. The consumer returns -1 from {@link #take}
+     once it has drained the events already published.  */
+  public
+  void close() {
+    closed = true;
+    Thread t = consumer;
+    if(t != null) {
+      LockSupport.unpark(t);
+    }
+  }
+
+  /**
+     Record an event that could not be placed in the ring. Only the
+     most severe discarded event and the number of discarded events
+     are kept.  */
+  public
+  void discard(LoggingEvent event) {
+    while(true) {
+      LoggingEvent max = (LoggingEvent) maxDiscarded.get();
+      if(max != null && event.getLevel().toInt() <= max.getLevel().toInt()) {
+	break;
+      }
+      if(maxDiscarded.compareAndSet(max, event)) {
+	break;
+      }
+    }
+    discardCount.incrementAndGet();
+  }
+
+  /**
+     Return the number of events discarded since the last call to this
+     method and reset it. If non-zero, {@link #getMaxDiscarded} must
+     be called next to obtain the most severe of them.  */
+  public
+  int getAndResetDiscardCount() {
+    return (int) discardCount.getAndSet(0);
+  }
+
+  /**
+     Return and reset the most severe discarded event.  */
+  public
+  LoggingEvent getMaxDiscarded() {
+    return (LoggingEvent) maxDiscarded.getAndSet(null);
+  }
+
+  private
+  boolean isPublished(long seq) {
+    return published.get((int) seq & mask) == (int) (seq >>> shift);
+  }
+
+  private
+  void waitForSpace() {
+    switch(waitStrategy) {
+    case SPIN:
+      break;
+    case YIELD:
+      Thread.yield();
+      break;
+    default:
+      LockSupport.parkNanos(PARK_NANOS);
+    }
+  }
+
+  private
+  void waitForEvent(long next) {
+    switch(waitStrategy) {
+    case SPIN:
+      break;
+    case YIELD:
+      Thread.yield();
+      break;
+    case PARK:
+      LockSupport.parkNanos(PARK_NANOS);
+      break;
+    default:
+      consumerWaiting = true;
+      // Check again after announcing ourselves so that a producer
+      // publishing in between is guaranteed to see the flag.
+      if(!isPublished(next) && !closed) {
+	LockSupport.park();
+      }
+      consumerWaiting = false;
+    }
+  }
+}
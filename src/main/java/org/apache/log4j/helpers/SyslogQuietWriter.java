@@ -53,4 +53,9 @@ public class SyslogQuietWriter extends QuietWriter {
   void write(String string) {
     super.write("<"+(syslogFacility | level)+">" + string);
   }
+
+  public
+  void write(StringBuffer buffer) {
+    write(buffer.toString());
+  }
 }
@@ -21,8 +21,8 @@ package org.apache.log4j.helpers;
 import java.io.Writer;
 import java.net.DatagramSocket;
 import java.net.InetAddress;
+import java.net.InetSocketAddress;
 import java.net.DatagramPacket;
-import java.net.UnknownHostException;
 import java.net.SocketException;
 import java.io.IOException;
 import java.net.URL;
@@ -61,7 +61,37 @@ public class SyslogWriter extends Writer {
     if (syslogHost == null) {
         throw new NullPointerException("syslogHost");
     }
+
+    InetSocketAddress socketAddress = parseAddress(syslogHost, SYSLOG_PORT);
+    port = socketAddress.getPort();
+    this.address = socketAddress.getAddress();
+    if (this.address == null) {
+      LogLog.error("Could not find " + socketAddress.getHostName() +
+			 ". All logging will FAIL.");
+    }
+
+    try {
+      this.ds = new DatagramSocket();
+    }
+    catch (SocketException e) {
+      e.printStackTrace();
+      LogLog.error("Could not instantiate DatagramSocket to " + socketAddress.getHostName() +
+			 ". All logging will FAIL.", e);
+    }
     
+  }
+
+  /**
+   *  Parses a syslog host.
+   *  @param syslogHost host name, may not be null, in the format
+   *  accepted by {@link #SyslogWriter(String)}.
+   *  @param defaultPort port used if <code>syslogHost</code> has none.
+   *  @return address of the host, unresolved if the host is unknown.
+   *  @since 1.2.18
+   */
+  public
+  static
+  InetSocketAddress parseAddress(final String syslogHost, final int defaultPort) {
     String host = syslogHost;
     int urlPort = -1;
     
@@ -86,27 +116,9 @@ public class SyslogWriter extends Writer {
     }
     
     if (urlPort == -1) {
-        urlPort = SYSLOG_PORT;
-    }
-    port = urlPort;
-
-    try {      
-      this.address = InetAddress.getByName(host);
-    }
-    catch (UnknownHostException e) {
-      LogLog.error("Could not find " + host +
-			 ". All logging will FAIL.", e);
-    }
-
-    try {
-      this.ds = new DatagramSocket();
+        urlPort = defaultPort;
     }
-    catch (SocketException e) {
-      e.printStackTrace();
-      LogLog.error("Could not instantiate DatagramSocket to " + host +
-			 ". All logging will FAIL.", e);
-    }
-    
+    return new InetSocketAddress(host, urlPort);
   }
 
 
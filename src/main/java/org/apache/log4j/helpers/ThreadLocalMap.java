@@ -17,12 +17,10 @@
 
 package org.apache.log4j.helpers;
 
-import java.util.Hashtable;
-
 /**
    <code>ThreadLocalMap</code> extends {@link InheritableThreadLocal}
-   to bequeath a copy of the hashtable of the MDC of the parent
-   thread.
+   to bequeath the hashtable of the MDC of the parent thread. The MDC
+   never modifies a table once set, so the child shares it.
 
    @author Ceki G&uuml;lc&uuml;
    @since 1.2
@@ -32,11 +30,6 @@ final public class ThreadLocalMap extends InheritableThreadLocal {
   public
   final
   Object childValue(Object parentValue) {
-    Hashtable ht = (Hashtable) parentValue;
-    if(ht != null) {
-      return ht.clone();
-    } else {
-      return null;
-    }
+    return parentValue;
   }
 }
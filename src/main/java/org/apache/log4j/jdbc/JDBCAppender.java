@@ -18,12 +18,15 @@ package org.apache.log4j.jdbc;
 
 import java.sql.Connection;
 import java.sql.DriverManager;
+import java.sql.PreparedStatement;
 import java.sql.SQLException;
 import java.sql.Statement;
 import java.util.ArrayList;
 import java.util.Iterator;
+import java.util.List;
 
 import org.apache.log4j.PatternLayout;
+import org.apache.log4j.helpers.LogLog;
 import org.apache.log4j.spi.ErrorCode;
 import org.apache.log4j.spi.LoggingEvent;
 
@@ -52,6 +55,22 @@ import org.apache.log4j.spi.LoggingEvent;
   <p>Overriding the {@link #getLogStatement} method allows more
   explicit control of the statement used for logging.
 
+  <p>If the <b>Prepared</b> option is set, each string literal of the
+  sql statement, enclosed in single quotes, is replaced by a parameter
+  of a <code>PreparedStatement</code>. The parameter is set to the
+  literal converted by a <code>PatternLayout</code>. For example
+  <code>insert into LogTable (Thread, Message) values ('%t', '%m')</code>
+  is prepared once as <code>insert into LogTable (Thread, Message)
+  values (?, ?)</code>. Messages can then contain quotes, and
+  buffered events are sent in a single batch. The statement is kept
+  for as long as the default connection stays open.
+
+  <p>If the <b>FlushInterval</b> option is set, the buffer is flushed
+  by a background thread when it is full or when it is older than the
+  interval, so that logging threads do not wait for the database
+  unless a second buffer fills up while the first one is being
+  written.
+
   <p>For use as a base class:
 
     <ul>
@@ -131,6 +150,22 @@ public class JDBCAppender extends org.apache.log4j.AppenderSkeleton
   
   private boolean locationInfo = false;
 
+  private boolean prepared = false;
+
+  private long flushInterval = 0;
+
+  /** The statement of the <b>Prepared</b> option and its parameters. */
+  private String preparedSql;
+  private PatternLayout[] parameters;
+
+  /** The statement prepared on the default connection. */
+  private PreparedStatement preparedStatement;
+
+  private Flusher flusher;
+
+  /** The buffer being written by the flusher, null if none. */
+  private ArrayList flushing;
+
   public JDBCAppender() {
     super();
     buffer = new ArrayList(bufferSize);
@@ -165,6 +200,118 @@ public class JDBCAppender extends org.apache.log4j.AppenderSkeleton
   public void setLocationInfo(final boolean flag) {
     locationInfo = flag;
   }
+
+  /**
+   * The <b>Prepared</b> option takes a boolean value. If true, the sql
+   * statement is executed as a <code>PreparedStatement</code> whose
+   * parameters replace its string literals, and buffered events are
+   * sent in batches. The option takes effect when
+   * {@link #activateOptions} is called.
+   *
+   * @since 1.2.18
+   * @param prepared true to use a prepared statement.
+   */
+  public void setPrepared(final boolean prepared) {
+    this.prepared = prepared;
+  }
+
+  /**
+   * Returns value of the <b>Prepared</b> option.
+   *
+   * @since 1.2.18
+   * @return the current value of the <b>Prepared</b> option.
+   */
+  public boolean getPrepared() {
+    return prepared;
+  }
+
+  /**
+   * The <b>FlushInterval</b> option takes a number of milliseconds. If
+   * positive, the buffer is flushed by a background thread once it is
+   * full or once that much time has passed since the last flush. The
+   * default, 0, flushes the buffer from the logging thread once it is
+   * full. The option takes effect when {@link #activateOptions} is
+   * called.
+   *
+   * @since 1.2.18
+   * @param flushInterval interval in milliseconds.
+   */
+  public void setFlushInterval(final long flushInterval) {
+    this.flushInterval = flushInterval;
+  }
+
+  /**
+   * Returns value of the <b>FlushInterval</b> option.
+   *
+   * @since 1.2.18
+   * @return the current value of the <b>FlushInterval</b> option.
+   */
+  public long getFlushInterval() {
+    return flushInterval;
+  }
+
+  /**
+   * Prepares the statement of the <b>Prepared</b> option and starts
+   * the flusher thread of the <b>FlushInterval</b> option.
+   */
+  public void activateOptions() {
+    preparedSql = null;
+    parameters = null;
+    closePreparedStatement();
+    if (prepared) {
+      List patterns = new ArrayList();
+      preparedSql = toPreparedSql(sqlStatement, patterns);
+      if (preparedSql == null) {
+        errorHandler.error("Unterminated string literal in sql [" + sqlStatement + "]");
+      } else {
+        parameters = new PatternLayout[patterns.size()];
+        for (int i = 0; i < parameters.length; i++) {
+          parameters[i] = new PatternLayout((String) patterns.get(i));
+        }
+      }
+    }
+    if (flushInterval > 0 && flusher == null) {
+      flusher = new Flusher();
+      flusher.start();
+    }
+  }
+
+  /**
+   * Replaces each string literal of <code>sql</code> by a parameter
+   * marker and adds its content to <code>literals</code>. Returns null
+   * if a literal is not terminated.
+   */
+  static String toPreparedSql(final String sql, final List literals) {
+    StringBuffer buf = new StringBuffer(sql.length());
+    StringBuffer literal = new StringBuffer();
+    int i = 0;
+    while (i < sql.length()) {
+      char c = sql.charAt(i++);
+      if (c != '\'') {
+        buf.append(c);
+        continue;
+      }
+      literal.setLength(0);
+      while (true) {
+        if (i >= sql.length()) {
+          return null;
+        }
+        c = sql.charAt(i++);
+        if (c == '\'') {
+          if (i < sql.length() && sql.charAt(i) == '\'') {
+            // an escaped quote
+            i++;
+          } else {
+            break;
+          }
+        }
+        literal.append(c);
+      }
+      literals.add(literal.toString());
+      buf.append('?');
+    }
+    return buf.toString();
+  }
   
 
   /**
@@ -180,7 +327,26 @@ public class JDBCAppender extends org.apache.log4j.AppenderSkeleton
     }
     event.getRenderedMessage();
     event.getThrowableStrRep();
-    buffer.add(event);
+    LoggingEvent retained = event.toImmutable();
+
+    if (flusher != null) {
+      // wait while both buffers are full
+      while (buffer.size() >= bufferSize && flushing != null && !closed) {
+        try {
+          wait();
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+          break;
+        }
+      }
+      buffer.add(retained);
+      if (buffer.size() >= bufferSize) {
+        notifyAll();
+      }
+      return;
+    }
+
+    buffer.add(retained);
 
     if (buffer.size() >= bufferSize)
       flushBuffer();
@@ -261,7 +427,12 @@ public class JDBCAppender extends org.apache.log4j.AppenderSkeleton
    */
   public void close()
   {
+    if (flusher != null) {
+      flusher.shutdown();
+      flusher = null;
+    }
     flushBuffer();
+    closePreparedStatement();
 
     try {
       if (connection != null && !connection.isClosed())
@@ -280,6 +451,14 @@ public class JDBCAppender extends org.apache.log4j.AppenderSkeleton
    * If a statement fails the LoggingEvent stays in the buffer!
    */
   public void flushBuffer() {
+    if (preparedSql != null) {
+      if (!buffer.isEmpty()) {
+        executeBatch(buffer);
+        buffer.clear();
+      }
+      return;
+    }
+
     //Do the actual logging
     removes.ensureCapacity(buffer.size());
     for (Iterator i = buffer.iterator(); i.hasNext();) {
@@ -304,6 +483,152 @@ public class JDBCAppender extends org.apache.log4j.AppenderSkeleton
   }
 
 
+  /**
+   * Sends <code>events</code> in a single batch of the prepared
+   * statement. Errors are sent to the errorHandler and the events
+   * are not sent again.
+   */
+  private void executeBatch(final List events) {
+    Connection con = null;
+    PreparedStatement stmt = null;
+    try {
+      con = getConnection();
+      // the statement is kept only on the default connection
+      boolean keep = (con == connection);
+      stmt = keep ? preparedStatement : null;
+      if (stmt == null) {
+        stmt = con.prepareStatement(preparedSql);
+        if (keep) {
+          preparedStatement = stmt;
+        }
+      }
+      for (Iterator i = events.iterator(); i.hasNext();) {
+        LoggingEvent logEvent = (LoggingEvent) i.next();
+        for (int j = 0; j < parameters.length; j++) {
+          stmt.setString(j + 1, parameters[j].format(logEvent));
+        }
+        stmt.addBatch();
+      }
+      stmt.executeBatch();
+      if (!keep) {
+        stmt.close();
+      }
+    } catch (SQLException e) {
+      errorHandler.error("Failed to execute batch", e, ErrorCode.FLUSH_FAILURE);
+      // the statement or the default connection may be broken
+      if (stmt != null) {
+        try {
+          stmt.close();
+        } catch (SQLException ex) {
+          LogLog.debug("Could not close statement.", ex);
+        }
+      }
+      if (stmt == preparedStatement) {
+        preparedStatement = null;
+      }
+      if (con != null && con == connection) {
+        try {
+          connection.close();
+        } catch (SQLException ex) {
+          LogLog.debug("Could not close connection.", ex);
+        }
+        connection = null;
+      }
+    } finally {
+      if (con != null) {
+        closeConnection(con);
+      }
+    }
+  }
+
+  private void closePreparedStatement() {
+    if (preparedStatement != null) {
+      try {
+        preparedStatement.close();
+      } catch (SQLException e) {
+        LogLog.debug("Could not close statement.", e);
+      }
+      preparedStatement = null;
+    }
+  }
+
+  /**
+   * Flushes the buffer in the background when it is full or when the
+   * flush interval has elapsed. The buffer is swapped with an empty
+   * one so that logging can go on while it is written.
+   */
+  private class Flusher extends Thread {
+
+    private boolean stopping = false;
+
+    Flusher() {
+      super("JDBCAppender-flusher");
+      setDaemon(true);
+    }
+
+    void shutdown() {
+      synchronized (JDBCAppender.this) {
+        stopping = true;
+        JDBCAppender.this.notifyAll();
+      }
+      try {
+        join();
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+    }
+
+    public void run() {
+      ArrayList spare = new ArrayList(bufferSize);
+      while (true) {
+        synchronized (JDBCAppender.this) {
+          long deadline = System.currentTimeMillis() + flushInterval;
+          long wait = flushInterval;
+          while (!stopping && buffer.size() < bufferSize && wait > 0) {
+            try {
+              JDBCAppender.this.wait(wait);
+            } catch (InterruptedException e) {
+              return;
+            }
+            wait = deadline - System.currentTimeMillis();
+          }
+          if (buffer.isEmpty()) {
+            if (stopping) {
+              return;
+            }
+            continue;
+          }
+          flushing = buffer;
+          buffer = spare;
+        }
+        try {
+          ArrayList events = flushing;
+          if (preparedSql != null) {
+            executeBatch(events);
+          } else {
+            for (Iterator i = events.iterator(); i.hasNext();) {
+              try {
+                execute(getLogStatement((LoggingEvent) i.next()));
+              } catch (SQLException e) {
+                errorHandler.error("Failed to excute sql", e,
+                                   ErrorCode.FLUSH_FAILURE);
+              }
+            }
+          }
+        } catch (RuntimeException e) {
+          LogLog.error("Could not flush events.", e);
+        } finally {
+          synchronized (JDBCAppender.this) {
+            spare = flushing;
+            spare.clear();
+            flushing = null;
+            JDBCAppender.this.notifyAll();
+          }
+        }
+      }
+    }
+  }
+
   /** closes the appender before disposal */
   public void finalize() {
     close();
@@ -0,0 +1,412 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.log4j.net;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.StreamCorruptedException;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.log4j.Level;
+import org.apache.log4j.helpers.Loader;
+import org.apache.log4j.helpers.LogLog;
+import org.apache.log4j.spi.LocationInfo;
+import org.apache.log4j.spi.LoggingEvent;
+import org.apache.log4j.spi.ThrowableInformation;
+
+/**
+   Reads logging events written by an {@link EventEncoder}.
+
+   <p>Unlike Java serialization, decoding never instantiates classes
+   chosen by the sender, with the exception of {@link Level}
+   subclasses. Malformed input is reported as an
+   <code>IOException</code>.
+
+   <p>A decoder keeps per connection state and must not be shared by
+   several streams or used by several threads at once.
+
+   @since 1.2.18 */
+public final class EventDecoder {
+
+  /** Frames longer than this are rejected as corrupt. */
+  public static final int MAX_FRAME_LENGTH = 16*1024*1024;
+
+  /** Remembers class names which do not provide a level. */
+  private static final Object NO_LEVEL_METHOD = new Object();
+
+  private final InputStream in;
+  private final List strings = new ArrayList();
+  // toLevel(int) methods by class name, or NO_LEVEL_METHOD
+  private final Map levelMethods = new HashMap();
+  private byte[] frame = new byte[512];
+  private byte[] data;
+  private int pos;
+  private int limit;
+  private long lastTimeStamp;
+
+  /**
+     Read and check the stream header from <code>in</code>.  */
+  public
+  EventDecoder(InputStream in) throws IOException {
+    this.in = in;
+    byte[] header = new byte[EventEncoder.HEADER_LENGTH];
+    readFully(header, header.length);
+    checkHeader(header, 0);
+  }
+
+  /**
+     Create a decoder for frames passed to {@link #decode}, the stream
+     header having been checked with {@link #checkHeader}.  */
+  public
+  EventDecoder() {
+    this.in = null;
+  }
+
+  /**
+     Does <code>data</code> hold the start of a binary event stream at
+     <code>offset</code>? At least the length of the magic number must
+     be available.  */
+  public
+  static
+  boolean isBinaryStream(byte[] data, int offset) {
+    for(int i = 0; i < EventEncoder.MAGIC.length; i++) {
+      if(data[offset + i] != EventEncoder.MAGIC[i]) {
+	return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+     Check the {@link EventEncoder#HEADER_LENGTH} bytes of the stream
+     header at <code>offset</code>.  */
+  public
+  static
+  void checkHeader(byte[] data, int offset) throws IOException {
+    if(!isBinaryStream(data, offset)) {
+      throw new StreamCorruptedException("Not a binary event stream.");
+    }
+    int version = data[offset + EventEncoder.MAGIC.length];
+    if(version != EventEncoder.VERSION) {
+      throw new StreamCorruptedException("Unsupported binary event version "
+					 +version+".");
+    }
+  }
+
+  /**
+     Read the next event from the stream.
+
+     @throws EOFException if the stream ends before the next event.  */
+  public
+  LoggingEvent read() throws IOException {
+    int length = 0;
+    for(int shift = 0;; shift += 7) {
+      int b = in.read();
+      if(b < 0) {
+	throw new EOFException();
+      }
+      if(shift > 28) {
+	throw new StreamCorruptedException("Malformed frame length.");
+      }
+      length |= (b & 0x7F) << shift;
+      if((b & 0x80) == 0) {
+	break;
+      }
+    }
+    checkFrameLength(length);
+    if(frame.length < length) {
+      frame = new byte[Math.max(length, frame.length * 2)];
+    }
+    readFully(frame, length);
+    LoggingEvent event = decode(frame, 0, length);
+    if(frame.length > MAX_FRAME_LENGTH / 256) {
+      frame = new byte[512];
+    }
+    return event;
+  }
+
+  /**
+     Check that a frame length read from the stream is acceptable.  */
+  public
+  static
+  void checkFrameLength(int length) throws IOException {
+    if(length < 0 || length > MAX_FRAME_LENGTH) {
+      throw new StreamCorruptedException("Invalid frame length "+length+".");
+    }
+  }
+
+  /**
+     Decode the content of a frame, without its length. Frames must be
+     decoded in the order they were written.  */
+  public
+  LoggingEvent decode(byte[] data, int offset, int length) throws IOException {
+    this.data = data;
+    this.pos = offset;
+    this.limit = offset + length;
+    try {
+      int flags = readVarint();
+      long zigzag = readVarlong();
+      long timeStamp = lastTimeStamp + ((zigzag >>> 1) ^ -(zigzag & 1));
+      lastTimeStamp = timeStamp;
+      int levelInt = readVarint();
+      Level level;
+      if((flags & EventEncoder.CUSTOM_LEVEL) != 0) {
+	level = toLevel(readRef(), levelInt);
+      } else {
+	level = Level.toLevel(levelInt);
+      }
+      String loggerName = readRef();
+      String threadName = readRef();
+      String message = readString();
+      String ndc = null;
+      if((flags & EventEncoder.HAS_NDC) != 0) {
+	ndc = readString();
+      }
+      Map mdc = null;
+      if((flags & EventEncoder.HAS_MDC) != 0) {
+	int n = readCount();
+	mdc = new HashMap(n * 2 + 1);
+	for(int i = 0; i < n; i++) {
+	  String key = readRef();
+	  String value = readString();
+	  if(key != null && value != null) {
+	    mdc.put(key, value);
+	  }
+	}
+      }
+      ThrowableInformation throwable = null;
+      if((flags & EventEncoder.HAS_THROWABLE) != 0) {
+	String[] rep = new String[readCount()];
+	for(int i = 0; i < rep.length; i++) {
+	  rep[i] = readString();
+	}
+	throwable = new ThrowableInformation(rep);
+      }
+      LocationInfo location;
+      if((flags & EventEncoder.HAS_LOCATION) != 0) {
+	String className = readRef();
+	String methodName = readRef();
+	String fileName = readRef();
+	String lineNumber = readRef();
+	location = new LocationInfo(fileName, className, methodName, lineNumber);
+      } else {
+	// as for deserialized events, no location info is available
+	location = new LocationInfo(null, null);
+      }
+      if(pos != limit) {
+	throw new StreamCorruptedException("Unexpected data after event.");
+      }
+      LoggingEvent event = new LoggingEvent(null, null, timeStamp, level,
+					    message, threadName, throwable,
+					    ndc, location, mdc);
+      event.categoryName = loggerName;
+      return event;
+    } finally {
+      this.data = null;
+    }
+  }
+
+  private
+  void readFully(byte[] b, int length) throws IOException {
+    int n = 0;
+    while(n < length) {
+      int read = in.read(b, n, length - n);
+      if(read < 0) {
+	throw new EOFException();
+      }
+      n += read;
+    }
+  }
+
+  private
+  int readByte() throws IOException {
+    if(pos >= limit) {
+      throw new StreamCorruptedException("Truncated event.");
+    }
+    return data[pos++] & 0xFF;
+  }
+
+  private
+  int readVarint() throws IOException {
+    int value = 0;
+    for(int shift = 0; shift < 35; shift += 7) {
+      int b = readByte();
+      value |= (b & 0x7F) << shift;
+      if((b & 0x80) == 0) {
+	return value;
+      }
+    }
+    throw new StreamCorruptedException("Malformed integer.");
+  }
+
+  private
+  long readVarlong() throws IOException {
+    long value = 0;
+    for(int shift = 0; shift < 70; shift += 7) {
+      int b = readByte();
+      value |= (long) (b & 0x7F) << shift;
+      if((b & 0x80) == 0) {
+	return value;
+      }
+    }
+    throw new StreamCorruptedException("Malformed integer.");
+  }
+
+  /**
+     Read a number of items, each of which takes at least one byte.  */
+  private
+  int readCount() throws IOException {
+    int n = readVarint();
+    if(n < 0 || n > limit - pos) {
+      throw new StreamCorruptedException("Invalid count "+n+".");
+    }
+    return n;
+  }
+
+  private
+  String readString() throws IOException {
+    int n = readVarint();
+    if(n == 0) {
+      return null;
+    }
+    return readChars(n - 1);
+  }
+
+  private
+  String readRef() throws IOException {
+    int ref = readVarint();
+    if(ref == EventEncoder.NULL_REF) {
+      return null;
+    }
+    if(ref == EventEncoder.NEW_REF) {
+      String s = readChars(readVarint());
+      if(strings.size() < EventEncoder.MAX_STRINGS) {
+	strings.add(s);
+      }
+      return s;
+    }
+    int index = ref - 2;
+    if(index < 0 || index >= strings.size()) {
+      throw new StreamCorruptedException("Invalid string reference "+ref+".");
+    }
+    return (String) strings.get(index);
+  }
+
+  private
+  String readChars(int length) throws IOException {
+    if(length < 0 || length > limit - pos) {
+      throw new StreamCorruptedException("Invalid string length "+length+".");
+    }
+    boolean ascii = true;
+    for(int i = pos; i < pos + length; i++) {
+      if(data[i] < 0) {
+	ascii = false;
+	break;
+      }
+    }
+    String s;
+    if(ascii) {
+      char[] chars = new char[length];
+      for(int i = 0; i < length; i++) {
+	chars[i] = (char) data[pos + i];
+      }
+      s = new String(chars);
+    } else {
+      s = new String(data, pos, length, "UTF-8");
+    }
+    pos += length;
+    return s;
+  }
+
+  /**
+     Convert a level of a {@link Level} subclass as done when
+     deserializing events. Classes are not initialized unless they
+     extend {@link Level}, and the outcome of the lookup is remembered
+     for every class name, whether or not a method was found.  */
+  private
+  Level toLevel(String className, int levelInt) {
+    if(className == null) {
+      return Level.toLevel(levelInt);
+    }
+    Object cached = levelMethods.get(className);
+    if(cached == null) {
+      cached = findLevelMethod(className);
+      if(levelMethods.size() < EventEncoder.MAX_STRINGS) {
+	levelMethods.put(className, cached);
+      }
+    }
+    if(cached == NO_LEVEL_METHOD) {
+      return Level.toLevel(levelInt);
+    }
+    try {
+      Method m = (Method) cached;
+      return (Level) m.invoke(null, new Object[] { new Integer(levelInt) });
+    } catch(InvocationTargetException e) {
+      if (e.getTargetException() instanceof InterruptedException
+	  || e.getTargetException() instanceof InterruptedIOException) {
+	Thread.currentThread().interrupt();
+      }
+      LogLog.warn("Level decoding failed, reverting to default.", e);
+    } catch(IllegalAccessException e) {
+      LogLog.warn("Level decoding failed, reverting to default.", e);
+    } catch(RuntimeException e) {
+      LogLog.warn("Level decoding failed, reverting to default.", e);
+    }
+    return Level.toLevel(levelInt);
+  }
+
+  /**
+     Return the static <code>toLevel(int)</code> method of the
+     {@link Level} subclass named <code>className</code>, or
+     {@link #NO_LEVEL_METHOD} if there is none.  */
+  private
+  static
+  Object findLevelMethod(String className) {
+    try {
+      Class clazz = Loader.loadClass(className, false);
+      if(!Level.class.isAssignableFrom(clazz)) {
+	LogLog.warn("["+className+"] is not a Level, reverting to default.");
+	return NO_LEVEL_METHOD;
+      }
+      Method m = clazz.getDeclaredMethod("toLevel", new Class[] { int.class });
+      if(!Modifier.isStatic(m.getModifiers())
+	 || !Level.class.isAssignableFrom(m.getReturnType())) {
+	LogLog.warn("["+className+"] has no static toLevel(int) method, reverting to default.");
+	return NO_LEVEL_METHOD;
+      }
+      return m;
+    } catch(ClassNotFoundException e) {
+      LogLog.warn("Level decoding failed, reverting to default.", e);
+    } catch(NoSuchMethodException e) {
+      LogLog.warn("Level decoding failed, reverting to default.", e);
+    } catch(RuntimeException e) {
+      LogLog.warn("Level decoding failed, reverting to default.", e);
+    } catch(LinkageError e) {
+      LogLog.warn("Level decoding failed, reverting to default.", e);
+    }
+    return NO_LEVEL_METHOD;
+  }
+}
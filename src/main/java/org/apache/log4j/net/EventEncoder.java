@@ -0,0 +1,275 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.log4j.net;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+
+import org.apache.log4j.Level;
+import org.apache.log4j.spi.LocationInfo;
+import org.apache.log4j.spi.LoggingEvent;
+
+/**
+   Writes logging events to a stream in the compact binary format
+   read by {@link EventDecoder}, as an alternative to Java
+   serialization.
+
+   <p>The stream starts with the four bytes <code>L4JB</code> and a
+   version byte. Each event follows as a frame made of its length and
+   its content. Integers are written as variable length quantities of
+   7 bits per byte, least significant group first, and time stamps as
+   the zigzag encoded difference with the previous event. Each frame
+   contains, in order:
+   <ul>
+   <li>the flags telling which optional sections are present,</li>
+   <li>the time stamp, the level and, for levels which are not
+   instances of {@link Level}, the name of their class,</li>
+   <li>the logger name, the thread name and the rendered message,</li>
+   <li>the optional NDC, MDC, throwable and location sections.</li>
+   </ul>
+
+   <p>Names which recur, such as logger names, thread names, MDC keys
+   and location information, are sent once per connection and then
+   referred to by their index in a table of up to {@link #MAX_STRINGS}
+   entries. MDC values are sent as strings.
+
+   <p>An encoder keeps per connection state and must not be shared by
+   several streams or used by several threads at once.
+
+   @since 1.2.18 */
+public final class EventEncoder {
+
+  /** The bytes starting a stream of binary events. */
+  static final byte[] MAGIC = { 'L', '4', 'J', 'B' };
+
+  /** The version of the format written. */
+  static final int VERSION = 1;
+
+  /** The number of bytes of the stream header. */
+  public static final int HEADER_LENGTH = MAGIC.length + 1;
+
+  /** The maximum number of strings remembered per connection. */
+  public static final int MAX_STRINGS = 4096;
+
+  static final int HAS_NDC = 1;
+  static final int HAS_MDC = 2;
+  static final int HAS_THROWABLE = 4;
+  static final int HAS_LOCATION = 8;
+  static final int CUSTOM_LEVEL = 16;
+
+  /** String references: null, a new string, or a table index + 2. */
+  static final int NULL_REF = 0;
+  static final int NEW_REF = 1;
+
+  /** Larger buffers are released after use. */
+  private static final int MAX_RETAINED_BUFFER = 64*1024;
+
+  private final OutputStream out;
+  private final Map strings = new HashMap();
+  private byte[] buf = new byte[512];
+  private int count;
+  private final byte[] lengthBuf = new byte[5];
+  private long lastTimeStamp;
+
+  /**
+     Write the stream header to <code>out</code>. The stream should
+     be buffered.  */
+  public
+  EventEncoder(OutputStream out) throws IOException {
+    this.out = out;
+    out.write(MAGIC);
+    out.write(VERSION);
+  }
+
+  /**
+     Write <code>event</code>, including its location information if
+     <code>locationInfo</code> is true.  */
+  public
+  void write(LoggingEvent event, boolean locationInfo) throws IOException {
+    String ndc = event.getNDC();
+    Map mdc = event.getProperties();
+    String[] rep = event.getThrowableStrRep();
+    LocationInfo location = locationInfo ? event.getLocationInformation() : null;
+    Level level = event.getLevel();
+
+    int flags = 0;
+    if(ndc != null) {
+      flags |= HAS_NDC;
+    }
+    if(!mdc.isEmpty()) {
+      flags |= HAS_MDC;
+    }
+    if(rep != null) {
+      flags |= HAS_THROWABLE;
+    }
+    if(location != null) {
+      flags |= HAS_LOCATION;
+    }
+    if(level.getClass() != Level.class) {
+      flags |= CUSTOM_LEVEL;
+    }
+
+    count = 0;
+    writeVarint(flags);
+    long delta = event.timeStamp - lastTimeStamp;
+    writeVarlong((delta << 1) ^ (delta >> 63));
+    lastTimeStamp = event.timeStamp;
+    writeVarint(level.toInt());
+    if((flags & CUSTOM_LEVEL) != 0) {
+      writeRef(level.getClass().getName());
+    }
+    writeRef(event.getLoggerName());
+    writeRef(event.getThreadName());
+    writeString(event.getRenderedMessage());
+    if(ndc != null) {
+      writeString(ndc);
+    }
+    if(!mdc.isEmpty()) {
+      writeVarint(mdc.size());
+      for(Iterator i = mdc.entrySet().iterator(); i.hasNext();) {
+	Map.Entry entry = (Map.Entry) i.next();
+	writeRef(String.valueOf(entry.getKey()));
+	writeString(String.valueOf(entry.getValue()));
+      }
+    }
+    if(rep != null) {
+      writeVarint(rep.length);
+      for(int i = 0; i < rep.length; i++) {
+	writeString(rep[i]);
+      }
+    }
+    if(location != null) {
+      writeRef(location.getClassName());
+      writeRef(location.getMethodName());
+      writeRef(location.getFileName());
+      writeRef(location.getLineNumber());
+    }
+
+    int n = 0;
+    int length = count;
+    while((length & ~0x7F) != 0) {
+      lengthBuf[n++] = (byte) ((length & 0x7F) | 0x80);
+      length >>>= 7;
+    }
+    lengthBuf[n++] = (byte) length;
+    out.write(lengthBuf, 0, n);
+    out.write(buf, 0, count);
+    if(buf.length > MAX_RETAINED_BUFFER) {
+      buf = new byte[512];
+    }
+  }
+
+  public
+  void flush() throws IOException {
+    out.flush();
+  }
+
+  public
+  void close() throws IOException {
+    out.close();
+  }
+
+  private
+  void ensureCapacity(int n) {
+    if(count + n > buf.length) {
+      byte[] newBuf = new byte[Math.max(buf.length * 2, count + n)];
+      System.arraycopy(buf, 0, newBuf, 0, count);
+      buf = newBuf;
+    }
+  }
+
+  private
+  void writeVarint(int value) {
+    ensureCapacity(5);
+    while((value & ~0x7F) != 0) {
+      buf[count++] = (byte) ((value & 0x7F) | 0x80);
+      value >>>= 7;
+    }
+    buf[count++] = (byte) value;
+  }
+
+  private
+  void writeVarlong(long value) {
+    ensureCapacity(10);
+    while((value & ~0x7FL) != 0) {
+      buf[count++] = (byte) ((value & 0x7F) | 0x80);
+      value >>>= 7;
+    }
+    buf[count++] = (byte) value;
+  }
+
+  /**
+     Write a string which is not remembered: 0 for null, otherwise its
+     length in bytes plus one followed by its UTF-8 bytes.  */
+  private
+  void writeString(String s) throws IOException {
+    if(s == null) {
+      writeVarint(0);
+    } else {
+      writeChars(s, 1);
+    }
+  }
+
+  /**
+     Write a reference to a remembered string.  */
+  private
+  void writeRef(String s) throws IOException {
+    if(s == null) {
+      writeVarint(NULL_REF);
+      return;
+    }
+    Integer index = (Integer) strings.get(s);
+    if(index != null) {
+      writeVarint(index.intValue() + 2);
+      return;
+    }
+    writeVarint(NEW_REF);
+    writeChars(s, 0);
+    if(strings.size() < MAX_STRINGS) {
+      strings.put(s, new Integer(strings.size()));
+    }
+  }
+
+  private
+  void writeChars(String s, int lengthBias) throws IOException {
+    int len = s.length();
+    boolean ascii = true;
+    for(int i = 0; i < len; i++) {
+      if(s.charAt(i) >= 0x80) {
+	ascii = false;
+	break;
+      }
+    }
+    if(ascii) {
+      writeVarint(len + lengthBias);
+      ensureCapacity(len);
+      for(int i = 0; i < len; i++) {
+	buf[count++] = (byte) s.charAt(i);
+      }
+    } else {
+      byte[] bytes = s.getBytes("UTF-8");
+      writeVarint(bytes.length + lengthBias);
+      ensureCapacity(bytes.length);
+      System.arraycopy(bytes, 0, buf, count, bytes.length);
+      count += bytes.length;
+    }
+  }
+}
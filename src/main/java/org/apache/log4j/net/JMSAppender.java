@@ -309,7 +309,7 @@ public class JMSAppender extends AppenderSkeleton {
       if(locationInfo) {
 	event.getLocationInformation();
       }
-      msg.setObject(event);
+      msg.setObject(event.toImmutable());
       topicPublisher.publish(msg);
     } catch(JMSException e) {
       errorHandler.error("Could not publish message in JMSAppender ["+name+"].", e,
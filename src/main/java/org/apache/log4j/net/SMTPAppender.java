@@ -20,6 +20,7 @@ package org.apache.log4j.net;
 import org.apache.log4j.AppenderSkeleton;
 import org.apache.log4j.Layout;
 import org.apache.log4j.Level;
+import org.apache.log4j.Logger;
 import org.apache.log4j.helpers.CyclicBuffer;
 import org.apache.log4j.helpers.LogLog;
 import org.apache.log4j.helpers.OptionConverter;
@@ -74,6 +75,10 @@ import java.util.Properties;
 
    Since 1.2.16, SMTP over SSL is supported by setting SMTPProtocol to "smpts".
 
+   Since 1.2.18, e-mails may be sent by a background thread by setting
+   the <b>Asynchronous</b> option, and the e-mails of triggers close
+   together merged into one by setting the <b>DigestInterval</b> option.
+
    @author Ceki G&uuml;lc&uuml;
    @since 1.0 */
 public class SMTPAppender extends AppenderSkeleton
@@ -102,6 +107,9 @@ public class SMTPAppender extends AppenderSkeleton
   private int bufferSize = 512;
   private boolean locationInfo = false;
   private boolean sendOnClose = false;
+  private boolean asynchronous = false;
+  private long digestInterval = 0;
+  private Sender sender;
 
   protected CyclicBuffer cb = new CyclicBuffer(bufferSize);
   protected Message msg;
@@ -153,6 +161,16 @@ public class SMTPAppender extends AppenderSkeleton
      if (evaluator instanceof OptionHandler) {
          ((OptionHandler) evaluator).activateOptions();
      }
+
+     if (sender != null) {
+       sender.shutdown();
+       sender = null;
+     }
+     if (asynchronous) {
+       sender = new Sender();
+       sender.setDaemon(true);
+       sender.start();
+     }
   }
   
   /**
@@ -251,10 +269,25 @@ public class SMTPAppender extends AppenderSkeleton
     }
     event.getRenderedMessage();
     event.getThrowableStrRep();
-    cb.add(event);
+    cb.add(event.toImmutable());
     if(evaluator.isTriggeringEvent(event)) {
-      sendBuffer();
+      if(sender != null) {
+        sender.submit(takeBuffer());
+      } else {
+        sendBuffer();
+      }
+    }
+  }
+
+  /**
+     Remove the events of the cyclic buffer, oldest first. */
+  private
+  LoggingEvent[] takeBuffer() {
+    LoggingEvent[] events = new LoggingEvent[cb.length()];
+    for(int i = 0; i < events.length; i++) {
+      events[i] = cb.get();
     }
+    return events;
   }
 
  /**
@@ -290,7 +323,22 @@ public class SMTPAppender extends AppenderSkeleton
   void close() {
     this.closed = true;
     if (sendOnClose && cb.length() > 0) {
+      if (sender != null) {
+        sender.submit(takeBuffer());
+      } else {
         sendBuffer();
+      }
+    }
+    if (sender != null) {
+      sender.shutdown();
+      try {
+        sender.join();
+      } catch(InterruptedException e) {
+        Thread.currentThread().interrupt();
+        LogLog.error("Got an InterruptedException while waiting for the "
+                     + "sender to finish.", e);
+      }
+      sender = null;
     }
   }
 
@@ -340,14 +388,25 @@ public class SMTPAppender extends AppenderSkeleton
 	  // Note: this code already owns the monitor for this
 	  // appender. This frees us from needing to synchronize on 'cb'.
 	  
+      return formatBody(takeBuffer());
+  }
+
+  /**
+   * Layout body of email message containing the given events.
+   * This is used for every message sent by the <b>Asynchronous</b>
+   * sender, on the thread of the sender.
+   * @param events events, oldest first.
+   * @return message body.
+   * @since 1.2.18
+   */
+  protected String formatBody(final LoggingEvent[] events) {
       StringBuffer sbuf = new StringBuffer();
       String t = layout.getHeader();
       if(t != null)
 	sbuf.append(t);
-      int len =  cb.length();
-      for(int i = 0; i < len; i++) {
+      for(int i = 0; i < events.length; i++) {
 	//sbuf.append(MimeUtility.encodeText(layout.format(cb.get())));
-	LoggingEvent event = cb.get();
+	LoggingEvent event = events[i];
 	sbuf.append(layout.format(event));
 	if(layout.ignoresThrowable()) {
 	  String[] s = event.getThrowableStrRep();
@@ -374,7 +433,18 @@ public class SMTPAppender extends AppenderSkeleton
   void sendBuffer() {
 
     try {
-      String s = formatBody();
+      send(formatBody());
+    } catch(MessagingException e) {
+      LogLog.error("Error occured while sending e-mail notification.", e);
+    } catch(RuntimeException e) {
+      LogLog.error("Error occured while sending e-mail notification.", e);
+    }
+  }
+
+  /**
+     Send <code>s</code> as the body of the message. */
+  private
+  void send(String s) throws MessagingException {
       boolean allAscii = true;
       for(int i = 0; i < s.length() && allAscii; i++) {
           allAscii = s.charAt(i) <= 0x7F;
@@ -414,11 +484,6 @@ public class SMTPAppender extends AppenderSkeleton
 
       msg.setSentDate(new Date());
       Transport.send(msg);
-    } catch(MessagingException e) {
-      LogLog.error("Error occured while sending e-mail notification.", e);
-    } catch(RuntimeException e) {
-      LogLog.error("Error occured while sending e-mail notification.", e);
-    }
   }
 
 
@@ -771,6 +836,159 @@ public class SMTPAppender extends AppenderSkeleton
         sendOnClose = val;
   }
 
+    /**
+     * Get asynchronous.
+     *
+     * @return if true e-mails are sent by a background thread.
+     * @since 1.2.18
+     */
+  public final boolean getAsynchronous() {
+        return asynchronous;
+  }
+
+    /**
+     * Set asynchronous. When true, the events buffered when an e-mail
+     * is triggered are handed to a background thread which sends
+     * them, so that the logging thread never waits for the SMTP
+     * server. The sender keeps at most <b>BufferSize</b> events waiting
+     * to be sent; older events are discarded and a summary of them
+     * is sent instead. Takes effect when {@link #activateOptions} is
+     * called.
+     *
+     * @param val if true e-mails are sent by a background thread.
+     * @since 1.2.18
+     */
+  public final void setAsynchronous(final boolean val) {
+        asynchronous = val;
+  }
+
+    /**
+     * Get digest interval.
+     *
+     * @return minimum number of milliseconds between two e-mails.
+     * @since 1.2.18
+     */
+  public final long getDigestInterval() {
+        return digestInterval;
+  }
+
+    /**
+     * Set digest interval. With the <b>Asynchronous</b> option, at most
+     * one e-mail is sent per interval: the events of the triggers
+     * fired until the interval has elapsed since the previous e-mail
+     * are merged into a single digest e-mail. The default value is 0,
+     * which sends an e-mail as soon as the sender is idle.
+     *
+     * @param val minimum number of milliseconds between two e-mails.
+     * @since 1.2.18
+     */
+  public final void setDigestInterval(final long val) {
+        digestInterval = val;
+  }
+
+  /**
+     The Sender sends the events submitted by {@link #append} on its
+     own thread. Events submitted while an e-mail is being sent, or
+     before <code>digestInterval</code> has elapsed since the previous
+     e-mail, are sent together in the next e-mail.
+
+     @since 1.2.18
+  */
+  class Sender extends Thread {
+
+    private final CyclicBuffer pending = new CyclicBuffer(bufferSize);
+    private int discarded = 0;
+    private LoggingEvent maxDiscarded;
+    private boolean stopping = false;
+
+    Sender() {
+      super("SMTPAppender-sender");
+    }
+
+    synchronized
+    void submit(LoggingEvent[] events) {
+      for(int i = 0; i < events.length; i++) {
+        if(pending.length() == pending.getMaxSize()) {
+          LoggingEvent oldest = pending.get();
+          if(maxDiscarded == null
+             || oldest.getLevel().toInt() > maxDiscarded.getLevel().toInt()) {
+            maxDiscarded = oldest;
+          }
+          discarded++;
+        }
+        pending.add(events[i]);
+      }
+      notifyAll();
+    }
+
+    /**
+       Send the events left without waiting for the digest interval,
+       then stop.  */
+    synchronized
+    void shutdown() {
+      stopping = true;
+      notifyAll();
+    }
+
+    public
+    void run() {
+      long lastSent = 0;
+      while(true) {
+        LoggingEvent[] events;
+        synchronized(this) {
+          try {
+            while(!stopping) {
+              long delay = lastSent + digestInterval - System.currentTimeMillis();
+              if(pending.length() == 0) {
+                wait();
+              } else if(delay > 0) {
+                wait(delay);
+              } else {
+                break;
+              }
+            }
+          } catch(InterruptedException e) {
+            LogLog.debug("Sender interrupted.");
+            stopping = true;
+          }
+          if(pending.length() == 0) {
+            break;
+          }
+          events = takePending();
+        }
+        try {
+          send(formatBody(events));
+        } catch(MessagingException e) {
+          LogLog.error("Error occured while sending e-mail notification.", e);
+        } catch(RuntimeException e) {
+          LogLog.error("Error occured while sending e-mail notification.", e);
+        }
+        lastSent = System.currentTimeMillis();
+      }
+    }
+
+    /**
+       Remove the pending events, preceded by a summary of the
+       discarded ones if any.  */
+    private
+    LoggingEvent[] takePending() {
+      int offset = discarded > 0 ? 1 : 0;
+      LoggingEvent[] events = new LoggingEvent[pending.length() + offset];
+      if(discarded > 0) {
+        String msg = "Discarded " + discarded
+          + " messages due to full event buffer including: " + maxDiscarded.getMessage();
+        events[0] = new LoggingEvent(
+          "org.apache.log4j.net.SMTPAppender.DONT_REPORT_LOCATION",
+          Logger.getLogger(maxDiscarded.getLoggerName()), maxDiscarded.getLevel(), msg, null);
+        discarded = 0;
+        maxDiscarded = null;
+      }
+      for(int i = offset; i < events.length; i++) {
+        events[i] = pending.get();
+      }
+      return events;
+    }
+  }
 }
 
 class DefaultEvaluator implements TriggeringEventEvaluator {
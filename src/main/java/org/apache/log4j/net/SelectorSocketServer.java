@@ -0,0 +1,586 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.log4j.net;
+
+import java.io.IOException;
+import java.io.StreamCorruptedException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedSelectorException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
+
+import org.apache.log4j.LogManager;
+import org.apache.log4j.Logger;
+import org.apache.log4j.PropertyConfigurator;
+import org.apache.log4j.spi.LoggerRepository;
+import org.apache.log4j.xml.DOMConfigurator;
+
+/**
+   A log server which serves all its clients with a fixed number of
+   threads, where {@link SimpleSocketServer} starts a {@link
+   SocketNode} thread per client.
+
+   <p>A single thread accepts the connections and reads the frames of
+   the binary format written by a {@link SocketAppender} whose
+   <b>WireFormat</b> option is <code>binary</code>. The frames are
+   decoded and logged by a fixed pool of worker threads, in the order
+   each client sent them. When the frames received from a client but
+   not logged yet exceed <b>MaxPendingBytes</b>, the server stops
+   reading from that client until the workers catch up, which in turn
+   slows the client down through TCP flow control.
+
+   <p>Serialized events cannot be read incrementally, so clients
+   sending them are still served by a {@link SocketNode} thread each.
+
+   <pre>
+   <b>Usage:</b> java org.apache.log4j.net.SelectorSocketServer port configFile [workers]
+
+   where <em>port</em> is a port number where the server listens,
+   <em>configFile</em> is a configuration file fed to the {@link
+   PropertyConfigurator} or to {@link DOMConfigurator} if an XML file
+   and <em>workers</em> is the number of worker threads.
+   </pre>
+
+   @since 1.2.18 */
+public class SelectorSocketServer implements Runnable {
+
+  static Logger logger = Logger.getLogger(SelectorSocketServer.class);
+
+  /** The default number of worker threads. */
+  public static final int DEFAULT_WORKERS = 4;
+
+  /** The default value of the <b>MaxPendingBytes</b> option. */
+  public static final int DEFAULT_MAX_PENDING_BYTES = 1024*1024;
+
+  private static final int BUFFER_SIZE = 8192;
+
+  /** The number of frames a worker logs before serving another client. */
+  private static final int BATCH_SIZE = 64;
+
+  private final LoggerRepository repository;
+  private final ServerSocketChannel serverChannel;
+  private final Selector selector;
+  private final int workerCount;
+  /** Connections with frames to log, in the order they became ready. */
+  private final LinkedList ready = new LinkedList();
+  /** Connections which may be read again. */
+  private final List resumed = new ArrayList();
+  /** Connections of clients sending serialized events. */
+  private final List handOffs = new ArrayList();
+  /** Connections served by a {@link SocketNode} thread, guarded by itself. */
+  private final List nodes = new ArrayList();
+  private int maxPendingBytes = DEFAULT_MAX_PENDING_BYTES;
+  private boolean running;
+  private volatile boolean closed;
+
+  /**
+     Create a server listening on <code>port</code>, or on any free
+     port if <code>port</code> is 0, which logs the events it receives
+     in <code>repository</code>. The server is started by {@link
+     #run}.  */
+  public
+  SelectorSocketServer(int port, LoggerRepository repository,
+		       int workers) throws IOException {
+    if(workers < 1) {
+      throw new IllegalArgumentException("At least one worker is required.");
+    }
+    this.repository = repository;
+    this.workerCount = workers;
+    selector = Selector.open();
+    serverChannel = ServerSocketChannel.open();
+    try {
+      serverChannel.socket().bind(new InetSocketAddress(port));
+      serverChannel.configureBlocking(false);
+      serverChannel.register(selector, SelectionKey.OP_ACCEPT);
+    } catch(IOException e) {
+      release();
+      throw e;
+    }
+  }
+
+  /**
+     The <b>MaxPendingBytes</b> option sets the size of the frames
+     received from a client and not logged yet above which the server
+     stops reading from the client. The default is one megabyte. It
+     should be set before the server is started.  */
+  public
+  void setMaxPendingBytes(int maxPendingBytes) {
+    this.maxPendingBytes = maxPendingBytes;
+  }
+
+  /**
+     Returns value of the <b>MaxPendingBytes</b> option.  */
+  public
+  int getMaxPendingBytes() {
+    return maxPendingBytes;
+  }
+
+  /**
+     The port the server listens on.  */
+  public
+  int getLocalPort() {
+    return serverChannel.socket().getLocalPort();
+  }
+
+  /**
+     Accept and read connections until {@link #close} is called.  */
+  public
+  void run() {
+    synchronized(this) {
+      if(closed) {
+	return;
+      }
+      running = true;
+    }
+    Thread[] workers = new Thread[workerCount];
+    for(int i = 0; i < workerCount; i++) {
+      workers[i] = new Thread(new Worker(), "SelectorSocketServer-worker-"+i);
+      workers[i].setDaemon(true);
+      workers[i].start();
+    }
+    try {
+      while(!closed) {
+	selector.select();
+	resumeReading();
+	Iterator i = selector.selectedKeys().iterator();
+	while(i.hasNext()) {
+	  SelectionKey key = (SelectionKey) i.next();
+	  i.remove();
+	  if(!key.isValid()) {
+	    continue;
+	  }
+	  if(key.isAcceptable()) {
+	    accept();
+	  } else if(key.isReadable()) {
+	    ((Connection) key.attachment()).read();
+	  }
+	}
+	if(!handOffs.isEmpty()) {
+	  handOff();
+	}
+      }
+    } catch(ClosedSelectorException e) {
+      // closed
+    } catch(IOException e) {
+      logger.error("Log server failed.", e);
+    } finally {
+      closed = true;
+      synchronized(ready) {
+	ready.notifyAll();
+      }
+      release();
+      join(workers);
+    }
+  }
+
+  /**
+     Stop the server and close all its connections. The thread
+     running the server ends once the other threads of the server
+     have ended.  */
+  public
+  void close() {
+    synchronized(this) {
+      closed = true;
+      if(!running) {
+	release();
+	return;
+      }
+    }
+    selector.wakeup();
+  }
+
+  private
+  void release() {
+    Object[] handedOff;
+    synchronized(nodes) {
+      handedOff = nodes.toArray();
+    }
+    for(int i = 0; i < handedOff.length; i++) {
+      ((Connection) handedOff[i]).close();
+    }
+    try {
+      if(selector.isOpen()) {
+	for(Iterator i = selector.keys().iterator(); i.hasNext();) {
+	  ((SelectionKey) i.next()).channel().close();
+	}
+	selector.close();
+      }
+      serverChannel.close();
+    } catch(IOException e) {
+      logger.info("Could not close the log server.", e);
+    }
+  }
+
+  private
+  void accept() throws IOException {
+    SocketChannel channel = serverChannel.accept();
+    if(channel == null) {
+      return;
+    }
+    logger.info("Connected to client at " + channel.socket().getInetAddress());
+    channel.configureBlocking(false);
+    Connection connection = new Connection(channel);
+    connection.key = channel.register(selector, SelectionKey.OP_READ, connection);
+  }
+
+  private
+  void resumeReading() {
+    Object[] connections;
+    synchronized(resumed) {
+      if(resumed.isEmpty()) {
+	return;
+      }
+      connections = resumed.toArray();
+      resumed.clear();
+    }
+    for(int i = 0; i < connections.length; i++) {
+      Connection connection = (Connection) connections[i];
+      synchronized(connection) {
+	if(!connection.paused && connection.key.isValid()) {
+	  connection.key.interestOps(SelectionKey.OP_READ);
+	}
+      }
+    }
+  }
+
+  /**
+     Start a {@link SocketNode} thread for each client sending
+     serialized events.  */
+  private
+  void handOff() throws IOException {
+    // deregister the cancelled keys before blocking mode can be set
+    selector.selectNow();
+    for(Iterator i = handOffs.iterator(); i.hasNext();) {
+      final Connection connection = (Connection) i.next();
+      try {
+	connection.channel.configureBlocking(true);
+	connection.node = new Thread(new Runnable() {
+	    public void run() {
+	      try {
+		new SocketNode(connection.channel.socket(), repository,
+			       connection.head).run();
+	      } finally {
+		synchronized(nodes) {
+		  nodes.remove(connection);
+		}
+	      }
+	    }
+	  }, "SelectorSocketServer-" + getLocalPort());
+	synchronized(nodes) {
+	  nodes.add(connection);
+	}
+	connection.node.start();
+      } catch(IOException e) {
+	logger.info("Caught java.io.IOException: "+e);
+	connection.close();
+      }
+    }
+    handOffs.clear();
+  }
+
+  /**
+     Wait for the workers and the threads serving serialized events
+     to end.  */
+  private
+  void join(Thread[] workers) {
+    Object[] handedOff;
+    synchronized(nodes) {
+      handedOff = nodes.toArray();
+    }
+    try {
+      for(int i = 0; i < workers.length; i++) {
+	workers[i].join();
+      }
+      for(int i = 0; i < handedOff.length; i++) {
+	((Connection) handedOff[i]).node.join();
+      }
+    } catch(InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  private
+  void schedule(Connection connection) {
+    synchronized(ready) {
+      ready.addLast(connection);
+      ready.notify();
+    }
+  }
+
+  private
+  void resume(Connection connection) {
+    synchronized(resumed) {
+      resumed.add(connection);
+    }
+    selector.wakeup();
+  }
+
+  /**
+     A client connection. Its buffer and the reading of frames belong
+     to the selector thread, the decoder to the worker logging its
+     frames, of which there is at most one at a time.  */
+  final class Connection {
+
+    final SocketChannel channel;
+    SelectionKey key;
+    byte[] head;
+    /** The thread serving a client sending serialized events. */
+    Thread node;
+    private ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+    private EventDecoder decoder;
+    private boolean failed;
+    // guarded by this
+    private final LinkedList frames = new LinkedList();
+    private int pendingBytes;
+    private boolean scheduled;
+    boolean paused;
+
+    Connection(SocketChannel channel) {
+      this.channel = channel;
+    }
+
+    void read() {
+      try {
+	if(channel.read(buffer) < 0) {
+	  logger.info("Client at "+channel.socket().getInetAddress()
+		      +" closed the connection.");
+	  close();
+	  return;
+	}
+	buffer.flip();
+	readFrames();
+	if(head != null) {
+	  return;
+	}
+	buffer.compact();
+	if(!buffer.hasRemaining()) {
+	  // a frame longer than the buffer
+	  ByteBuffer larger = ByteBuffer.allocate(Math.min(buffer.capacity() * 2,
+							   EventDecoder.MAX_FRAME_LENGTH + 5));
+	  buffer.flip();
+	  larger.put(buffer);
+	  buffer = larger;
+	} else if(buffer.position() == 0 && buffer.capacity() > BUFFER_SIZE) {
+	  buffer = ByteBuffer.allocate(BUFFER_SIZE);
+	}
+      } catch(IOException e) {
+	logger.info("Caught java.io.IOException: "+e);
+	logger.info("Closing connection.");
+	close();
+      }
+    }
+
+    private
+    void readFrames() throws IOException {
+      if(decoder == null) {
+	if(buffer.remaining() < EventEncoder.MAGIC.length) {
+	  return;
+	}
+	if(!EventDecoder.isBinaryStream(buffer.array(), buffer.position())) {
+	  key.cancel();
+	  head = new byte[buffer.remaining()];
+	  buffer.get(head);
+	  handOffs.add(this);
+	  return;
+	}
+	if(buffer.remaining() < EventEncoder.HEADER_LENGTH) {
+	  return;
+	}
+	EventDecoder.checkHeader(buffer.array(), buffer.position());
+	buffer.position(buffer.position() + EventEncoder.HEADER_LENGTH);
+	decoder = new EventDecoder();
+      }
+
+      List received = new ArrayList();
+      int receivedBytes = 0;
+      while(true) {
+	int start = buffer.position();
+	int length = 0;
+	boolean complete = false;
+	for(int shift = 0; buffer.hasRemaining(); shift += 7) {
+	  if(shift > 28) {
+	    throw new StreamCorruptedException("Malformed frame length.");
+	  }
+	  int b = buffer.get();
+	  length |= (b & 0x7F) << shift;
+	  if((b & 0x80) == 0) {
+	    complete = true;
+	    break;
+	  }
+	}
+	if(complete) {
+	  EventDecoder.checkFrameLength(length);
+	}
+	if(!complete || buffer.remaining() < length) {
+	  buffer.position(start);
+	  break;
+	}
+	byte[] frame = new byte[length];
+	buffer.get(frame);
+	received.add(frame);
+	receivedBytes += length;
+      }
+
+      if(received.isEmpty()) {
+	return;
+      }
+      boolean schedule = false;
+      synchronized(this) {
+	frames.addAll(received);
+	pendingBytes += receivedBytes;
+	if(!scheduled) {
+	  scheduled = true;
+	  schedule = true;
+	}
+	if(!paused && pendingBytes > maxPendingBytes) {
+	  paused = true;
+	  key.interestOps(0);
+	}
+      }
+      if(schedule) {
+	schedule(this);
+      }
+    }
+
+    /**
+       Log up to {@link #BATCH_SIZE} frames, then give other clients
+       their turn.  */
+    void logFrames() {
+      for(int n = 0; n < BATCH_SIZE; n++) {
+	byte[] frame;
+	boolean resume = false;
+	synchronized(this) {
+	  if(frames.isEmpty()) {
+	    scheduled = false;
+	    return;
+	  }
+	  frame = (byte[]) frames.removeFirst();
+	  pendingBytes -= frame.length;
+	  if(paused && pendingBytes <= maxPendingBytes / 2) {
+	    paused = false;
+	    resume = true;
+	  }
+	}
+	if(resume) {
+	  resume(this);
+	}
+	if(failed) {
+	  continue;
+	}
+	try {
+	  SocketNode.dispatch(repository, decoder.decode(frame, 0, frame.length));
+	} catch(IOException e) {
+	  logger.info("Caught java.io.IOException: "+e);
+	  logger.info("Closing connection.");
+	  failed = true;
+	  close();
+	} catch(RuntimeException e) {
+	  logger.error("Unexpected exception. Closing connection.", e);
+	  failed = true;
+	  close();
+	}
+      }
+      synchronized(this) {
+	if(frames.isEmpty()) {
+	  scheduled = false;
+	  return;
+	}
+      }
+      schedule(this);
+    }
+
+    void close() {
+      try {
+	channel.close();
+      } catch(IOException e) {
+	logger.info("Could not close connection.", e);
+      }
+    }
+  }
+
+  private
+  class Worker implements Runnable {
+    public
+    void run() {
+      while(true) {
+	Connection connection;
+	synchronized(ready) {
+	  while(ready.isEmpty()) {
+	    if(closed) {
+	      return;
+	    }
+	    try {
+	      ready.wait();
+	    } catch(InterruptedException e) {
+	      return;
+	    }
+	  }
+	  connection = (Connection) ready.removeFirst();
+	}
+	connection.logFrames();
+      }
+    }
+  }
+
+  public
+  static
+  void main(String argv[]) {
+    if(argv.length != 2 && argv.length != 3) {
+      usage("Wrong number of arguments.");
+    }
+    int port = 0;
+    int workers = DEFAULT_WORKERS;
+    try {
+      port = Integer.parseInt(argv[0]);
+      if(argv.length == 3) {
+	workers = Integer.parseInt(argv[2]);
+      }
+    } catch(java.lang.NumberFormatException e) {
+      e.printStackTrace();
+      usage("Could not interpret port number or worker count.");
+    }
+    if(argv[1].endsWith(".xml")) {
+      DOMConfigurator.configure(argv[1]);
+    } else {
+      PropertyConfigurator.configure(argv[1]);
+    }
+
+    try {
+      SelectorSocketServer server =
+	new SelectorSocketServer(port, LogManager.getLoggerRepository(), workers);
+      logger.info("Listening on port " + port + " with " + workers + " workers.");
+      server.run();
+    } catch(Exception e) {
+      e.printStackTrace();
+    }
+  }
+
+  static void usage(String msg) {
+    System.err.println(msg);
+    System.err.println(
+      "Usage: java " +SelectorSocketServer.class.getName() + " port configFile [workers]");
+    System.exit(1);
+  }
+}
@@ -19,14 +19,18 @@
 
 package org.apache.log4j.net;
 
+import java.io.BufferedOutputStream;
 import java.io.IOException;
 import java.io.ObjectOutputStream;
 import java.io.InterruptedIOException;
 import java.net.InetAddress;
+import java.net.InetSocketAddress;
 import java.net.Socket;
 
 import org.apache.log4j.AppenderSkeleton;
+import org.apache.log4j.Logger;
 import org.apache.log4j.helpers.LogLog;
+import org.apache.log4j.helpers.RingBuffer;
 import org.apache.log4j.spi.ErrorCode;
 import org.apache.log4j.spi.LoggingEvent;
 
@@ -45,7 +49,9 @@ import org.apache.log4j.spi.LoggingEvent;
       the client.
 
       <p><li>SocketAppenders do not use a layout. They ship a
-      serialized {@link LoggingEvent} object to the server side.
+      serialized {@link LoggingEvent} object to the server side or,
+      if the <b>WireFormat</b> option is set to <code>binary</code>,
+      encode it with an {@link EventEncoder}.
 
       <p><li>Remote logging uses the TCP protocol. Consequently, if
       the server is reachable, then log events will eventually arrive
@@ -70,6 +76,12 @@ import org.apache.log4j.spi.LoggingEvent;
       is down, the client will not be blocked when making log requests
       but the log events will be lost due to server unavailability.
 
+      <p>Setting the <b>BufferSize</b> option hands events over to a
+      <em>sender</em> thread through a bounded queue. The client is
+      then never blocked by the network and events logged while the
+      server is unreachable are sent after reconnecting, as long as
+      the queue does not fill up.
+
       <p><li>Even if a <code>SocketAppender</code> is no longer
       attached to any category, it will not be garbage collected in
       the presence of a connector thread. A connector thread exists
@@ -112,6 +124,16 @@ public class SocketAppender extends AppenderSkeleton {
   */
   static final int DEFAULT_RECONNECTION_DELAY   = 30000;
 
+  /**
+     Milliseconds the sender thread waits for a connection to the
+     remote host.  */
+  static final int CONNECT_TIMEOUT = 5000;
+
+  /**
+     Milliseconds {@link #close} waits for the sender thread to send
+     the events left.  */
+  static final int CLOSE_TIMEOUT = 2 * CONNECT_TIMEOUT;
+
   /**
      We remember host name as String in addition to the resolved
      InetAddress so that it can be returned via getOption().
@@ -126,12 +148,30 @@ public class SocketAppender extends AppenderSkeleton {
   InetAddress address;
   int port = DEFAULT_PORT;
   ObjectOutputStream oos;
+
+  /** The encoder of the connection when the wire format is binary. */
+  EventEncoder encoder;
+
+  /** The value of the <b>WireFormat</b> option for Java serialization. */
+  public static final String SERIALIZED_FORMAT = "serialized";
+
+  /** The value of the <b>WireFormat</b> option for {@link EventEncoder}. */
+  public static final String BINARY_FORMAT = "binary";
+
+  private boolean binary = false;
   int reconnectionDelay = DEFAULT_RECONNECTION_DELAY;
   boolean locationInfo = false;
   private String application;
 
   private Connector connector;
 
+  private int bufferSize = 0;
+  private RingBuffer ring;
+  private Sender sender;
+
+  /** The maximum number of events written before each flush. */
+  private static final int MAX_BATCH = 256;
+
   int counter = 0;
 
   // reset the ObjectOutputStream every 70 calls
@@ -171,7 +211,17 @@ public class SocketAppender extends AppenderSkeleton {
       zeroConf = new ZeroConfSupport(ZONE, port, getName());
       zeroConf.advertise();
     }
-    connect(address, port);
+    if(bufferSize > 0) {
+      if(address == null) {
+        return;
+      }
+      ring = new RingBuffer(bufferSize, RingBuffer.BLOCK);
+      sender = new Sender();
+      sender.setDaemon(true);
+      sender.start();
+    } else {
+      connect(address, port);
+    }
   }
 
   /**
@@ -189,6 +239,23 @@ public class SocketAppender extends AppenderSkeleton {
       zeroConf.unadvertise();
     }
 
+    if(sender != null) {
+      ring.close();
+      sender.shutdown();
+      try {
+        sender.join(CLOSE_TIMEOUT);
+      } catch(InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+      boolean finished = !sender.isAlive();
+      sender = null;
+      ring = null;
+      if(!finished) {
+        // the sender closes the connection once it is done
+        LogLog.warn("Events are still being sent to ["+remoteHost+"].");
+        return;
+      }
+    }
     cleanUp();
   }
 
@@ -197,6 +264,17 @@ public class SocketAppender extends AppenderSkeleton {
    * connector thread if it has been created 
    * */
   public void cleanUp() {
+    if(encoder != null) {
+      try {
+	encoder.close();
+      } catch(IOException e) {
+          if (e instanceof InterruptedIOException) {
+              Thread.currentThread().interrupt();
+          }
+	      LogLog.error("Could not close encoder.", e);
+      }
+      encoder = null;
+    }
     if(oos != null) {
       try {
 	oos.close();
@@ -221,7 +299,7 @@ public class SocketAppender extends AppenderSkeleton {
     try {
       // First, close the previous connection if any.
       cleanUp();
-      oos = new ObjectOutputStream(new Socket(address, port).getOutputStream());
+      openStream(new Socket(address, port));
     } catch(IOException e) {
       if (e instanceof InterruptedIOException) {
           Thread.currentThread().interrupt();
@@ -240,6 +318,21 @@ public class SocketAppender extends AppenderSkeleton {
   }
 
 
+  /**
+     Open the stream of the configured wire format on
+     <code>socket</code>.  */
+  void openStream(Socket socket) throws IOException {
+    if(binary) {
+      encoder = new EventEncoder(new BufferedOutputStream(socket.getOutputStream()));
+      encoder.flush();
+    } else if(bufferSize > 0) {
+      oos = new ObjectOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+      oos.flush();
+    } else {
+      oos = new ObjectOutputStream(socket.getOutputStream());
+    }
+  }
+
   public void append(LoggingEvent event) {
     if(event == null)
       return;
@@ -250,22 +343,24 @@ public class SocketAppender extends AppenderSkeleton {
       return;
     }
 
-    if(oos != null) {
+    if(ring != null) {
+      LoggingEvent retained = prepare(event);
+      if(!ring.offer(retained, false)) {
+        ring.discard(retained);
+      }
+    } else if(encoder != null) {
       try {
-    	 
-	if(locationInfo) {
-	   event.getLocationInformation();
+	if (application != null) {
+	  event.setProperty("application", application);
 	}
-    if (application != null) {
-        event.setProperty("application", application);
-    }
-    event.getNDC();
-    event.getThreadName();
-    event.getMDCCopy();
-    event.getRenderedMessage();
-    event.getThrowableStrRep();
-    
-	oos.writeObject(event);
+	encoder.write(event, locationInfo);
+	encoder.flush();
+      } catch(IOException e) {
+	connectionFailed(e);
+      }
+    } else if(oos != null) {
+      try {
+	oos.writeObject(prepare(event));
 	//LogLog.debug("=========Flushing.");
 	oos.flush();
 	if(++counter >= RESET_FREQUENCY) {
@@ -276,21 +371,44 @@ public class SocketAppender extends AppenderSkeleton {
 	  oos.reset();
 	}
       } catch(IOException e) {
-          if (e instanceof InterruptedIOException) {
-              Thread.currentThread().interrupt();
-          }
-	      oos = null;
-	      LogLog.warn("Detected problem with connection: "+e);
-	      if(reconnectionDelay > 0) {
-	         fireConnector();
-	      } else {
-	         errorHandler.error("Detected problem with connection, not reconnecting.", e,
-	               ErrorCode.GENERIC_FAILURE);
-	      }
+	connectionFailed(e);
       }
     }
   }
 
+  /**
+     Capture the parts of <code>event</code> which depend on the
+     calling thread and return an event which can be sent later.  */
+  private LoggingEvent prepare(LoggingEvent event) {
+    if(locationInfo) {
+      event.getLocationInformation();
+    }
+    if (application != null) {
+      event.setProperty("application", application);
+    }
+    event.getNDC();
+    event.getThreadName();
+    event.getMDCCopy();
+    event.getRenderedMessage();
+    event.getThrowableStrRep();
+    return event.toImmutable();
+  }
+
+  private void connectionFailed(IOException e) {
+      if (e instanceof InterruptedIOException) {
+          Thread.currentThread().interrupt();
+      }
+      oos = null;
+      encoder = null;
+      LogLog.warn("Detected problem with connection: "+e);
+      if(reconnectionDelay > 0) {
+         fireConnector();
+      } else {
+         errorHandler.error("Detected problem with connection, not reconnecting.", e,
+               ErrorCode.GENERIC_FAILURE);
+      }
+  }
+
   public void setAdvertiseViaMulticastDNS(boolean advertiseViaMulticastDNS) {
     this.advertiseViaMulticastDNS = advertiseViaMulticastDNS;
   }
@@ -378,6 +496,67 @@ public class SocketAppender extends AppenderSkeleton {
     return locationInfo;
   }
 
+  /**
+     The <b>BufferSize</b> option takes the number of events which may
+     wait to be sent to the server. When it is positive, events are
+     queued by the calling thread and sent in batches by a dedicated
+     thread, so that logging never waits for the network. Events
+     queued while the server is unreachable are sent once the
+     connection has been restored; when the queue is full, further
+     events are discarded and a summary of them is sent instead. Events
+     of a batch which could not be written entirely are sent again
+     after reconnecting and may reach the server twice.
+
+     <p>The default value is 0, which sends each event from the
+     calling thread and drops events while the server is
+     unreachable. The option takes effect when {@link
+     #activateOptions} is called and requires JDK 1.5 or later when
+     positive.
+
+     @since 1.2.18
+   */
+  public void setBufferSize(int bufferSize) {
+    this.bufferSize = bufferSize;
+  }
+
+  /**
+     Returns value of the <b>BufferSize</b> option.
+
+     @since 1.2.18
+   */
+  public int getBufferSize() {
+    return bufferSize;
+  }
+
+  /**
+     The <b>WireFormat</b> option takes the value
+     <code>serialized</code>, the default, to send events with Java
+     serialization, or <code>binary</code> to send them in the more
+     compact format of {@link EventEncoder}. A {@link SocketNode}
+     accepts either format. The option applies to connections opened
+     after it is set.
+
+     @since 1.2.18
+   */
+  public void setWireFormat(String format) {
+    if(BINARY_FORMAT.equalsIgnoreCase(format)) {
+      binary = true;
+    } else if(SERIALIZED_FORMAT.equalsIgnoreCase(format)) {
+      binary = false;
+    } else {
+      LogLog.warn("Unknown wire format ["+format+"], using "+getWireFormat()+".");
+    }
+  }
+
+  /**
+     Returns value of the <b>WireFormat</b> option.
+
+     @since 1.2.18
+   */
+  public String getWireFormat() {
+    return binary ? BINARY_FORMAT : SERIALIZED_FORMAT;
+  }
+
   /**
    * The <b>App</b> option takes a string value which should be the name of the 
    * application getting logged.
@@ -441,7 +620,7 @@ public class SocketAppender extends AppenderSkeleton {
 	  LogLog.debug("Attempting connection to "+address.getHostName());
 	  socket = new Socket(address, port);
 	  synchronized(this) {
-	    oos = new ObjectOutputStream(socket.getOutputStream());
+	    openStream(socket);
 	    connector = null;
 	    LogLog.debug("Connection established. Exiting connector thread.");
 	    break;
@@ -471,4 +650,137 @@ public class SocketAppender extends AppenderSkeleton {
     */
   }
 
+  /**
+     The Sender takes the events queued by {@link #append} and writes
+     them to the server in batches, flushing the stream once per
+     batch. When the connection fails, it keeps the unsent batch and
+     attempts to reconnect every <code>reconnectionDelay</code>
+     milliseconds, while new events wait in the queue.
+
+     @since 1.2.18
+  */
+  class Sender extends Thread {
+
+    private volatile boolean stopping = false;
+
+    Sender() {
+      super("SocketAppender-sender");
+    }
+
+    /**
+       Send the events left once connected, without waiting to
+       reconnect.  */
+    void shutdown() {
+      synchronized(this) {
+        stopping = true;
+        notifyAll();
+      }
+    }
+
+    public
+    void run() {
+      LoggingEvent[] batch = new LoggingEvent[Math.min(bufferSize, MAX_BATCH)];
+      int count = 0;
+      LoggingEvent summary = null;
+      boolean failed = false;
+      while(true) {
+        if(count == 0 && summary == null) {
+          count = ring.take(batch);
+          if(count < 0) {
+            break;
+          }
+          summary = summarizeDiscarded();
+        }
+        if(failed) {
+          if(stopping || reconnectionDelay <= 0) {
+            LogLog.warn("Dropping the events not sent to ["+address.getHostName()+"].");
+            ring.close();
+            break;
+          }
+          synchronized(this) {
+            try {
+              if(!stopping) {
+                wait(reconnectionDelay);
+              }
+            } catch(InterruptedException e) {
+              LogLog.debug("Sender interrupted.");
+              stopping = true;
+            }
+          }
+        }
+        try {
+          if(oos == null && encoder == null) {
+            LogLog.debug("Attempting connection to "+address.getHostName());
+            Socket socket = new Socket();
+            try {
+              socket.connect(new InetSocketAddress(address, port), CONNECT_TIMEOUT);
+            } catch(IOException e) {
+              socket.close();
+              throw e;
+            }
+            openStream(socket);
+            if(failed) {
+              LogLog.debug("Connection established. Resending events.");
+            }
+          }
+          for(int i = 0; i < count; i++) {
+            send(batch[i]);
+          }
+          if(summary != null) {
+            send(summary);
+          }
+          if(encoder != null) {
+            encoder.flush();
+          } else {
+            oos.flush();
+          }
+          for(int i = 0; i < count; i++) {
+            batch[i] = null;
+          }
+          count = 0;
+          summary = null;
+          failed = false;
+        } catch(IOException e) {
+          if(e instanceof InterruptedIOException) {
+            Thread.currentThread().interrupt();
+          }
+          if(!failed) {
+            LogLog.warn("Could not send events to ["+address.getHostName()
+                        +"], will resend them after reconnecting: "+e);
+          }
+          // the whole batch is sent again after reconnecting
+          cleanUp();
+          failed = true;
+        }
+      }
+      cleanUp();
+    }
+
+    private
+    void send(LoggingEvent event) throws IOException {
+      if(encoder != null) {
+        encoder.write(event, locationInfo);
+      } else {
+        oos.writeObject(event);
+        if(++counter >= RESET_FREQUENCY) {
+          counter = 0;
+          oos.reset();
+        }
+      }
+    }
+
+    private
+    LoggingEvent summarizeDiscarded() {
+      int discarded = ring.getAndResetDiscardCount();
+      if(discarded == 0) {
+        return null;
+      }
+      LoggingEvent max = ring.getMaxDiscarded();
+      String msg = "Discarded " + discarded
+        + " messages due to full event buffer including: " + max.getMessage();
+      return prepare(new LoggingEvent(
+        "org.apache.log4j.net.SocketAppender.DONT_REPORT_LOCATION",
+        Logger.getLogger(max.getLoggerName()), max.getLevel(), msg, null));
+    }
+  }
 }
@@ -17,14 +17,27 @@
 
 package org.apache.log4j.net;
 
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InterruptedIOException;
 import java.io.ObjectOutputStream;
 import java.net.InetAddress;
+import java.net.InetSocketAddress;
 import java.net.ServerSocket;
 import java.net.Socket;
 import java.net.SocketException;
-import java.util.Vector;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.channels.WritableByteChannel;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
 
 import org.apache.log4j.AppenderSkeleton;
 import org.apache.log4j.helpers.CyclicBuffer;
@@ -72,23 +85,20 @@ import org.apache.log4j.spi.LoggingEvent;
   <p><li>If no remote clients are attached, the logging requests are
   simply dropped.
   
-  <p><li>Logging events are automatically <em>buffered</em> by the
-  native TCP implementation. This means that if the link to remote
-  client is slow but still faster than the rate of (log) event
-  production, the application will not be affected by the slow network
-  connection. However, if the network connection is slower then the
-  rate of event production, then the local application can only
-  progress at the network rate. In particular, if the network link to
-  the the remote client is down, the application will be blocked.
-  
-  <p>On the other hand, if the network link is up, but the remote
-  client is down, the client will not be blocked when making log
-  requests but the log events will be lost due to client
-  unavailability. 
-
-  <p>The single remote client case extends to multiple clients
-  connections. The rate of logging will be determined by the slowest
-  link.
+  <p><li>Each event is serialized once, whatever the number of
+  connected clients, and queued for every client. A writer thread
+  sends the queued events with non-blocking writes, so the
+  application is never blocked by the network, and a slow client
+  does not delay the others.
+
+  <p>A client may have up to <b>ClientBufferSize</b> events waiting
+  to be sent. When a client falls further behind, the
+  <b>SlowClientPolicy</b> option decides whether the events it cannot
+  take are dropped for that client only or whether it is
+  disconnected.
+
+  <p>If the remote client is down, the log events sent to it will be
+  lost due to client unavailability.
     
   <p><li>If the JVM hosting the <code>SocketHubAppender</code> exits
   before the <code>SocketHubAppender</code> is closed either
@@ -111,9 +121,36 @@ public class SocketHubAppender extends AppenderSkeleton {
      The default port number of the ServerSocket will be created on. */
   static final int DEFAULT_PORT = 4560;
   
+  /**
+     The default value of the <b>ClientBufferSize</b> option. */
+  static final int DEFAULT_CLIENT_BUFFER_SIZE = 1024;
+
+  /**
+     The value of the <b>SlowClientPolicy</b> option to drop the events
+     a slow client cannot take. */
+  public static final String DROP_POLICY = "drop";
+
+  /**
+     The value of the <b>SlowClientPolicy</b> option to disconnect slow
+     clients. */
+  public static final String DISCONNECT_POLICY = "disconnect";
+
   private int port = DEFAULT_PORT;
-  private Vector oosList = new Vector();
+  /** The connected clients, replaced rather than modified. */
+  private volatile Client[] clients = new Client[0];
+  /**
+     Guards the changes to <code>clients</code>, the chunk stream and
+     the cached events. The background threads only take this lock, and
+     never the lock on the appender, which is held while they are
+     stopped. */
+  private final Object clientLock = new Object();
   private ServerMonitor serverMonitor = null;
+  private Writer writer = null;
+  private int clientBufferSize = DEFAULT_CLIENT_BUFFER_SIZE;
+  private boolean disconnectSlowClients = false;
+  private ByteArrayOutputStream chunkBytes;
+  private ObjectOutputStream chunkStream;
+  private byte[] streamHeader;
   private boolean locationInfo = false;
   private CyclicBuffer buffer = null;
   private String application;
@@ -175,25 +212,22 @@ public class SocketHubAppender extends AppenderSkeleton {
   void cleanUp() {
     // stop the monitor thread
 	LogLog.debug("stopping ServerSocket");
-    serverMonitor.stopMonitor();
-    serverMonitor = null;
+    if (serverMonitor != null) {
+      serverMonitor.stopMonitor();
+      serverMonitor = null;
+    }
+
+    // send what can be sent without waiting, then stop the writer
+    if (writer != null) {
+      writer.stopWriter();
+      writer = null;
+    }
 
     // close all of the connections
 	LogLog.debug("closing client connections");
-    while (oosList.size() != 0) {
-      ObjectOutputStream oos = (ObjectOutputStream)oosList.elementAt(0);
-      if(oos != null) {
-        try {
-        	oos.close();
-        } catch(InterruptedIOException e) {
-            Thread.currentThread().interrupt();
-            LogLog.error("could not close oos.", e);
-        } catch(IOException e) {
-            LogLog.error("could not close oos.", e);
-        }
-        
-        oosList.removeElementAt(0);     
-      }
+    Client[] current = clients;
+    for (int i = 0; i < current.length; i++) {
+      removeClient(current[i]);
     }
   }
 
@@ -215,53 +249,112 @@ public class SocketHubAppender extends AppenderSkeleton {
         event.getRenderedMessage();
         event.getThrowableStrRep();
         
-      if (buffer != null) {
-        buffer.add(event);
-      }
+      event = event.toImmutable();
     }
 
-    // if no event or no open connections, exit now
-    if ((event == null) || (oosList.size() == 0)) {
-      return;
-    }
+    Client[] current;
+    byte[] chunk;
+    synchronized (clientLock) {
+      if (event != null && buffer != null) {
+        buffer.add(event);
+      }
 
-	// loop through the current set of open connections, appending the event to each
-    for (int streamCount = 0; streamCount < oosList.size(); streamCount++) {    	
+      // if no event or no open connections, exit now
+      current = clients;
+      if ((event == null) || (current.length == 0)) {
+        return;
+      }
 
-      ObjectOutputStream oos = null;
       try {
-        oos = (ObjectOutputStream)oosList.elementAt(streamCount);
-      }
-      catch (ArrayIndexOutOfBoundsException e) {
-        // catch this, but just don't assign a value
-        // this should not really occur as this method is
-        // the only one that can remove oos's (besides cleanUp).
+        chunk = serialize(event);
+      } catch (IOException e) {
+        LogLog.error("could not serialize event.", e);
+        return;
       }
-      
-      // list size changed unexpectedly? Just exit the append.
-      if (oos == null)
-        break;
-        
-      try {
-      	oos.writeObject(event);
-      	oos.flush();
-    	// Failing to reset the object output stream every now and
-    	// then creates a serious memory leak.
-    	// right now we always reset. TODO - set up frequency counter per oos?
-    	oos.reset();
+    }
+
+    // queue the event for each of the current set of open connections
+    boolean wakeup = false;
+    for (int i = 0; i < current.length; i++) {
+      Client client = current[i];
+      int result = client.offer(chunk, clientBufferSize);
+      if (result == Client.SCHEDULE) {
+        wakeup |= writer.schedule(client);
+      } else if (result == Client.FULL) {
+        if (disconnectSlowClients) {
+          LogLog.debug("disconnecting slow client " + client);
+          removeClient(client);
+        } else {
+          client.dropped++;
+        }
       }
-      catch(IOException e) {
-        if (e instanceof InterruptedIOException) {
-            Thread.currentThread().interrupt();
+    }
+    if (wakeup) {
+      writer.wakeup();
+    }
+  }
+
+  /**
+     Serialize <code>event</code> into bytes which can be sent to any
+     client, whatever it has received before: as each event is
+     followed by a reset, the state of the stream is the same before
+     every event. Must be called while holding <code>clientLock</code>. */
+  private
+  byte[] serialize(LoggingEvent event) throws IOException {
+    openChunkStream();
+    try {
+      chunkStream.writeObject(event);
+      // Failing to reset the object output stream every now and
+      // then creates a serious memory leak.
+      chunkStream.reset();
+      chunkStream.flush();
+      return chunkBytes.toByteArray();
+    } catch (IOException e) {
+      // the state of the stream is unknown, start afresh
+      chunkStream = null;
+      throw e;
+    } finally {
+      chunkBytes.reset();
+    }
+  }
+
+  private
+  void openChunkStream() throws IOException {
+    if (chunkStream == null) {
+      chunkBytes = new ByteArrayOutputStream();
+      chunkStream = new ObjectOutputStream(chunkBytes);
+      chunkStream.flush();
+      streamHeader = chunkBytes.toByteArray();
+      chunkBytes.reset();
+    }
+  }
+
+  private
+  void addClient(Client client) {
+    synchronized (clientLock) {
+      Client[] current = clients;
+      Client[] updated = new Client[current.length + 1];
+      System.arraycopy(current, 0, updated, 0, current.length);
+      updated[current.length] = client;
+      clients = updated;
+    }
+  }
+
+  /**
+     Remove <code>client</code> from the connected clients and close
+     its connection. */
+  void removeClient(Client client) {
+    synchronized (clientLock) {
+      Client[] current = clients;
+      List updated = new ArrayList(current.length);
+      for (int i = 0; i < current.length; i++) {
+        if (current[i] != client) {
+          updated.add(current[i]);
         }
-          // there was an io exception so just drop the connection
-      	oosList.removeElementAt(streamCount);
-      	LogLog.debug("dropped connection");
-      	
-      	// decrement to keep the counter in place (for loop always increments)
-      	streamCount--;
       }
+      clients = (Client[]) updated.toArray(new Client[updated.size()]);
     }
+    client.close();
   }
   
   /**
@@ -341,6 +434,54 @@ public class SocketHubAppender extends AppenderSkeleton {
     return locationInfo;
   }
 
+  /**
+     The <b>ClientBufferSize</b> option takes the number of events
+     which may wait to be sent to each client. The default is 1024.
+
+     @since 1.2.18 */
+  public
+  void setClientBufferSize(int clientBufferSize) {
+    this.clientBufferSize = clientBufferSize;
+  }
+
+  /**
+     Returns value of the <b>ClientBufferSize</b> option.
+
+     @since 1.2.18 */
+  public
+  int getClientBufferSize() {
+    return clientBufferSize;
+  }
+
+  /**
+     The <b>SlowClientPolicy</b> option tells what happens to a client
+     which has <b>ClientBufferSize</b> events waiting when a new event
+     is logged: with <code>drop</code>, the default, the new event is
+     not sent to that client; with <code>disconnect</code>, the client
+     is disconnected.
+
+     @since 1.2.18 */
+  public
+  void setSlowClientPolicy(String policy) {
+    if (DISCONNECT_POLICY.equalsIgnoreCase(policy)) {
+      disconnectSlowClients = true;
+    } else if (DROP_POLICY.equalsIgnoreCase(policy)) {
+      disconnectSlowClients = false;
+    } else {
+      LogLog.warn("Unknown slow client policy [" + policy + "], using "
+                  + getSlowClientPolicy() + ".");
+    }
+  }
+
+  /**
+     Returns value of the <b>SlowClientPolicy</b> option.
+
+     @since 1.2.18 */
+  public
+  String getSlowClientPolicy() {
+    return disconnectSlowClients ? DISCONNECT_POLICY : DROP_POLICY;
+  }
+
   public void setAdvertiseViaMulticastDNS(boolean advertiseViaMulticastDNS) {
     this.advertiseViaMulticastDNS = advertiseViaMulticastDNS;
   }
@@ -353,17 +494,221 @@ public class SocketHubAppender extends AppenderSkeleton {
     Start the ServerMonitor thread. */
   private
   void startServer() {
-    serverMonitor = new ServerMonitor(port, oosList);
+    try {
+      writer = new Writer();
+    } catch (IOException e) {
+      LogLog.error("could not open selector, not starting server.", e);
+      return;
+    }
+    serverMonitor = new ServerMonitor(port);
   }
   
   /**
    * Creates a server socket to accept connections.
+   * The sockets it accepts should have a channel, otherwise the
+   * writer thread waits for each write to such a client to complete.
    * @param socketPort port on which the socket should listen, may be zero.
    * @return new socket.
    * @throws IOException IO error when opening the socket. 
    */
   protected ServerSocket createServerSocket(final int socketPort) throws IOException {
-      return new ServerSocket(socketPort);
+      ServerSocketChannel channel = ServerSocketChannel.open();
+      channel.socket().bind(new InetSocketAddress(socketPort));
+      return channel.socket();
+  }
+
+  /**
+    A connected client and the events waiting to be sent to it. */
+  static final class Client {
+    static final int QUEUED = 0;
+    static final int SCHEDULE = 1;
+    static final int FULL = 2;
+
+    final Socket socket;
+    /** The channel of the socket, null if it has none. */
+    final SocketChannel channel;
+    final WritableByteChannel out;
+    SelectionKey key;
+    int dropped;
+    // guarded by this
+    private final LinkedList queue = new LinkedList();
+    private boolean scheduled;
+
+    Client(Socket socket) throws IOException {
+      this.socket = socket;
+      this.channel = socket.getChannel();
+      if (channel != null) {
+        channel.configureBlocking(false);
+        out = channel;
+      } else {
+        out = Channels.newChannel(socket.getOutputStream());
+      }
+    }
+
+    /**
+       Queue <code>chunk</code> unless <code>max</code> chunks are
+       waiting already. Returns {@link #SCHEDULE} if the client must be
+       handed to the writer. */
+    synchronized
+    int offer(byte[] chunk, int max) {
+      if (queue.size() >= max) {
+        return FULL;
+      }
+      queue.addLast(ByteBuffer.wrap(chunk));
+      if (scheduled) {
+        return QUEUED;
+      }
+      scheduled = true;
+      return SCHEDULE;
+    }
+
+    /**
+       Write as much as possible without waiting. Returns
+       <code>true</code> once nothing is left to write, in which case
+       the client must be scheduled again for new events. */
+    boolean flush() throws IOException {
+      while (true) {
+        ByteBuffer chunk;
+        synchronized (this) {
+          if (queue.isEmpty()) {
+            scheduled = false;
+            return true;
+          }
+          chunk = (ByteBuffer) queue.getFirst();
+        }
+        out.write(chunk);
+        if (chunk.hasRemaining()) {
+          return false;
+        }
+        synchronized (this) {
+          queue.removeFirst();
+        }
+      }
+    }
+
+    void close() {
+      try {
+        socket.close();
+      } catch (InterruptedIOException e) {
+        Thread.currentThread().interrupt();
+        LogLog.error("could not close socket.", e);
+      } catch (IOException e) {
+        LogLog.error("could not close socket.", e);
+      }
+      if (dropped > 0) {
+        LogLog.debug(dropped + " events were dropped for slow client " + this);
+      }
+    }
+
+    public String toString() {
+      return socket.getInetAddress().getHostAddress() + ":" + socket.getPort();
+    }
+  }
+
+  /**
+    This class is used internally to write the queued events to the
+    clients with non-blocking writes, from a single thread. */
+  private class Writer implements Runnable {
+    private final Selector selector;
+    private final List scheduled = new ArrayList();
+    private volatile boolean keepRunning = true;
+    private Thread writerThread;
+
+    Writer() throws IOException {
+      selector = Selector.open();
+      writerThread = new Thread(this);
+      writerThread.setDaemon(true);
+      writerThread.setName("SocketHubAppender-Writer-" + port);
+      writerThread.start();
+    }
+
+    /**
+      Hand <code>client</code> to the writer thread. Returns
+      <code>true</code> if the writer must be woken up. */
+    boolean schedule(Client client) {
+      synchronized (scheduled) {
+        scheduled.add(client);
+        return scheduled.size() == 1;
+      }
+    }
+
+    void wakeup() {
+      selector.wakeup();
+    }
+
+    /**
+      Stops the writer once it has written what could be written
+      without waiting. */
+    void stopWriter() {
+      keepRunning = false;
+      selector.wakeup();
+      try {
+        writerThread.join();
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+    }
+
+    public
+    void run() {
+      try {
+        while (keepRunning) {
+          selector.select();
+          writeScheduled();
+          Iterator i = selector.selectedKeys().iterator();
+          while (i.hasNext()) {
+            SelectionKey key = (SelectionKey) i.next();
+            i.remove();
+            if (key.isValid() && key.isWritable()) {
+              write((Client) key.attachment());
+            }
+          }
+        }
+        writeScheduled();
+      } catch (IOException e) {
+        LogLog.error("writer failed, shutting down.", e);
+      } finally {
+        try {
+          selector.close();
+        } catch (IOException e) {
+          // do nothing with it?
+        }
+      }
+    }
+
+    private
+    void writeScheduled() {
+      Object[] ready;
+      synchronized (scheduled) {
+        if (scheduled.isEmpty()) {
+          return;
+        }
+        ready = scheduled.toArray();
+        scheduled.clear();
+      }
+      for (int i = 0; i < ready.length; i++) {
+        write((Client) ready[i]);
+      }
+    }
+
+    private
+    void write(Client client) {
+      try {
+        boolean done = client.flush();
+        if (client.channel != null) {
+          if (client.key == null) {
+            client.key = client.channel.register(selector, 0, client);
+          }
+          client.key.interestOps(done ? 0 : SelectionKey.OP_WRITE);
+        }
+      } catch (IOException e) {
+        // there was an io exception so just drop the connection
+        removeClient(client);
+        LogLog.debug("dropped connection");
+      } catch (java.nio.channels.CancelledKeyException e) {
+        // the client has been removed
+      }
+    }
   }
 
   /**
@@ -372,16 +717,14 @@ public class SocketHubAppender extends AppenderSkeleton {
     constructor. */
   private class ServerMonitor implements Runnable {
     private int port;
-    private Vector oosList;
     private boolean keepRunning;
     private Thread monitorThread;
     
     /**
       Create a thread and start the monitor. */
     public
-    ServerMonitor(int _port, Vector _oosList) {
+    ServerMonitor(int _port) {
       port = _port;
-      oosList = _oosList;
       keepRunning = true;
       monitorThread = new Thread(this);
       monitorThread.setDaemon(true);
@@ -417,14 +760,25 @@ public class SocketHubAppender extends AppenderSkeleton {
       }
     }
     
+    /**
+      Queue the stream header and the cached events for
+      <code>client</code>, then add it to the connected clients so
+      that it receives the events logged from now on. */
     private 
-    void sendCachedEvents(ObjectOutputStream stream) throws IOException {
-      if (buffer != null) {
-        for (int i = 0; i < buffer.length(); i++) {
-          stream.writeObject(buffer.get(i));
+    void connect(Client client) throws IOException {
+      synchronized (clientLock) {
+        openChunkStream();
+        int max = Integer.MAX_VALUE;
+        client.offer(streamHeader, max);
+        if (buffer != null) {
+          for (int i = 0; i < buffer.length(); i++) {
+            client.offer(serialize(buffer.get(i)), max);
+          }
         }
-        stream.flush();
-        stream.reset();
+        addClient(client);
+      }
+      if (writer.schedule(client)) {
+        writer.wakeup();
       }
     }
 
@@ -464,6 +818,10 @@ public class SocketHubAppender extends AppenderSkeleton {
           catch (InterruptedIOException e) {
             // timeout occurred, so just loop
           }
+          catch (ClosedChannelException e) {
+            // closed by stopMonitor
+            keepRunning = false;
+          }
           catch (SocketException e) {
             LogLog.error("exception accepting socket, shutting down server socket.", e);
             keepRunning = false;
@@ -479,14 +837,7 @@ public class SocketHubAppender extends AppenderSkeleton {
               LogLog.debug("accepting connection from " + remoteAddress.getHostName() 
 			   + " (" + remoteAddress.getHostAddress() + ")");
 	        	
-              // create an ObjectOutputStream
-              ObjectOutputStream oos = new ObjectOutputStream(socket.getOutputStream());
-              if (buffer != null && buffer.length() > 0) {
-                sendCachedEvents(oos);
-              }
-	            
-              // add it to the oosList.  OK since Vector is synchronized.
-              oosList.addElement(oos);
+              connect(new Client(socket));
             } catch (IOException e) {
               if (e instanceof InterruptedIOException) {
                     Thread.currentThread().interrupt();
@@ -499,7 +850,9 @@ public class SocketHubAppender extends AppenderSkeleton {
       finally {
     	// close the socket
     	try {
-    		serverSocket.close();
+    		if (serverSocket != null) {
+    			serverSocket.close();
+    		}
     	} catch(InterruptedIOException e) {
             Thread.currentThread().interrupt();  
         } catch (IOException e) {
@@ -18,9 +18,12 @@
 package org.apache.log4j.net;
 
 import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.InterruptedIOException;
 import java.io.ObjectInputStream;
+import java.io.SequenceInputStream;
 import java.net.Socket;
 
 import org.apache.log4j.Logger;
@@ -34,6 +37,9 @@ import org.apache.log4j.spi.LoggingEvent;
    Sockets (TCP). These logging events are logged according to local
    policy, as if they were generated locally.
 
+   <p>Events may be sent serialized or in the binary format of {@link
+   EventEncoder}; the format is recognized from the first bytes sent.
+
    <p>For example, the socket node might decide to log events to a
    local file and also resent them to a second socket node.
 
@@ -46,15 +52,31 @@ public class SocketNode implements Runnable {
   Socket socket;
   LoggerRepository hierarchy;
   ObjectInputStream ois;
+  EventDecoder decoder;
 
   static Logger logger = Logger.getLogger(SocketNode.class);
 
   public SocketNode(Socket socket, LoggerRepository hierarchy) {
+    this(socket, hierarchy, null);
+  }
+
+  /**
+     Create a node for a connection of which the bytes
+     <code>head</code> have already been read.  */
+  SocketNode(Socket socket, LoggerRepository hierarchy, byte[] head) {
     this.socket = socket;
     this.hierarchy = hierarchy;
     try {
-      ois = new ObjectInputStream(
-                         new BufferedInputStream(socket.getInputStream()));
+      InputStream stream = socket.getInputStream();
+      if (head != null) {
+        stream = new SequenceInputStream(new ByteArrayInputStream(head), stream);
+      }
+      BufferedInputStream in = new BufferedInputStream(stream);
+      if (isBinaryStream(in)) {
+        decoder = new EventDecoder(in);
+      } else {
+        ois = new ObjectInputStream(in);
+      }
     } catch(InterruptedIOException e) {
       Thread.currentThread().interrupt();
       logger.error("Could not open ObjectInputStream to "+socket, e);
@@ -65,29 +87,57 @@ public class SocketNode implements Runnable {
     }
   }
 
+  /**
+     Peek at the first bytes of <code>in</code> to tell binary event
+     streams from serialized ones.  */
+  private static boolean isBinaryStream(BufferedInputStream in) throws IOException {
+    byte[] magic = new byte[EventEncoder.MAGIC.length];
+    in.mark(magic.length);
+    int n = 0;
+    while (n < magic.length) {
+      int read = in.read(magic, n, magic.length - n);
+      if (read < 0) {
+        break;
+      }
+      n += read;
+    }
+    in.reset();
+    return n == magic.length && EventDecoder.isBinaryStream(magic, 0);
+  }
+
   //public
   //void finalize() {
   //System.err.println("-------------------------Finalize called");
   // System.err.flush();
   //}
 
+  /**
+     Log <code>event</code>, received from a remote client, in
+     <code>hierarchy</code> as if it was generated locally.  */
+  static void dispatch(LoggerRepository hierarchy, LoggingEvent event) {
+    // get a logger from the hierarchy. The name of the logger is taken to be the name contained in the event.
+    Logger remoteLogger = hierarchy.getLogger(event.getLoggerName());
+    //event.logger = remoteLogger;
+    // apply the logger-level filter
+    if(event.getLevel().isGreaterOrEqual(remoteLogger.getEffectiveLevel())) {
+      // finally log the event as if was generated locally
+      remoteLogger.callAppenders(event);
+    }
+  }
+
   public void run() {
     LoggingEvent event;
-    Logger remoteLogger;
 
     try {
-      if (ois != null) {
+      if (ois != null || decoder != null) {
           while(true) {
 	        // read an event from the wire
-	        event = (LoggingEvent) ois.readObject();
-	        // get a logger from the hierarchy. The name of the logger is taken to be the name contained in the event.
-	        remoteLogger = hierarchy.getLogger(event.getLoggerName());
-	        //event.logger = remoteLogger;
-	        // apply the logger-level filter
-	        if(event.getLevel().isGreaterOrEqual(remoteLogger.getEffectiveLevel())) {
-	        // finally log the event as if was generated locally
-	        remoteLogger.callAppenders(event);
-	      }
+	        if (decoder != null) {
+	          event = decoder.read();
+	        } else {
+	          event = (LoggingEvent) ois.readObject();
+	        }
+	        dispatch(hierarchy, event);
         }
       }
     } catch(java.io.EOFException e) {
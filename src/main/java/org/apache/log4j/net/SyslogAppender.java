@@ -17,16 +17,26 @@
 
 package org.apache.log4j.net;
 
+import java.io.BufferedOutputStream;
 import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.io.UnsupportedEncodingException;
 import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.Socket;
 import java.net.UnknownHostException;
 import java.text.SimpleDateFormat;
+import java.util.ArrayList;
 import java.util.Date;
+import java.util.List;
 import java.util.Locale;
+import java.util.TimeZone;
 import java.util.regex.Pattern;
 
 import org.apache.log4j.AppenderSkeleton;
 import org.apache.log4j.Layout;
+import org.apache.log4j.helpers.LogLog;
 import org.apache.log4j.helpers.SyslogQuietWriter;
 import org.apache.log4j.helpers.SyslogWriter;
 import org.apache.log4j.spi.LoggingEvent;
@@ -37,6 +47,13 @@ import org.apache.log4j.spi.LoggingEvent;
 /**
     Use SyslogAppender to send log messages to a remote syslog daemon.
 
+    <p>By default, messages are sent as RFC 3164 datagrams. When the
+    <b>Protocol</b> option is set to "tcp", messages are formatted as
+    described by RFC 5424 and sent with octet-counting framing, as
+    described by RFC 6587, over a persistent TCP connection. They are
+    then queued by the logging thread and written in batches by a
+    dedicated thread.
+
     @author Ceki G&uuml;lc&uuml;
     @author Anders Kristensen
  */
@@ -97,8 +114,22 @@ public class SyslogAppender extends AppenderSkeleton {
   protected static final int SYSLOG_HOST_OI = 0;
   protected static final int FACILITY_OI = 1;
 
+  /**
+     Value of the <b>Protocol</b> option sending RFC 3164 datagrams.
+     @since 1.2.18 */
+  public static final String UDP_PROTOCOL = "udp";
+
+  /**
+     Value of the <b>Protocol</b> option sending octet-counted RFC
+     5424 messages over TCP.
+     @since 1.2.18 */
+  public static final String TCP_PROTOCOL = "tcp";
+
   static final String TAB = "    ";
 
+  /** Milliseconds to wait for a TCP connection to the syslog host. */
+  static final int CONNECT_TIMEOUT = 5000;
+
   static final Pattern NOT_ALPHANUM = Pattern.compile("[^\\p{Alnum}]");
 
   // Have LOG_USER as default
@@ -141,6 +172,30 @@ public class SyslogAppender extends AppenderSkeleton {
      */
   private boolean layoutHeaderChecked = false;
 
+  private String protocol = UDP_PROTOCOL;
+  private int bufferSize = 512;
+  private int reconnectionDelay = 30000;
+
+    /**
+     * Sends the messages in TCP mode, null otherwise.
+     */
+  private Sender sender;
+
+    /**
+     * Beginning of RFC 5424 messages, indexed by severity.
+     */
+  private String[] priorities;
+
+    /**
+     * HOSTNAME, APP-NAME, PROCID, MSGID and STRUCTURED-DATA fields of
+     * RFC 5424 messages.
+     */
+  private String headerSuffix;
+
+  private final SimpleDateFormat timestampFormat = createTimestampFormat();
+  private long timestampSecond = -1;
+  private String timestampPrefix;
+
   public
   SyslogAppender() {
     this.initSyslogFacilityStr();
@@ -168,6 +223,18 @@ public class SyslogAppender extends AppenderSkeleton {
   public
   void close() {
     closed = true;
+    if (sender != null) {
+        if (layoutHeaderChecked && layout != null && layout.getFooter() != null) {
+            sendLayoutMessage(layout.getFooter());
+        }
+        sender.shutdown();
+        try {
+            sender.join();
+        } catch(InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        sender = null;
+    }
     if (sqw != null) {
         try {
             if (layoutHeaderChecked && layout != null && layout.getFooter() != null) {
@@ -196,6 +263,7 @@ public class SyslogAppender extends AppenderSkeleton {
     } else {
       facilityStr += ":";
     }
+    priorities = null;
   }
 
   /**
@@ -316,7 +384,7 @@ public class SyslogAppender extends AppenderSkeleton {
       return;
 
     // We must not attempt to append if sqw is null.
-    if(sqw == null) {
+    if(sqw == null && sender == null) {
       errorHandler.error("No syslog host is set for SyslogAppedender named \""+
 			this.name+"\".");
       return;
@@ -329,6 +397,29 @@ public class SyslogAppender extends AppenderSkeleton {
         layoutHeaderChecked = true;
     }
 
+    if (sender != null) {
+        StringBuffer buf = new StringBuffer();
+        if (facilityPrinting) {
+            buf.append(facilityStr);
+        }
+        if (layout == null) {
+            buf.append(event.getMessage());
+        } else {
+            buf.append(layout.format(event));
+        }
+        if (layout == null || layout.ignoresThrowable()) {
+            String[] s = event.getThrowableStrRep();
+            if (s != null) {
+                for(int i = 0; i < s.length; i++) {
+                    buf.append(Layout.LINE_SEP);
+                    buf.append(s[i]);
+                }
+            }
+        }
+        sendMessage(event.getLevel().getSyslogEquivalent(), event.timeStamp, buf.toString());
+        return;
+    }
+
     String hdr = getPacketHeader(event.timeStamp);
     String packet;
     if (layout == null) {
@@ -378,6 +469,25 @@ public class SyslogAppender extends AppenderSkeleton {
       if (header) {
         getLocalHostname();
       }
+      if (sender != null) {
+        sender.shutdown();
+        sender = null;
+      }
+      if (TCP_PROTOCOL.equals(protocol) && syslogHost != null) {
+        if (sqw != null) {
+          try {
+            sqw.close();
+          } catch(IOException e) {
+            LogLog.debug("Could not close syslog writer.", e);
+          }
+          sqw = null;
+        }
+        headerSuffix = " " + getLocalHostname()
+          + " " + (tag == null ? "-" : tag) + " - - - ";
+        sender = new Sender(SyslogWriter.parseAddress(syslogHost, 514));
+        sender.setDaemon(true);
+        sender.start();
+      }
       if (layout != null && layout.getHeader() != null) {
           sendLayoutMessage(layout.getHeader());
       }
@@ -582,7 +692,9 @@ public class SyslogAppender extends AppenderSkeleton {
      * @param msg message body, may not be null.
      */
   private void sendLayoutMessage(final String msg) {
-      if (sqw != null) {
+      if (sender != null) {
+          sendMessage(6, new Date().getTime(), (facilityPrinting ? facilityStr : "") + msg);
+      } else if (sqw != null) {
           String packet = msg;
           String hdr = getPacketHeader(new Date().getTime());
           if(facilityPrinting || hdr.length() > 0) {
@@ -597,4 +709,263 @@ public class SyslogAppender extends AppenderSkeleton {
           sqw.write(packet);
       }
   }
+
+    /**
+     * Creates the format of the seconds of RFC 5424 timestamps.
+     * @return date format using UTC.
+     */
+  private static SimpleDateFormat createTimestampFormat() {
+      SimpleDateFormat format = new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ss.", Locale.ENGLISH);
+      format.setTimeZone(TimeZone.getTimeZone("UTC"));
+      return format;
+  }
+
+    /**
+     * Formats an RFC 5424 message and queues it for the sender.
+     * @param severity syslog severity.
+     * @param timeStamp number of milliseconds after the standard base time.
+     * @param msg MSG part of the message.
+     */
+  private void sendMessage(final int severity, final long timeStamp, final String msg) {
+      if (priorities == null) {
+          String[] p = new String[8];
+          for (int i = 0; i < p.length; i++) {
+              p[i] = "<" + (syslogFacility | i) + ">1 ";
+          }
+          priorities = p;
+      }
+      long second = timeStamp / 1000;
+      if (second != timestampSecond) {
+          timestampPrefix = timestampFormat.format(new Date(second * 1000));
+          timestampSecond = second;
+      }
+      int millis = (int) (timeStamp - second * 1000);
+      StringBuffer buf = new StringBuffer(msg.length() + 80);
+      buf.append(priorities[severity & 7]);
+      buf.append(timestampPrefix);
+      buf.append((char) ('0' + millis / 100));
+      buf.append((char) ('0' + millis / 10 % 10));
+      buf.append((char) ('0' + millis % 10));
+      buf.append('Z');
+      buf.append(headerSuffix);
+      buf.append(msg);
+      byte[] bytes;
+      try {
+          bytes = buf.toString().getBytes("UTF-8");
+      } catch (UnsupportedEncodingException e) {
+          bytes = buf.toString().getBytes();
+      }
+      sender.offer(bytes);
+  }
+
+    /**
+     * Get the transport protocol.
+     * @return "udp" or "tcp".
+     * @since 1.2.18
+     */
+  public String getProtocol() {
+      return protocol;
+  }
+
+    /**
+     * Sets the <b>Protocol</b> option, "udp" (the default) or "tcp".
+     * With "tcp", messages are formatted as described by RFC 5424 and
+     * sent over a persistent connection to the <b>SyslogHost</b>, each
+     * preceded by its length in bytes as described by RFC 6587. Their
+     * timestamps are in UTC and the TAG is used as APP-NAME; the
+     * <b>Header</b> option is ignored. Messages are queued and sent by
+     * a dedicated thread, which reconnects when the connection is lost.
+     * Takes effect when {@link #activateOptions} is called.
+     * @param val "udp" or "tcp".
+     * @since 1.2.18
+     */
+  public void setProtocol(final String val) {
+      if (TCP_PROTOCOL.equalsIgnoreCase(val)) {
+          protocol = TCP_PROTOCOL;
+      } else if (UDP_PROTOCOL.equalsIgnoreCase(val)) {
+          protocol = UDP_PROTOCOL;
+      } else {
+          LogLog.warn("[" + val + "] is an unknown syslog protocol. Using [udp].");
+          protocol = UDP_PROTOCOL;
+      }
+  }
+
+    /**
+     * Get the number of messages which may wait to be sent in TCP mode.
+     * @return buffer size.
+     * @since 1.2.18
+     */
+  public int getBufferSize() {
+      return bufferSize;
+  }
+
+    /**
+     * Sets the number of messages which may wait to be sent in TCP
+     * mode. When the queue is full, for instance while the syslog host
+     * is unreachable, new messages are discarded. The default is 512.
+     * @param val buffer size.
+     * @since 1.2.18
+     */
+  public void setBufferSize(final int val) {
+      bufferSize = val;
+  }
+
+    /**
+     * Get the reconnection delay.
+     * @return number of milliseconds between two connection attempts.
+     * @since 1.2.18
+     */
+  public int getReconnectionDelay() {
+      return reconnectionDelay;
+  }
+
+    /**
+     * Sets the number of milliseconds to wait between two attempts to
+     * connect to the syslog host in TCP mode. The default is 30000.
+     * Messages are dropped instead of waiting if it is 0 or less.
+     * @param val reconnection delay.
+     * @since 1.2.18
+     */
+  public void setReconnectionDelay(final int val) {
+      reconnectionDelay = val;
+  }
+
+  /**
+     The Sender writes the queued messages to the syslog host with
+     octet-counting framing, flushing the connection once per batch.
+     When the connection fails, it keeps the unsent batch and attempts
+     to reconnect every <code>reconnectionDelay</code> milliseconds.
+
+     @since 1.2.18
+  */
+  class Sender extends Thread {
+
+    private final InetSocketAddress address;
+    private List queue = new ArrayList();
+    private int discarded = 0;
+    private boolean stopping = false;
+    private Socket socket;
+    private OutputStream out;
+
+    Sender(InetSocketAddress address) {
+      super("SyslogAppender-sender");
+      this.address = address;
+    }
+
+    synchronized
+    void offer(byte[] message) {
+      if(stopping) {
+        return;
+      }
+      if(queue.size() >= bufferSize) {
+        discarded++;
+        return;
+      }
+      queue.add(message);
+      if(queue.size() == 1) {
+        notifyAll();
+      }
+    }
+
+    /**
+       Send the messages left once connected, without waiting to
+       reconnect.  */
+    synchronized
+    void shutdown() {
+      stopping = true;
+      notifyAll();
+    }
+
+    public
+    void run() {
+      List batch = null;
+      boolean failed = false;
+      while(true) {
+        synchronized(this) {
+          if(batch == null) {
+            try {
+              while(queue.isEmpty() && !stopping) {
+                wait();
+              }
+            } catch(InterruptedException e) {
+              stopping = true;
+            }
+            if(queue.isEmpty()) {
+              break;
+            }
+            batch = queue;
+            queue = new ArrayList();
+            if(discarded > 0) {
+              LogLog.warn("Discarded " + discarded + " syslog messages due to full buffer.");
+              discarded = 0;
+            }
+          }
+          if(failed) {
+            if(stopping || reconnectionDelay <= 0) {
+              LogLog.warn("Dropping " + (batch.size() + queue.size())
+                          + " syslog messages not sent to [" + syslogHost + "].");
+              batch = null;
+              queue.clear();
+              failed = false;
+              if(stopping) {
+                break;
+              }
+              continue;
+            }
+            try {
+              wait(reconnectionDelay);
+            } catch(InterruptedException e) {
+              stopping = true;
+            }
+          }
+        }
+        try {
+          if(out == null) {
+            // resolve the host again on every attempt
+            InetSocketAddress resolved =
+              new InetSocketAddress(address.getHostName(), address.getPort());
+            if(resolved.getAddress() == null) {
+              throw new UnknownHostException(address.getHostName());
+            }
+            socket = new Socket();
+            socket.connect(resolved, CONNECT_TIMEOUT);
+            out = new BufferedOutputStream(socket.getOutputStream(), 8192);
+          }
+          for(int i = 0; i < batch.size(); i++) {
+            byte[] message = (byte[]) batch.get(i);
+            out.write(Integer.toString(message.length).getBytes());
+            out.write(' ');
+            out.write(message);
+          }
+          out.flush();
+          batch = null;
+          failed = false;
+        } catch(IOException e) {
+          if(e instanceof InterruptedIOException) {
+            Thread.currentThread().interrupt();
+          }
+          if(!failed) {
+            LogLog.warn("Could not send syslog messages to [" + syslogHost
+                        + "], will resend them after reconnecting: " + e);
+          }
+          disconnect();
+          failed = true;
+        }
+      }
+      disconnect();
+    }
+
+    private
+    void disconnect() {
+      if(socket != null) {
+        try {
+          socket.close();
+        } catch(IOException e) {
+          LogLog.debug("Could not close syslog connection.", e);
+        }
+      }
+      socket = null;
+      out = null;
+    }
+  }
 }
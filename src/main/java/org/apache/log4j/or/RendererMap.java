@@ -21,17 +21,34 @@ import org.apache.log4j.spi.RendererSupport;
 import org.apache.log4j.helpers.LogLog;
 import org.apache.log4j.helpers.Loader;
 import org.apache.log4j.helpers.OptionConverter;
+import java.util.HashMap;
 import java.util.Hashtable;
+import java.util.Map;
 
 /**
    Map class objects to an {@link ObjectRenderer}.
 
+   <p>The renderer found for a class is remembered, including the
+   default renderer, so that later lookups for the same class are a
+   single unsynchronized map access. The remembered renderers are
+   forgotten whenever the map is changed. Classes loaded by a class
+   loader unknown to log4j are not remembered, so that they can be
+   unloaded.
+
    @author Ceki G&uuml;lc&uuml;
    @since version 1.0 */
 public class RendererMap {
 
   Hashtable map;
 
+  /**
+     Renderers found by {@link #get(Class)}, keyed by class. The map is
+     replaced rather than modified.  */
+  private volatile Map resolved = new HashMap();
+
+  /** The maximum number of classes whose renderer is remembered. */
+  static final int MAX_RESOLVED = 1024;
+
   static ObjectRenderer defaultRenderer = new DefaultRenderer();
 
   public
@@ -144,6 +161,26 @@ public class RendererMap {
  */
   public
   ObjectRenderer get(Class clazz) {
+    Map cache = resolved;
+    ObjectRenderer r = (ObjectRenderer) cache.get(clazz);
+    if(r != null) {
+      return r;
+    }
+    r = search(clazz);
+    if(cache.size() < MAX_RESOLVED && Loader.isVisible(clazz)) {
+      synchronized(this) {
+	// a renderer found before the map changed must not be remembered
+	if(resolved == cache) {
+	  Map copy = new HashMap(cache);
+	  copy.put(clazz, r);
+	  resolved = copy;
+	}
+      }
+    }
+    return r;
+  }
+
+  ObjectRenderer search(Class clazz) {
     //System.out.println("\nget: "+clazz);
     ObjectRenderer r = null;
     for(Class c = clazz; c != null; c = c.getSuperclass()) {
@@ -186,6 +223,7 @@ public class RendererMap {
   public
   void clear() {
     map.clear();
+    forget();
   }
 
   /**
@@ -194,5 +232,14 @@ public class RendererMap {
   public
   void put(Class clazz, ObjectRenderer or) {
     map.put(clazz, or);
+    forget();
+  }
+
+  private
+  synchronized
+  void forget() {
+    // a new instance, so that a lookup which started before the change
+    // sees that the map it read is no longer current
+    resolved = new HashMap();
   }
 }
@@ -24,9 +24,6 @@ import org.apache.log4j.helpers.LogLog;
 
 import java.io.PrintWriter;
 import java.io.StringWriter;
-import java.io.InterruptedIOException;
-import java.lang.reflect.Method;
-import java.lang.reflect.InvocationTargetException;
 
 /**
    The internal representation of caller location information.
@@ -60,11 +57,15 @@ public class LocationInfo implements java.io.Serializable {
   private static StringWriter sw = new StringWriter();
   private static PrintWriter pw = new PrintWriter(sw);
 
-  private static Method getStackTraceMethod;
-  private static Method getClassNameMethod;
-  private static Method getMethodNameMethod;
-  private static Method getFileNameMethod;
-  private static Method getLineNumberMethod;
+  /**
+     Number of call sites remembered by {@link #getLocationInfo}, a
+     power of two.  */
+  private static final int CACHE_SIZE = 1024;
+
+  /**
+     Call sites resolved recently, indexed by a hash of their class
+     name and line number. Colliding call sites replace each other.  */
+  private static final CachedLocation[] cache = new CachedLocation[CACHE_SIZE];
 
 
   /**
@@ -93,19 +94,6 @@ public class LocationInfo implements java.io.Serializable {
     } catch(Throwable e) {
       // nothing to do
     }
-      try {
-          Class[] noArgs = null;
-          getStackTraceMethod = Throwable.class.getMethod("getStackTrace", noArgs);
-          Class stackTraceElementClass = Class.forName("java.lang.StackTraceElement");
-          getClassNameMethod = stackTraceElementClass.getMethod("getClassName", noArgs);
-          getMethodNameMethod = stackTraceElementClass.getMethod("getMethodName", noArgs);
-          getFileNameMethod = stackTraceElementClass.getMethod("getFileName", noArgs);
-          getLineNumberMethod = stackTraceElementClass.getMethod("getLineNumber", noArgs);
-      } catch(ClassNotFoundException ex) {
-          LogLog.debug("LocationInfo will use pre-JDK 1.4 methods to determine location.");
-      } catch(NoSuchMethodException ex) {
-          LogLog.debug("LocationInfo will use pre-JDK 1.4 methods to determine location.");
-      }
   }
 
   /**
@@ -133,57 +121,21 @@ public class LocationInfo implements java.io.Serializable {
     public LocationInfo(Throwable t, String fqnOfCallingClass) {
       if(t == null || fqnOfCallingClass == null)
 	return;
-      if (getLineNumberMethod != null) {
-          try {
-              Object[] noArgs = null;
-              Object[] elements =  (Object[]) getStackTraceMethod.invoke(t, noArgs);
-              String prevClass = NA;
-              for(int i = elements.length - 1; i >= 0; i--) {
-                  String thisClass = (String) getClassNameMethod.invoke(elements[i], noArgs);
-                  if(fqnOfCallingClass.equals(thisClass)) {
-                      int caller = i + 1;
-                      if (caller < elements.length) {
-                          className = prevClass;
-                          methodName = (String) getMethodNameMethod.invoke(elements[caller], noArgs);
-                          fileName = (String) getFileNameMethod.invoke(elements[caller], noArgs);
-                          if (fileName == null) {
-                              fileName = NA;
-                          }
-                          int line = ((Integer) getLineNumberMethod.invoke(elements[caller], noArgs)).intValue();
-                          if (line < 0) {
-                              lineNumber = NA;
-                          } else {
-                              lineNumber = String.valueOf(line);
-                          }
-                          StringBuffer buf = new StringBuffer();
-                          buf.append(className);
-                          buf.append(".");
-                          buf.append(methodName);
-                          buf.append("(");
-                          buf.append(fileName);
-                          buf.append(":");
-                          buf.append(lineNumber);
-                          buf.append(")");
-                          this.fullInfo = buf.toString();
-                      }
-                      return;
-                  }
-                  prevClass = thisClass;
-              }
-              return;
-          } catch(IllegalAccessException ex) {
-              LogLog.debug("LocationInfo failed using JDK 1.4 methods", ex);
-          } catch(InvocationTargetException ex) {
-              if (ex.getTargetException() instanceof InterruptedException
-                      || ex.getTargetException() instanceof InterruptedIOException) {
-                  Thread.currentThread().interrupt();
-              }
-              LogLog.debug("LocationInfo failed using JDK 1.4 methods", ex);
-          } catch(RuntimeException ex) {
-              LogLog.debug("LocationInfo failed using JDK 1.4 methods", ex);
+      StackTraceElement[] elements = t.getStackTrace();
+      if (elements.length > 0) {
+          StackTraceElement caller = findCaller(elements, fqnOfCallingClass);
+          if (caller != null) {
+              LocationInfo info = lookup(caller);
+              this.className = info.className;
+              this.methodName = info.methodName;
+              this.fileName = info.fileName;
+              this.lineNumber = info.lineNumber;
+              this.fullInfo = info.fullInfo;
           }
+          return;
       }
 
+      // The JVM omitted the stack trace, try the printed form.
       String s;
       // Protect against multiple access to sw.
       synchronized(sw) {
@@ -245,6 +197,165 @@ public class LocationInfo implements java.io.Serializable {
       this.fullInfo = s.substring(ibegin, iend);
     }
 
+    /**
+     * Instantiate location information from the frame of the caller.
+     */
+    private LocationInfo(final StackTraceElement frame) {
+      className = frame.getClassName();
+      methodName = frame.getMethodName();
+      fileName = frame.getFileName();
+      if (fileName == null) {
+          fileName = NA;
+      }
+      int line = frame.getLineNumber();
+      if (line < 0) {
+          lineNumber = NA;
+      } else {
+          lineNumber = String.valueOf(line);
+      }
+      StringBuffer buf = new StringBuffer();
+      buf.append(className);
+      buf.append(".");
+      buf.append(methodName);
+      buf.append("(");
+      buf.append(fileName);
+      buf.append(":");
+      buf.append(lineNumber);
+      buf.append(")");
+      this.fullInfo = buf.toString();
+    }
+
+    /**
+     * Returns the location information of the site calling a method of
+     * <code>fqnOfCallingClass</code>, as the constructor taking a
+     * Throwable does.
+     *
+     * <p>Unlike the constructor, this method returns the same instance
+     * for the repeated calls from a call site as long as it remains
+     * cached. The returned instance must not be modified.
+     *
+     * @param t throwable used to determine location, may be null.
+     * @param fqnOfCallingClass class name of first class considered part of
+     *    the logging framework.
+     * @return location information, never null.
+     * @since 1.2.18
+     */
+    public static LocationInfo getLocationInfo(final Throwable t,
+                                               final String fqnOfCallingClass) {
+      if (t != null && fqnOfCallingClass != null) {
+          StackTraceElement[] elements = t.getStackTrace();
+          if (elements.length > 0) {
+              StackTraceElement caller = findCaller(elements, fqnOfCallingClass);
+              if (caller != null) {
+                  return lookup(caller);
+              }
+              return new LocationInfo(null, null);
+          }
+      }
+      return new LocationInfo(t, fqnOfCallingClass);
+    }
+
+    /**
+     * Returns the location information of the site calling a method of
+     * <code>fqnOfCallingClass</code> from the current thread.
+     *
+     * <p>On JDK 9 or later the caller is found with a
+     * <code>StackWalker</code>, which avoids capturing the whole
+     * stack. Otherwise this method is equivalent to calling
+     * {@link #getLocationInfo(Throwable, String)} with a new Throwable.
+     *
+     * @param fqnOfCallingClass class name of first class considered part of
+     *    the logging framework.
+     * @return location information, never null.
+     * @since 1.2.18
+     */
+    public static LocationInfo getLocationInfo(final String fqnOfCallingClass) {
+      StackWalkerLocator locator = Locator.INSTANCE;
+      if (locator != null && fqnOfCallingClass != null) {
+          try {
+              StackTraceElement caller = locator.findCaller(fqnOfCallingClass);
+              if (caller != null) {
+                  return lookup(caller);
+              }
+              return new LocationInfo(null, null);
+          } catch (Exception e) {
+              // fall back to the stack trace
+          }
+      }
+      return getLocationInfo(new Throwable(), fqnOfCallingClass);
+    }
+
+    /**
+     * Holds the StackWalker based locator, loaded on first use.
+     */
+    private static final class Locator {
+      /**
+       * Null if StackWalker is not available.
+       */
+      static final StackWalkerLocator INSTANCE = create();
+
+      private static StackWalkerLocator create() {
+        try {
+            return new StackWalkerLocator();
+        } catch (ClassNotFoundException e) {
+            LogLog.debug("No StackWalker available, using stack traces.");
+        } catch (LinkageError e) {
+            LogLog.debug("No StackWalker available, using stack traces.");
+        } catch (Exception e) {
+            LogLog.debug("Could not create a StackWalker, using stack traces.", e);
+        }
+        return null;
+      }
+    }
+
+    /**
+     * Returns the frame following the innermost frames of
+     * <code>fqnOfCallingClass</code>, or null if there is none. Frames
+     * below the caller are not examined.
+     */
+    private static StackTraceElement findCaller(final StackTraceElement[] elements,
+                                                final String fqnOfCallingClass) {
+      boolean found = false;
+      for (int i = 0; i < elements.length; i++) {
+          if (fqnOfCallingClass.equals(elements[i].getClassName())) {
+              found = true;
+          } else if (found) {
+              return elements[i];
+          }
+      }
+      return null;
+    }
+
+    /**
+     * Returns the cached location information of <code>frame</code>,
+     * resolving and caching it if needed.
+     */
+    private static LocationInfo lookup(final StackTraceElement frame) {
+      int index = (frame.getClassName().hashCode() * 31 + frame.getLineNumber())
+              & (CACHE_SIZE - 1);
+      CachedLocation cached = cache[index];
+      if (cached != null && cached.frame.equals(frame)) {
+          return cached.info;
+      }
+      LocationInfo info = new LocationInfo(frame);
+      cache[index] = new CachedLocation(frame, info);
+      return info;
+    }
+
+    /**
+     * An entry of the call site cache. The final fields make the
+     * location information safely visible to other threads.
+     */
+    private static final class CachedLocation {
+      final StackTraceElement frame;
+      final LocationInfo info;
+
+      CachedLocation(final StackTraceElement frame, final LocationInfo info) {
+        this.frame = frame;
+        this.info = info;
+      }
+    }
+
     /**
      *   Appends a location fragment to a buffer to build the 
      *     full location info.
@@ -141,5 +141,60 @@ public class LoggingEvent extends LogEventBase {
       }
     }
 
+  /** The event recycled by each thread when events are reused. */
+  private static final ThreadLocal reusableEvent = new ThreadLocal();
 
+  private LoggingEvent() {
+    super();
+  }
+
+  /**
+     Return an event filled in from the supplied parameters. When
+     {@link LogEventBase#isReuseEvents event reuse} is enabled, this is
+     the event owned by the calling thread, which must be passed to
+     {@link #release} once the appenders have been called. Otherwise,
+     or if the thread's event is still in use by an enclosing logging
+     request, a new event is returned.
+
+     @since 1.2.18 */
+  public
+  static
+  LoggingEvent obtain(String fqnOfCategoryClass, Category logger,
+		      Priority level, Object message, Throwable throwable) {
+    if(isReuseEvents()) {
+      LoggingEvent event = (LoggingEvent) reusableEvent.get();
+      if(event == null) {
+	event = new LoggingEvent();
+	event.setReusable();
+	reusableEvent.set(event);
+      }
+      if(event.acquire()) {
+	event.fill(fqnOfCategoryClass, logger, level, message, throwable);
+	return event;
+      }
+    }
+    return new LoggingEvent(fqnOfCategoryClass, logger, level, message,
+			    throwable);
+  }
+
+  /**
+     Return an event which can be kept after the current logging
+     request completes. This is the event itself unless it is
+     {@link #isReusable reusable}, in which case a copy is returned.
+
+     <p>Appenders which buffer events or hand them over to another
+     thread must keep the returned event rather than this one.
+     Location information is not computed by this method and must be
+     requested beforehand if needed.
+
+     @since 1.2.18 */
+  public
+  LoggingEvent toImmutable() {
+    if(!isReusable()) {
+      return this;
+    }
+    LoggingEvent copy = new LoggingEvent();
+    copyInto(copy);
+    return copy;
+  }
 }
@@ -62,7 +62,7 @@ final public class RootCategory extends Logger {
 		   new Throwable());
     }
     else {
-      this.level = level;
+      super.setLevel(level);
     }
   }
 
@@ -0,0 +1,92 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.log4j.spi;
+
+import java.lang.reflect.Method;
+import java.util.Iterator;
+import java.util.function.Function;
+import java.util.stream.Stream;
+
+/**
+   Finds the caller of a logging request through a
+   <code>java.lang.StackWalker</code>, which only materializes the
+   frames it is asked for instead of the whole stack.
+
+   <p>This class requires JDK 9 or later at run time, it is called
+   through reflection so that it compiles against JDK 8. It is only
+   loaded by {@link LocationInfo}, which falls back to the stack trace
+   of a <code>Throwable</code> when it cannot be loaded.
+
+   @since 1.2.18 */
+final class StackWalkerLocator {
+
+  private static final Class[] NO_TYPES = new Class[0];
+  private static final Object[] NO_ARGS = new Object[0];
+
+  private final Object walker;
+  private final Method walk;
+  private final Method getClassName;
+  private final Method toStackTraceElement;
+
+  StackWalkerLocator() throws Exception {
+    Class walkerClass = Class.forName("java.lang.StackWalker");
+    Class frameClass = Class.forName("java.lang.StackWalker$StackFrame");
+    walker = walkerClass.getMethod("getInstance", NO_TYPES).invoke(null, NO_ARGS);
+    walk = walkerClass.getMethod("walk", new Class[] { Function.class });
+    getClassName = frameClass.getMethod("getClassName", NO_TYPES);
+    toStackTraceElement = frameClass.getMethod("toStackTraceElement", NO_TYPES);
+  }
+
+  /**
+     Return the frame following the innermost frames of
+     <code>fqnOfCallingClass</code>, or null if there is none.  */
+  StackTraceElement findCaller(final String fqnOfCallingClass)
+    throws Exception {
+    return (StackTraceElement)
+      walk.invoke(walker, new Object[] { new CallerFinder(fqnOfCallingClass) });
+  }
+
+  /**
+     The function passed to <code>StackWalker.walk</code>. Frames
+     below the caller are not examined.  */
+  private final class CallerFinder implements Function {
+    private final String fqnOfCallingClass;
+
+    CallerFinder(final String fqnOfCallingClass) {
+      this.fqnOfCallingClass = fqnOfCallingClass;
+    }
+
+    public Object apply(final Object frames) {
+      try {
+	boolean found = false;
+	Iterator i = ((Stream) frames).iterator();
+	while(i.hasNext()) {
+	  Object frame = i.next();
+	  if(fqnOfCallingClass.equals(getClassName.invoke(frame, NO_ARGS))) {
+	    found = true;
+	  } else if(found) {
+	    return toStackTraceElement.invoke(frame, NO_ARGS);
+	  }
+	}
+	return null;
+      } catch(Exception e) {
+	throw new IllegalStateException(e.toString());
+      }
+    }
+  }
+}
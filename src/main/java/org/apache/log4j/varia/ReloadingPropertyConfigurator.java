@@ -17,27 +17,486 @@
 
 package org.apache.log4j.varia;
 
+import java.io.FileInputStream;
+import java.io.IOException;
 import java.io.InputStream;
+import java.io.InterruptedIOException;
 import java.net.URL;
+import java.net.URLConnection;
+import java.util.ArrayList;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.StringTokenizer;
 
+import org.apache.log4j.Appender;
+import org.apache.log4j.Level;
+import org.apache.log4j.LogManager;
+import org.apache.log4j.Logger;
 import org.apache.log4j.PropertyConfigurator;
+import org.apache.log4j.helpers.ConfigWatcher;
+import org.apache.log4j.helpers.FileWatchdog;
+import org.apache.log4j.helpers.LogLog;
+import org.apache.log4j.helpers.OptionConverter;
 import org.apache.log4j.spi.Configurator;
+import org.apache.log4j.spi.LoggerFactory;
 import org.apache.log4j.spi.LoggerRepository;
 
+/**
+ * Configures log4j from a file in the format read by {@link
+ * PropertyConfigurator}, and reconfigures it incrementally when the
+ * configuration changes.
+ *
+ * <p>The first configuration is applied exactly as {@link
+ * PropertyConfigurator} would. Each later configuration is compared
+ * with the previous one and only the differences are applied:
+ * <ul>
+ * <li>Loggers whose level, appender list or additivity changed are
+ * updated in place. Loggers no longer mentioned revert to an inherited
+ * level and lose the appenders this configurator gave them.</li>
+ * <li>An appender whose options, layout, filters or error handler
+ * changed is replaced by a new instance. The new instance is attached
+ * before the old one is detached and closed, so no event is lost.</li>
+ * <li>Appenders whose definition did not change keep running and keep
+ * their open files and connections.</li>
+ * </ul>
+ *
+ * <p>A change to the logger factory, renderers or throwable renderer,
+ * or a configuration with <code>log4j.reset=true</code>, resets the
+ * repository and configures it from scratch.
+ *
+ * <p>An instance remembers the configuration it last applied and must
+ * only be used with one repository. Changes made through the API in
+ * between are not taken into account when computing the differences.
+ *
+ * @since 1.2.17
+ */
 public class ReloadingPropertyConfigurator implements Configurator {
 
-    PropertyConfigurator delegate = new PropertyConfigurator();
+    private static final String LOGGER_PREFIX = "log4j.logger.";
+    private static final String CATEGORY_PREFIX = "log4j.category.";
+    private static final String ADDITIVITY_PREFIX = "log4j.additivity.";
+    private static final String ROOT_LOGGER_KEY = "log4j.rootLogger";
+    private static final String ROOT_CATEGORY_KEY = "log4j.rootCategory";
+    private static final String APPENDER_PREFIX = "log4j.appender.";
+    private static final String THRESHOLD_KEY = "log4j.threshold";
+    private static final String RESET_KEY = "log4j.reset";
+
+    /** Keys whose change requires configuring from scratch. */
+    private static final String[] GLOBAL_PREFIXES = {
+        RESET_KEY, PropertyConfigurator.LOGGER_FACTORY_KEY, "log4j.factory",
+        "log4j.renderer.", "log4j.throwableRenderer"
+    };
+
+    /** Stands for the root logger in the maps of logger entries. */
+    private static final String ROOT_NAME = "";
+
+    Delegate delegate = new Delegate();
+
+    /** The configuration last applied, or null. */
+    private Properties current;
+
+    /** The appenders created from the current configuration, by name. */
+    private final Map live = new HashMap();
 
     public ReloadingPropertyConfigurator() {
     }
 
+    /**
+     * Configure from <code>configFilename</code> and reconfigure each
+     * time the file is modified, as watched by {@link ConfigWatcher}.
+     *
+     * @param configFilename a file in key=value format.
+     * @param delay the delay in milliseconds between each check when
+     * the file has to be polled.
+     * @since 1.2.18
+     */
+    public static void configureAndWatch(String configFilename, long delay) {
+        ReloadingWatchdog watchdog = new ReloadingWatchdog(configFilename);
+        watchdog.setDelay(delay);
+        ConfigWatcher.watch(watchdog);
+    }
+
    /**
     * @since 1.2.17
     */
     public void doConfigure(InputStream inputStream, LoggerRepository repository) {
+        Properties props = new Properties();
+        try {
+            props.load(inputStream);
+        } catch (IOException e) {
+            if (e instanceof InterruptedIOException) {
+                Thread.currentThread().interrupt();
+            }
+            LogLog.error("Could not read configuration file from InputStream ["
+                    + inputStream + "].", e);
+            LogLog.error("Ignoring configuration InputStream [" + inputStream + "].");
+            return;
+        }
+        doConfigure(props, repository);
     }
 
     public void doConfigure(URL url, LoggerRepository repository) {
+        InputStream istream = null;
+        try {
+            URLConnection uConn = url.openConnection();
+            uConn.setUseCaches(false);
+            istream = uConn.getInputStream();
+            doConfigure(istream, repository);
+        } catch (IOException e) {
+            if (e instanceof InterruptedIOException) {
+                Thread.currentThread().interrupt();
+            }
+            LogLog.error("Could not read configuration file from URL [" + url + "].", e);
+            LogLog.error("Ignoring configuration file [" + url + "].");
+        } finally {
+            close(istream);
+        }
+    }
+
+    /**
+     * Read configuration options from the file <code>configFilename</code>.
+     *
+     * @since 1.2.18
+     */
+    public void doConfigure(String configFilename, LoggerRepository repository) {
+        InputStream istream = null;
+        try {
+            istream = new FileInputStream(configFilename);
+            doConfigure(istream, repository);
+        } catch (IOException e) {
+            if (e instanceof InterruptedIOException) {
+                Thread.currentThread().interrupt();
+            }
+            LogLog.error("Could not read configuration file [" + configFilename + "].", e);
+            LogLog.error("Ignoring configuration file [" + configFilename + "].");
+        } finally {
+            close(istream);
+        }
+    }
+
+    /**
+     * Apply <code>properties</code>, or only their differences with
+     * the configuration previously applied by this instance.
+     *
+     * @since 1.2.18
+     */
+    public synchronized void doConfigure(Properties properties,
+                                         LoggerRepository repository) {
+        Properties props = new Properties();
+        props.putAll(properties);
+        if (current == null || requiresReset(current, props)) {
+            configureFully(props, repository);
+        } else {
+            configureChanges(current, props, repository);
+        }
+        current = props;
+    }
+
+    private void configureFully(Properties props, LoggerRepository repository) {
+        if (current != null) {
+            LogLog.debug("Global options changed, configuring from scratch.");
+            repository.resetConfiguration();
+        }
+        delegate = new Delegate();
+        delegate.doConfigure(props, repository);
+        live.clear();
+        collectAppenders(repository.getRootLogger(), props);
+        for (Enumeration e = repository.getCurrentLoggers(); e.hasMoreElements();) {
+            collectAppenders((Logger) e.nextElement(), props);
+        }
+    }
+
+    private void collectAppenders(Logger logger, Properties props) {
+        for (Enumeration e = logger.getAllAppenders(); e.hasMoreElements();) {
+            Appender appender = (Appender) e.nextElement();
+            String name = appender.getName();
+            if (name != null && !subset(props, APPENDER_PREFIX + name).isEmpty()) {
+                live.put(name, appender);
+            }
+        }
+    }
+
+    private void configureChanges(Properties old, Properties props,
+                                  LoggerRepository repository) {
+        String value = props.getProperty(LogLog.DEBUG_KEY);
+        if (value != null) {
+            LogLog.setInternalDebugging(OptionConverter.toBoolean(value, true));
+        }
+
+        String oldThreshold = OptionConverter.findAndSubst(THRESHOLD_KEY, old);
+        String threshold = OptionConverter.findAndSubst(THRESHOLD_KEY, props);
+        if (!equals(oldThreshold, threshold)) {
+            repository.setThreshold(OptionConverter.toLevel(threshold, Level.ALL));
+            LogLog.debug("Hierarchy threshold set to [" + repository.getThreshold() + "].");
+        }
+
+        // Unchanged appenders are registered with the delegate so that
+        // parsing them returns the running instance.
+        delegate.clearRegistry();
+        Set replaced = new HashSet();
+        for (Iterator i = live.entrySet().iterator(); i.hasNext();) {
+            Map.Entry entry = (Map.Entry) i.next();
+            String prefix = APPENDER_PREFIX + entry.getKey();
+            if (subset(old, prefix).equals(subset(props, prefix))) {
+                delegate.register((Appender) entry.getValue());
+            } else {
+                LogLog.debug("Appender \"" + entry.getKey() + "\" changed.");
+                replaced.add(entry.getKey());
+            }
+        }
+
+        Map oldLoggers = loggerEntries(old);
+        Map loggers = loggerEntries(props);
+        Set names = new HashSet(oldLoggers.keySet());
+        names.addAll(loggers.keySet());
+        for (Iterator i = names.iterator(); i.hasNext();) {
+            String name = (String) i.next();
+            String oldValue = (String) oldLoggers.get(name);
+            String newValue = (String) loggers.get(name);
+            String oldAdditivity = OptionConverter.findAndSubst(ADDITIVITY_PREFIX + name, old);
+            String additivity = OptionConverter.findAndSubst(ADDITIVITY_PREFIX + name, props);
+            if (equals(oldValue, newValue) && equals(oldAdditivity, additivity)
+                    && !refersToChangedAppender(newValue, replaced)) {
+                continue;
+            }
+            Logger logger = ROOT_NAME.equals(name) ? repository.getRootLogger()
+                    : repository.getLogger(name, delegate.getLoggerFactory());
+            LogLog.debug("Reconfiguring logger [" + logger.getName() + "].");
+            configureLogger(props, logger, newValue, repository);
+            if (!ROOT_NAME.equals(name)) {
+                logger.setAdditivity(additivity == null || "".equals(additivity)
+                        || OptionConverter.toBoolean(additivity, true));
+            }
+        }
+
+        // Close the appenders which were replaced or are no longer used.
+        Set referenced = new HashSet();
+        for (Iterator i = loggers.values().iterator(); i.hasNext();) {
+            referenced.addAll(appenderNames((String) i.next()));
+        }
+        Map registered = delegate.getRegistry();
+        registered.keySet().retainAll(referenced);
+        for (Iterator i = live.entrySet().iterator(); i.hasNext();) {
+            Map.Entry entry = (Map.Entry) i.next();
+            if (registered.get(entry.getKey()) != entry.getValue()) {
+                LogLog.debug("Closing appender \"" + entry.getKey() + "\".");
+                ((Appender) entry.getValue()).close();
+                i.remove();
+            }
+        }
+        live.putAll(registered);
+        delegate.clearRegistry();
+    }
+
+    /**
+     * Whether a logger entry names an appender which was replaced or
+     * is not running.
+     */
+    private boolean refersToChangedAppender(String value, Set replaced) {
+        if (value == null) {
+            return false;
+        }
+        List names = appenderNames(value);
+        for (int i = 0; i < names.size(); i++) {
+            Object name = names.get(i);
+            if (replaced.contains(name) || !live.containsKey(name)) {
+                return true;
+            }
+        }
+        return false;
     }
 
+    /**
+     * Set the level and appenders of <code>logger</code> from
+     * <code>value</code>, or clear them if <code>value</code> is null.
+     * Appenders are attached before others are detached.
+     */
+    private void configureLogger(Properties props, Logger logger, String value,
+                                 LoggerRepository repository) {
+        boolean isRoot = logger == repository.getRootLogger();
+        List appenders = new ArrayList();
+        if (value == null) {
+            if (!isRoot) {
+                logger.setLevel(null);
+            }
+        } else {
+            if (!(value.startsWith(",") || value.equals(""))) {
+                String levelStr = new StringTokenizer(value, ",").nextToken().trim();
+                if (INHERITED.equalsIgnoreCase(levelStr) || NULL.equalsIgnoreCase(levelStr)) {
+                    if (isRoot) {
+                        LogLog.warn("The root logger cannot be set to null.");
+                    } else {
+                        logger.setLevel(null);
+                    }
+                } else {
+                    logger.setLevel(OptionConverter.toLevel(levelStr, Level.DEBUG));
+                }
+            }
+            List names = appenderNames(value);
+            for (int i = 0; i < names.size(); i++) {
+                Appender appender = delegate.getAppender(props,
+                        (String) names.get(i), repository);
+                if (appender != null) {
+                    appenders.add(appender);
+                }
+            }
+        }
+        for (int i = 0; i < appenders.size(); i++) {
+            Appender appender = (Appender) appenders.get(i);
+            if (!logger.isAttached(appender)) {
+                logger.addAppender(appender);
+            }
+        }
+        List detached = new ArrayList();
+        for (Enumeration e = logger.getAllAppenders(); e.hasMoreElements();) {
+            Object appender = e.nextElement();
+            if (!appenders.contains(appender)
+                    && (value != null || live.containsValue(appender))) {
+                detached.add(appender);
+            }
+        }
+        for (int i = 0; i < detached.size(); i++) {
+            logger.removeAppender((Appender) detached.get(i));
+        }
+    }
+
+    /**
+     * Return the appender names listed in a logger entry.
+     */
+    private static List appenderNames(String value) {
+        List names = new ArrayList();
+        StringTokenizer st = new StringTokenizer(value, ",");
+        if (!(value.startsWith(",") || value.equals("")) && st.hasMoreTokens()) {
+            st.nextToken(); // level
+        }
+        while (st.hasMoreTokens()) {
+            String name = st.nextToken().trim();
+            if (name.length() > 0) {
+                names.add(name);
+            }
+        }
+        return names;
+    }
+
+    /**
+     * Map logger names, or {@link #ROOT_NAME}, to the value of their
+     * entry after variable substitution.
+     */
+    private static Map loggerEntries(Properties props) {
+        Map entries = new HashMap();
+        for (Enumeration e = props.propertyNames(); e.hasMoreElements();) {
+            String key = (String) e.nextElement();
+            if (key.startsWith(LOGGER_PREFIX)) {
+                entries.put(key.substring(LOGGER_PREFIX.length()),
+                        OptionConverter.findAndSubst(key, props));
+            } else if (key.startsWith(CATEGORY_PREFIX)) {
+                entries.put(key.substring(CATEGORY_PREFIX.length()),
+                        OptionConverter.findAndSubst(key, props));
+            }
+        }
+        String root = OptionConverter.findAndSubst(ROOT_LOGGER_KEY, props);
+        if (root == null) {
+            root = OptionConverter.findAndSubst(ROOT_CATEGORY_KEY, props);
+        }
+        if (root != null) {
+            entries.put(ROOT_NAME, root);
+        }
+        return entries;
+    }
+
+    private static boolean requiresReset(Properties old, Properties props) {
+        if (OptionConverter.toBoolean(props.getProperty(RESET_KEY), false)) {
+            return true;
+        }
+        for (int i = 0; i < GLOBAL_PREFIXES.length; i++) {
+            if (!subset(old, GLOBAL_PREFIXES[i]).equals(subset(props, GLOBAL_PREFIXES[i]))) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Return the entries whose key is <code>prefix</code> or starts
+     * with <code>prefix</code> followed by a dot. Values are returned
+     * after variable substitution, so that a change of a variable they
+     * refer to is seen as a change of the entry.
+     */
+    private static Map subset(Properties props, String prefix) {
+        Map subset = new HashMap();
+        String dotted = prefix.endsWith(".") ? prefix : prefix + ".";
+        for (Enumeration e = props.propertyNames(); e.hasMoreElements();) {
+            String key = (String) e.nextElement();
+            if (key.equals(prefix) || key.startsWith(dotted)) {
+                subset.put(key, OptionConverter.findAndSubst(key, props));
+            }
+        }
+        return subset;
+    }
+
+    private static boolean equals(String a, String b) {
+        return a == null ? b == null : a.equals(b);
+    }
+
+    private static void close(InputStream istream) {
+        if (istream != null) {
+            try {
+                istream.close();
+            } catch (InterruptedIOException ignore) {
+                Thread.currentThread().interrupt();
+            } catch (IOException ignore) {
+            }
+        }
+    }
+
+    /**
+     * Gives access to the parsing of single appenders.
+     */
+    static final class Delegate extends PropertyConfigurator {
+        Appender getAppender(Properties props, String name,
+                             LoggerRepository repository) {
+            return parseAppender(props, name, repository);
+        }
+
+        void register(Appender appender) {
+            registry.put(appender.getName(), appender);
+        }
+
+        Map getRegistry() {
+            return registry;
+        }
+
+        void clearRegistry() {
+            registry.clear();
+        }
+
+        LoggerFactory getLoggerFactory() {
+            return loggerFactory;
+        }
+    }
+
+    static final class ReloadingWatchdog extends FileWatchdog {
+        /**
+         * Created on the first change, which the super constructor
+         * already checks for.
+         */
+        private ReloadingPropertyConfigurator configurator;
+
+        ReloadingWatchdog(String filename) {
+            super(filename);
+        }
+
+        protected void doOnChange() {
+            if (configurator == null) {
+                configurator = new ReloadingPropertyConfigurator();
+            }
+            configurator.doConfigure(filename, LogManager.getLoggerRepository());
+        }
+    }
 }
@@ -23,6 +23,7 @@ import org.apache.log4j.Level;
 import org.apache.log4j.LogManager;
 import org.apache.log4j.Logger;
 import org.apache.log4j.config.PropertySetter;
+import org.apache.log4j.helpers.ConfigWatcher;
 import org.apache.log4j.helpers.FileWatchdog;
 import org.apache.log4j.helpers.Loader;
 import org.apache.log4j.helpers.LogLog;
@@ -720,10 +721,12 @@ public class DOMConfigurator implements Configurator {
 
   /**
      Read the configuration file <code>configFilename</code> if it
-     exists. Moreover, a thread will be created that will periodically
-     check if <code>configFilename</code> has been created or
-     modified. The period is determined by the <code>delay</code>
-     argument. If a change or file creation is detected, then
+     exists. Moreover, the {@link ConfigWatcher} thread shared by all
+     watched files will check if <code>configFilename</code> has been
+     created or modified. The file system is asked to report changes
+     when possible, otherwise the file is checked periodically and the
+     period is determined by the <code>delay</code> argument. If a
+     change or file creation is detected, then
      <code>configFilename</code> is read to configure log4j.  
 
       @param configFilename A log4j configuration file in XML format.
@@ -734,7 +737,7 @@ public class DOMConfigurator implements Configurator {
   void configureAndWatch(String configFilename, long delay) {
     XMLWatchdog xdog = new XMLWatchdog(configFilename);
     xdog.setDelay(delay);
-    xdog.start();
+    ConfigWatcher.watch(xdog);
   }
   
   private interface ParseAction {
@@ -0,0 +1,105 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.log4j.performance;
+
+import org.apache.log4j.Level;
+import org.apache.log4j.Logger;
+
+/**
+
+   Measures the throughput of logging requests issued concurrently by
+   an increasing number of threads through the same hierarchy.
+
+   <p>A {@link NullAppender} without a layout is attached to the root
+   logger so that the figures reflect the cost of dispatching the
+   event to the appenders of the hierarchy rather than the cost of
+   formatting or writing it.
+
+   <p>Usage: <code>java org.apache.log4j.performance.ConcurrentLogging
+   [maxThreads] [runLength]</code>
+
+   <p>For each thread count 1, 2, 4, ... up to <code>maxThreads</code>
+   (64 by default), every thread logs <code>runLength</code> messages
+   (1000000 by default) to its own logger. The program prints the
+   aggregate number of logging requests per millisecond.
+
+*/
+public class ConcurrentLogging {
+
+  static int RUN_LENGTH = 1000000;
+
+  static
+  public
+  void main(String[] args) throws InterruptedException {
+    int maxThreads = 64;
+    if(args.length > 0) {
+      maxThreads = Integer.parseInt(args[0]);
+    }
+    if(args.length > 1) {
+      RUN_LENGTH = Integer.parseInt(args[1]);
+    }
+
+    Logger root = Logger.getRootLogger();
+    root.setLevel(Level.INFO);
+    root.addAppender(new NullAppender());
+
+    // warm up
+    run(1);
+
+    for(int threads = 1; threads <= maxThreads; threads *= 2) {
+      double t = run(threads);
+      System.out.println(threads + " thread(s): " + (long) t
+                         + " logging requests per millisecond.");
+    }
+  }
+
+  static
+  double run(int threadCount) throws InterruptedException {
+    Thread[] threads = new Thread[threadCount];
+    for(int i = 0; i < threadCount; i++) {
+      threads[i] = new LoggingThread(Logger.getLogger("a.b.c.d.t" + i));
+    }
+    long before = System.currentTimeMillis();
+    for(int i = 0; i < threadCount; i++) {
+      threads[i].start();
+    }
+    for(int i = 0; i < threadCount; i++) {
+      threads[i].join();
+    }
+    long elapsed = System.currentTimeMillis() - before;
+    if(elapsed == 0) {
+      elapsed = 1;
+    }
+    return ((double) threadCount) * RUN_LENGTH / elapsed;
+  }
+
+  static class LoggingThread extends Thread {
+    final Logger logger;
+
+    LoggingThread(Logger logger) {
+      this.logger = logger;
+    }
+
+    public
+    void run() {
+      for(int i = 0; i < RUN_LENGTH; i++) {
+	logger.info("msg");
+      }
+    }
+  }
+}
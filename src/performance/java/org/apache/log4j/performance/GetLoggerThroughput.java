@@ -0,0 +1,104 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.log4j.performance;
+
+import org.apache.log4j.Logger;
+
+/**
+
+   Measures the throughput of <code>Logger.getLogger</code> for
+   loggers that already exist, with an increasing number of threads
+   resolving loggers concurrently.
+
+   <p>Usage: <code>java org.apache.log4j.performance.GetLoggerThroughput
+   [maxThreads] [runLength]</code>
+
+   <p>A pool of 1000 logger names is created first. For each thread
+   count 1, 2, 4, ... up to <code>maxThreads</code> (64 by default),
+   every thread retrieves <code>runLength</code> loggers (1000000 by
+   default) from that pool. The program prints the aggregate number of
+   <code>getLogger</code> calls per millisecond.
+
+*/
+public class GetLoggerThroughput {
+
+  static int RUN_LENGTH = 1000000;
+  static final String[] NAMES = new String[1000];
+
+  static
+  public
+  void main(String[] args) throws InterruptedException {
+    int maxThreads = 64;
+    if(args.length > 0) {
+      maxThreads = Integer.parseInt(args[0]);
+    }
+    if(args.length > 1) {
+      RUN_LENGTH = Integer.parseInt(args[1]);
+    }
+
+    for(int i = 0; i < NAMES.length; i++) {
+      NAMES[i] = "com.example.tenant" + (i % 10) + ".request" + i;
+      Logger.getLogger(NAMES[i]);
+    }
+
+    // warm up
+    run(1);
+
+    for(int threads = 1; threads <= maxThreads; threads *= 2) {
+      double t = run(threads);
+      System.out.println(threads + " thread(s): " + (long) t
+                         + " getLogger calls per millisecond.");
+    }
+  }
+
+  static
+  double run(int threadCount) throws InterruptedException {
+    Thread[] threads = new Thread[threadCount];
+    for(int i = 0; i < threadCount; i++) {
+      threads[i] = new LookupThread(i);
+    }
+    long before = System.currentTimeMillis();
+    for(int i = 0; i < threadCount; i++) {
+      threads[i].start();
+    }
+    for(int i = 0; i < threadCount; i++) {
+      threads[i].join();
+    }
+    long elapsed = System.currentTimeMillis() - before;
+    if(elapsed == 0) {
+      elapsed = 1;
+    }
+    return ((double) threadCount) * RUN_LENGTH / elapsed;
+  }
+
+  static class LookupThread extends Thread {
+    final int offset;
+    Logger last;
+
+    LookupThread(int offset) {
+      this.offset = offset;
+    }
+
+    public
+    void run() {
+      for(int i = 0; i < RUN_LENGTH; i++) {
+	last = Logger.getLogger(NAMES[(i + offset) % NAMES.length]);
+      }
+    }
+  }
+}
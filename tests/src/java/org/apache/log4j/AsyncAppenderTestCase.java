@@ -19,6 +19,8 @@ package org.apache.log4j;
 
 import junit.framework.TestCase;
 
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
 import java.util.Vector;
 
 import org.apache.log4j.spi.LoggingEvent;
@@ -336,4 +338,129 @@ public class AsyncAppenderTestCase extends TestCase {
 
 
 
+
+    /**
+     * Appender that counts the events it receives.
+     */
+    private static final class CountingAppender extends AppenderSkeleton {
+      /**
+       * Number of events.
+       */
+      private int count;
+
+      /**
+       * {@inheritDoc}
+       */
+      public synchronized void append(final LoggingEvent event) {
+        count++;
+      }
+
+      /**
+       * Get number of events.
+       * @return number of events.
+       */
+      public synchronized int getCount() {
+        return count;
+      }
+
+      /**
+       * {@inheritDoc}
+       */
+      public void close() {
+      }
+
+      /**
+       * {@inheritDoc}
+       */
+      public boolean requiresLayout() {
+        return false;
+      }
+    }
+
+    /**
+     * Logs from several threads through an AsyncAppender using
+     * the specified wait strategy and checks that no event is lost.
+     * @param waitStrategy wait strategy.
+     * @throws InterruptedException if interrupted.
+     */
+    private void checkWaitStrategy(final String waitStrategy)
+        throws InterruptedException {
+        CountingAppender counter = new CountingAppender();
+        AsyncAppender async = new AsyncAppender();
+        async.addAppender(counter);
+        async.setBufferSize(6);
+        async.setWaitStrategy(waitStrategy);
+        async.activateOptions();
+        Logger logger = Logger.getLogger("org.apache.log4j.async." + waitStrategy);
+        logger.setAdditivity(false);
+        logger.addAppender(async);
+        Thread[] threads = new Thread[4];
+        for (int i = 0; i < threads.length; i++) {
+            threads[i] = new Thread(new Greeter(logger, 50));
+            threads[i].start();
+        }
+        for (int i = 0; i < threads.length; i++) {
+            threads[i].join();
+        }
+        async.close();
+        assertEquals(200, counter.getCount());
+    }
+
+    /**
+     * Tests the ring buffer with every wait strategy.
+     * @throws InterruptedException if interrupted.
+     */
+    public void testWaitStrategies() throws InterruptedException {
+        checkWaitStrategy("spin");
+        checkWaitStrategy("yield");
+        checkWaitStrategy("park");
+        checkWaitStrategy("block");
+    }
+
+    /**
+     * Tests that an unknown wait strategy falls back to blocking
+     * with a warning.
+     * @throws InterruptedException if interrupted.
+     */
+    public void testUnknownWaitStrategy() throws InterruptedException {
+        ByteArrayOutputStream err = new ByteArrayOutputStream();
+        PrintStream stderr = System.err;
+        System.setErr(new PrintStream(err, true));
+        try {
+            checkWaitStrategy("sleep");
+        } finally {
+            System.setErr(stderr);
+        }
+        String warning = err.toString();
+        assertTrue(warning, warning.indexOf(
+            "log4j:WARN Unknown wait strategy [sleep], using [block].") != -1);
+    }
+
+    /**
+     * Tests that events discarded from a full ring buffer
+     * are summarized.
+     */
+    public void testRingBufferDiscard() {
+        BlockableVectorAppender blockableAppender = new BlockableVectorAppender();
+        AsyncAppender async = new AsyncAppender();
+        async.addAppender(blockableAppender);
+        async.setBufferSize(4);
+        async.setBlocking(false);
+        async.setWaitStrategy("block");
+        async.activateOptions();
+        Logger rootLogger = Logger.getRootLogger();
+        rootLogger.addAppender(async);
+        Greeter greeter = new Greeter(rootLogger, 20);
+        synchronized(blockableAppender.getMonitor()) {
+            greeter.run();
+            rootLogger.error("That's all folks.");
+        }
+        async.close();
+        Vector events = blockableAppender.getVector();
+        assertTrue(events.size() < 21);
+        LoggingEvent discardEvent = (LoggingEvent) events.get(events.size() - 1);
+        assertTrue(discardEvent.getRenderedMessage().startsWith("Discarded "));
+        assertEquals(Level.ERROR, discardEvent.getLevel());
+    }
+
 }
@@ -86,6 +86,44 @@ public class CategoryTest extends TestCase {
     logger.setPriority(debug);
   }
 
+  /**
+   * Tests that an appender removed while an event is being dispatched
+   * does not disturb the delivery of that event to the other appenders.
+   */
+  public void testRemoveAppenderDuringCallAppenders() {
+    final Logger logger = Logger.getLogger("org.example.remove");
+    logger.setAdditivity(false);
+    VectorAppender first = new VectorAppender() {
+        public void append(final org.apache.log4j.spi.LoggingEvent event) {
+          super.append(event);
+          logger.removeAppender(this);
+        }
+    };
+    VectorAppender second = new VectorAppender();
+    logger.addAppender(first);
+    logger.addAppender(second);
+    logger.info("Hello");
+    logger.info("World");
+    assertEquals(1, first.getVector().size());
+    assertEquals(2, second.getVector().size());
+    assertFalse(logger.isAttached(first));
+    logger.removeAllAppenders();
+  }
+
+  /**
+   * Tests that the appenders of a category from which every appender
+   * has been removed are enumerated as an empty enumeration.
+   */
+  public void testGetAllAppendersAfterRemove() {
+    Logger logger = Logger.getLogger("org.example.removeAll");
+    VectorAppender appender = new VectorAppender();
+    logger.addAppender(appender);
+    logger.removeAppender(appender);
+    java.util.Enumeration appenders = logger.getAllAppenders();
+    assertNotNull(appenders);
+    assertFalse(appenders.hasMoreElements());
+  }
+
   /**
    * Derived category to check method signature of forcedLog.
    */
@@ -37,8 +37,11 @@ public class CoreTestSuite {
         s.addTestSuite(org.apache.log4j.PriorityTest.class);
         s.addTestSuite(org.apache.log4j.CategoryTest.class);
         s.addTestSuite(org.apache.log4j.FileAppenderTest.class);
+        s.addTestSuite(org.apache.log4j.MemoryMappedFileAppenderTest.class);
         s.addTestSuite(org.apache.log4j.LogManagerTest.class);
+        s.addTestSuite(org.apache.log4j.NDCTest.class);
         s.addTestSuite(org.apache.log4j.helpers.LogLogTest.class);
+        s.addTestSuite(org.apache.log4j.helpers.ConfigWatcherTest.class);
         s.addTestSuite(org.apache.log4j.LayoutTest.class);
         s.addTestSuite(org.apache.log4j.helpers.DateLayoutTest.class);
         s.addTestSuite(org.apache.log4j.TTCCLayoutTest.class);
@@ -49,8 +52,15 @@ public class CoreTestSuite {
         s.addTestSuite(org.apache.log4j.spi.ThrowableInformationTest.class);
         s.addTestSuite(org.apache.log4j.spi.LocationInfoTest.class);
         s.addTestSuite(org.apache.log4j.PropertyConfiguratorTest.class);
+        s.addTestSuite(org.apache.log4j.config.PropertySetterTest.class);
+        s.addTestSuite(org.apache.log4j.config.SnapshotConfiguratorTest.class);
+        s.addTestSuite(org.apache.log4j.varia.ReloadingPropertyConfiguratorTest.class);
+        s.addTestSuite(org.apache.log4j.jdbc.JDBCAppenderTest.class);
         s.addTestSuite(org.apache.log4j.net.SMTPAppenderTest.class);
         s.addTestSuite(org.apache.log4j.net.TelnetAppenderTest.class);
+        s.addTestSuite(org.apache.log4j.net.EventCodecTest.class);
+        s.addTestSuite(org.apache.log4j.net.SelectorSocketServerTest.class);
+        s.addTestSuite(org.apache.log4j.net.SocketHubAppenderTest.class);
         s.addTestSuite(org.apache.log4j.DefaultThrowableRendererTest.class);
         s.addTestSuite(org.apache.log4j.EnhancedThrowableRendererTest.class);
         s.addTestSuite(org.apache.log4j.TestLogXF.class);
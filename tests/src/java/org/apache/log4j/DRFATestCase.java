@@ -23,9 +23,11 @@ import java.io.File;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.FileInputStream;
+import java.io.InputStream;
 import java.text.SimpleDateFormat;
 import java.util.Calendar;
 import java.util.Date;
+import java.util.zip.GZIPInputStream;
 import org.apache.log4j.util.Compare;
 
 /**
@@ -497,6 +499,104 @@ public class DRFATestCase extends TestCase {
                 "witness/drfa_blockedRollover.log"));
     }
 
+    /**
+     * Creates a file holding "old" last modified two days ago, so that
+     * the first event logged by an appender opening it rolls it over,
+     * and returns the name of its backup.
+     * @param filename file name.
+     * @return name of the backup file.
+     * @throws IOException if io error.
+     */
+    private static String createOldFile(final String filename) throws IOException {
+        File file = new File(filename);
+        FileOutputStream os = new FileOutputStream(file);
+        os.write("old\n".getBytes("US-ASCII"));
+        os.close();
+        long lastModified = System.currentTimeMillis() - 2 * 24 * 60 * 60 * 1000L;
+        assertTrue(file.setLastModified(lastModified));
+        String backup = filename
+                + new SimpleDateFormat("'.'yyyy-MM-dd").format(new Date(lastModified));
+        new File(backup).delete();
+        new File(backup + ".gz").delete();
+        return backup;
+    }
+
+    private static DailyRollingFileAppender createAppender(final String filename) {
+        DailyRollingFileAppender appender = new DailyRollingFileAppender();
+        appender.setName("DRFA");
+        appender.setLayout(new PatternLayout("%m\n"));
+        appender.setFile(filename);
+        appender.setDatePattern("'.'yyyy-MM-dd");
+        return appender;
+    }
+
+    private static void assertNoPendingFile(final String name) {
+        String[] files = new File("output").list();
+        for (int i = 0; i < files.length; i++) {
+            assertFalse(files[i],
+                    files[i].startsWith(name) && files[i].endsWith(".pending"));
+        }
+    }
+
+    /**
+     * Tests rolling over with the file renamed in the background.
+     * @throws IOException if io error.
+     */
+    public void testAsyncRollover() throws IOException {
+        String filename = "output/drfa_async.log";
+        String backup = createOldFile(filename);
+        DailyRollingFileAppender appender = createAppender(filename);
+        appender.setAsyncRollover(true);
+        appender.activateOptions();
+        Logger root = Logger.getRootLogger();
+        root.addAppender(appender);
+        root.info("new");
+        root.removeAppender(appender);
+        appender.close();
+
+        assertEquals("old\n", readFile(new FileInputStream(backup)));
+        assertEquals("new\n", readFile(new FileInputStream(filename)));
+        assertNoPendingFile("drfa_async.log");
+    }
+
+    /**
+     * Tests rolling over with the backup file compressed.
+     * @throws IOException if io error.
+     */
+    public void testCompressedRollover() throws IOException {
+        String filename = "output/drfa_gzip.log";
+        String backup = createOldFile(filename);
+        DailyRollingFileAppender appender = createAppender(filename);
+        appender.setCompressBackups(true);
+        assertTrue(appender.getAsyncRollover());
+        appender.activateOptions();
+        Logger root = Logger.getRootLogger();
+        root.addAppender(appender);
+        root.info("new");
+        root.removeAppender(appender);
+        appender.close();
+
+        assertFalse(new File(backup).exists());
+        assertEquals("old\n", readFile(
+                new GZIPInputStream(new FileInputStream(backup + ".gz"))));
+        assertEquals("new\n", readFile(new FileInputStream(filename)));
+        assertNoPendingFile("drfa_gzip.log");
+    }
+
+    private static String readFile(final InputStream in) throws IOException {
+        try {
+            byte[] buf = new byte[100];
+            int total = 0;
+            int n;
+            while ((n = in.read(buf, total, buf.length - total)) > 0) {
+                total += n;
+            }
+            return new String(buf, 0, total, "US-ASCII");
+        } finally {
+            in.close();
+        }
+    }
+
     /** Check that the computed rollover period for a pattern containing a week as the finest unit is set to be
      * a week.  Due to a locale mismatch this was incorrect in non-English locales.  See bug 40888.
      *
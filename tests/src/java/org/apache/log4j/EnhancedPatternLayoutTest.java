@@ -64,6 +64,21 @@ public class EnhancedPatternLayoutTest extends LayoutTest {
     assertEquals(buf.toString(), result);
   }
 
+  /**
+   * Tests that format(LoggingEvent, StringBuffer) pads fields relative
+   * to the existing content of the buffer.
+   */
+  public void testFormatIntoBuffer() {
+    Logger logger = Logger.getLogger("org.apache.log4j.LayoutTest");
+    LoggingEvent event =
+      new LoggingEvent(
+        "org.apache.log4j.Logger", logger, Level.INFO, "Hello", null);
+    EnhancedPatternLayout layout = new EnhancedPatternLayout("%-8m|%5p|");
+    StringBuffer buf = new StringBuffer("prefix ");
+    layout.format(event, buf);
+    assertEquals("prefix Hello   | INFO|", buf.toString());
+  }
+
   /**
    * Tests getPatternFormat().
    */
@@ -19,10 +19,16 @@ package org.apache.log4j;
 
 import junit.framework.TestCase;
 
+import java.io.ByteArrayOutputStream;
 import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.Writer;
 
 import java.lang.reflect.Method;
 
+import org.apache.log4j.helpers.QuietWriter;
+
 
 /**
  *
@@ -83,4 +89,143 @@ public class FileAppenderTest extends TestCase {
     Priority debug = Level.DEBUG;
     assertTrue(appender.isAsSevereAsThreshold(debug));
   }
+
+  /**
+   * Tests that events are encoded and written immediately in channel mode.
+   * @throws IOException if IO error.
+   */
+  public void testChannelIO() throws IOException {
+    File file = new File("output/channelio.log");
+    file.delete();
+    FileAppender appender = new FileAppender();
+    appender.setFile(file.getPath());
+    appender.setLayout(new PatternLayout("%m%n"));
+    appender.setEncoding("UTF-8");
+    appender.setChannelIO(true);
+    appender.setAppend(false);
+    appender.activateOptions();
+    Logger logger = Logger.getLogger("org.apache.log4j.FileAppenderTest");
+    logger.setAdditivity(false);
+    logger.addAppender(appender);
+    logger.info("caf\u00e9 \ud834\udd1e");
+    String expected = "caf\u00e9 \ud834\udd1e" + Layout.LINE_SEP;
+    assertEquals(expected, readFile(file, "UTF-8"));
+    logger.removeAppender(appender);
+    appender.close();
+    assertEquals(expected, readFile(file, "UTF-8"));
+  }
+
+  /**
+   * Tests that buffered events are written out when the buffer is full
+   * and when the appender is closed in channel mode.
+   * @throws IOException if IO error.
+   */
+  public void testChannelIOBuffered() throws IOException {
+    File file = new File("output/channelio.log");
+    file.delete();
+    FileAppender appender = new FileAppender();
+    appender.setFile(file.getPath());
+    appender.setLayout(new PatternLayout("%m"));
+    appender.setChannelIO(true);
+    appender.setBufferedIO(true);
+    appender.setBufferSize(16);
+    appender.setAppend(false);
+    appender.activateOptions();
+    Logger logger = Logger.getLogger("org.apache.log4j.FileAppenderTest");
+    logger.setAdditivity(false);
+    logger.addAppender(appender);
+    logger.info("0123456789");
+    assertEquals(0, file.length());
+    logger.info("0123456789");
+    assertEquals(16, file.length());
+    logger.removeAppender(appender);
+    appender.close();
+    assertEquals("01234567890123456789", readFile(file, "US-ASCII"));
+  }
+
+  /**
+   * Tests that output buffered in channel mode is written out after
+   * the flush interval even though no further event is logged.
+   * @throws Exception if IO error or interrupted.
+   */
+  public void testFlushIntervalWithoutEvents() throws Exception {
+    File file = new File("output/flushinterval.log");
+    FileAppender appender = new FileAppender();
+    appender.setFile(file.getPath());
+    appender.setLayout(new PatternLayout("%m"));
+    appender.setChannelIO(true);
+    appender.setImmediateFlush(false);
+    appender.setFlushInterval(100);
+    appender.setAppend(false);
+    appender.activateOptions();
+    // an appender without a name is identified by its file
+    assertTrue(isAlive("FileAppender-flusher [" + file.getPath() + "]"));
+    Logger logger = Logger.getLogger("org.apache.log4j.FileAppenderTest");
+    logger.setAdditivity(false);
+    logger.addAppender(appender);
+    logger.info("0123456789");
+    assertEquals(0, file.length());
+    for (int i = 0; i < 50 && file.length() == 0; i++) {
+      Thread.sleep(100);
+    }
+    assertEquals(10, file.length());
+    logger.removeAppender(appender);
+    appender.close();
+  }
+
+  /**
+   * Tests that a writer overriding only write(String) is given
+   * every event.
+   * @throws IOException if IO error.
+   */
+  public void testWriterOverridingWriteString() throws IOException {
+    File file = new File("output/upper.log");
+    FileAppender appender = new FileAppender() {
+      protected void setQWForFiles(final Writer writer) {
+        qw = new QuietWriter(writer, errorHandler) {
+          public void write(final String string) {
+            super.write(string.toUpperCase());
+          }
+        };
+      }
+    };
+    appender.setFile(file.getPath());
+    appender.setLayout(new PatternLayout("%m"));
+    appender.setAppend(false);
+    appender.activateOptions();
+    Logger logger = Logger.getLogger("org.apache.log4j.FileAppenderTest");
+    logger.setAdditivity(false);
+    logger.addAppender(appender);
+    logger.info("hello");
+    logger.removeAppender(appender);
+    appender.close();
+    assertEquals("HELLO", readFile(file, "US-ASCII"));
+  }
+
+  private static boolean isAlive(final String name) {
+    Thread[] threads = new Thread[Thread.activeCount() + 10];
+    int count = Thread.enumerate(threads);
+    for (int i = 0; i < count; i++) {
+      if (name.equals(threads[i].getName())) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  private static String readFile(final File file, final String encoding)
+    throws IOException {
+    FileInputStream in = new FileInputStream(file);
+    try {
+      ByteArrayOutputStream out = new ByteArrayOutputStream();
+      byte[] buf = new byte[1024];
+      int n;
+      while ((n = in.read(buf)) > 0) {
+        out.write(buf, 0, n);
+      }
+      return new String(out.toByteArray(), encoding);
+    } finally {
+      in.close();
+    }
+  }
 }
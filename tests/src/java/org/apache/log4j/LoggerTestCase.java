@@ -398,6 +398,78 @@ public class LoggerTestCase extends TestCase {
         assertFalse(root.isTraceEnabled());
     }
 
+    /**
+     * Tests that the cached enabled level follows changes to the
+     * levels of ancestors and to the threshold of the hierarchy.
+     */
+    public void testEnabledLevelInvalidation() {
+        Logger root = Logger.getRootLogger();
+        root.setLevel(Level.INFO);
+        Logger deep = Logger.getLogger("com.example.a.b.c.d");
+        assertFalse(deep.isDebugEnabled());
+        assertTrue(deep.isInfoEnabled());
+
+        Logger ancestor = Logger.getLogger("com.example.a");
+        ancestor.setLevel(Level.DEBUG);
+        assertTrue(deep.isDebugEnabled());
+
+        LoggerRepository repository = LogManager.getLoggerRepository();
+        repository.setThreshold(Level.WARN);
+        assertFalse(deep.isDebugEnabled());
+        assertFalse(deep.isInfoEnabled());
+        assertTrue(deep.isEnabledFor(Level.WARN));
+
+        repository.setThreshold(Level.ALL);
+        assertTrue(deep.isDebugEnabled());
+
+        ancestor.setLevel(null);
+        assertFalse(deep.isDebugEnabled());
+
+        root.setLevel(Level.TRACE);
+        assertTrue(deep.isTraceEnabled());
+    }
+
+    /**
+     * Tests that loggers created concurrently, descendants before
+     * ancestors, are unique and linked to their closest ancestor.
+     * @throws InterruptedException if interrupted.
+     */
+    public void testConcurrentGetLogger() throws InterruptedException {
+        final Hierarchy h = new Hierarchy(new RootLogger(Level.INFO));
+        final String[] names = new String[200];
+        for (int i = 0; i < names.length; i++) {
+            names[i] = "a" + (i % 3) + ".b" + (i % 7) + ".c" + i;
+        }
+        final Logger[][] results = new Logger[8][names.length];
+        Thread[] threads = new Thread[results.length];
+        for (int t = 0; t < threads.length; t++) {
+            final int id = t;
+            threads[t] = new Thread() {
+                public void run() {
+                    for (int i = 0; i < names.length; i++) {
+                        int j = (id % 2 == 0) ? i : names.length - 1 - i;
+                        results[id][j] = h.getLogger(names[j]);
+                        h.getLogger(names[j].substring(0, names[j].lastIndexOf('.')));
+                    }
+                }
+            };
+            threads[t].start();
+        }
+        for (int t = 0; t < threads.length; t++) {
+            threads[t].join();
+        }
+        for (int i = 0; i < names.length; i++) {
+            Logger l = results[0][i];
+            for (int t = 1; t < results.length; t++) {
+                assertSame(l, results[t][i]);
+            }
+            assertSame(l, h.exists(names[i]));
+            String parentName = names[i].substring(0, names[i].lastIndexOf('.'));
+            assertSame(h.exists(parentName), l.getParent());
+            assertSame(h.getRootLogger(), l.getParent().getParent());
+        }
+    }
+
   private static final class CountingHierarchyEventListener implements HierarchyEventListener {
       private int addEventCount;
       private int removeEventCount;
@@ -19,6 +19,7 @@ package org.apache.log4j;
 import java.lang.ref.Reference;
 import java.lang.reflect.Field;
 import junit.framework.TestCase;
+import org.apache.log4j.spi.LoggingEvent;
 
 /**
  * Test for MDC
@@ -41,6 +42,29 @@ public class MDCTestCase extends TestCase {
     assertEquals(1, MDC.getContext().size());
   }
   
+  public void testEventSnapshot() throws Exception {
+    MDC.put("key", "some value");
+    Logger logger = Logger.getLogger(MDCTestCase.class);
+    LoggingEvent event = new LoggingEvent(Logger.class.getName(), logger,
+            Level.INFO, "message", null);
+    event.getMDCCopy();
+    MDC.put("key", "other value");
+    MDC.put("key2", "value2");
+    assertEquals("some value", event.getMDC("key"));
+    assertNull(event.getProperties().get("key2"));
+
+    event.setProperty("key", "event value");
+    assertEquals("event value", event.getMDC("key"));
+    assertEquals("other value", MDC.get("key"));
+
+    MDC.clear();
+    LoggingEvent event2 = new LoggingEvent(Logger.class.getName(), logger,
+            Level.INFO, "message", null);
+    event2.getMDCCopy();
+    assertNull(event2.getMDC("key"));
+    assertEquals("event value", event.getMDC("key"));
+  }
+
   public void testRemoveLastKey() throws Exception {
     MDC.put("key", "some value");
 
@@ -0,0 +1,166 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.log4j;
+
+import junit.framework.TestCase;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+
+
+/**
+ * MemoryMappedFileAppender tests.
+ */
+public class MemoryMappedFileAppenderTest extends TestCase {
+  private Logger logger;
+
+  /**
+   * Constructs new instance of test.
+   * @param name test name.
+   */
+  public MemoryMappedFileAppenderTest(final String name) {
+    super(name);
+  }
+
+  protected void setUp() {
+    logger = Logger.getLogger(MemoryMappedFileAppenderTest.class);
+    logger.setAdditivity(false);
+  }
+
+  protected void tearDown() {
+    logger.removeAllAppenders();
+  }
+
+  private MemoryMappedFileAppender createAppender(final String fileName,
+                                                  final boolean append) {
+    MemoryMappedFileAppender appender = new MemoryMappedFileAppender();
+    appender.setFile(fileName);
+    appender.setAppend(append);
+    appender.setLayout(new PatternLayout("%m%n"));
+    appender.setRegionSize("64");
+    appender.activateOptions();
+    logger.addAppender(appender);
+    return appender;
+  }
+
+  /**
+   * Tests that events spanning several regions are written, visible
+   * before close, and that the file is truncated on close.
+   * @throws IOException if IO error.
+   */
+  public void testRegions() throws IOException {
+    File file = new File("output/mmap/temp.log");
+    file.delete();
+    MemoryMappedFileAppender appender =
+      createAppender(file.getPath(), false);
+    StringBuffer expected = new StringBuffer();
+    for (int i = 0; i < 20; i++) {
+      String msg = "Message number " + i;
+      logger.info(msg);
+      expected.append(msg).append(Layout.LINE_SEP);
+    }
+    assertTrue(readFile(file).startsWith(expected.toString()));
+    assertTrue(file.length() > expected.length());
+    logger.removeAppender(appender);
+    appender.close();
+    assertEquals(expected.toString(), readFile(file));
+  }
+
+  /**
+   * Tests that the Append option continues after the existing content.
+   * @throws IOException if IO error.
+   */
+  public void testAppend() throws IOException {
+    File file = new File("output/mmap/temp.log");
+    file.delete();
+    MemoryMappedFileAppender appender =
+      createAppender(file.getPath(), false);
+    logger.info("first");
+    logger.removeAppender(appender);
+    appender.close();
+    appender = createAppender(file.getPath(), true);
+    logger.info("second");
+    logger.removeAppender(appender);
+    appender.close();
+    assertEquals(
+      "first" + Layout.LINE_SEP + "second" + Layout.LINE_SEP, readFile(file));
+  }
+
+  /**
+   * Tests that the Append option continues after the existing content
+   * of a file which was not closed, and still holds zero padding.
+   * @throws IOException if IO error.
+   */
+  public void testAppendAfterCrash() throws IOException {
+    File file = new File("output/mmap/temp.log");
+    file.delete();
+    String first = "first" + Layout.LINE_SEP;
+    FileOutputStream out = new FileOutputStream(file);
+    out.write(first.getBytes("ISO-8859-1"));
+    out.write(new byte[64 - first.length()]);
+    out.close();
+    MemoryMappedFileAppender appender = createAppender(file.getPath(), true);
+    logger.info("second");
+    logger.removeAppender(appender);
+    appender.close();
+    assertEquals(first + "second" + Layout.LINE_SEP, readFile(file));
+  }
+
+  /**
+   * Tests rolling over on size.
+   * @throws IOException if IO error.
+   */
+  public void testRollOver() throws IOException {
+    File file = new File("output/mmap/roll.log");
+    File backup = new File("output/mmap/roll.log.1");
+    file.delete();
+    backup.delete();
+    MemoryMappedFileAppender appender = new MemoryMappedFileAppender();
+    appender.setFile(file.getPath());
+    appender.setAppend(false);
+    appender.setLayout(new PatternLayout("%m"));
+    appender.setMaximumFileSize(10);
+    appender.setMaxBackupIndex(1);
+    appender.activateOptions();
+    logger.addAppender(appender);
+    logger.info("0123456789");
+    logger.info("abc");
+    logger.removeAppender(appender);
+    appender.close();
+    assertEquals("0123456789", readFile(backup));
+    assertEquals("abc", readFile(file));
+  }
+
+  private static String readFile(final File file) throws IOException {
+    FileInputStream in = new FileInputStream(file);
+    try {
+      ByteArrayOutputStream out = new ByteArrayOutputStream();
+      byte[] buf = new byte[1024];
+      int n;
+      while ((n = in.read(buf)) > 0) {
+        out.write(buf, 0, n);
+      }
+      return new String(out.toByteArray(), "ISO-8859-1");
+    } finally {
+      in.close();
+    }
+  }
+}
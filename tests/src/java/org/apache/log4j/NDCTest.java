@@ -0,0 +1,86 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.log4j;
+
+import java.util.Stack;
+
+import junit.framework.TestCase;
+
+/**
+ * Tests for NDC.
+ */
+public class NDCTest extends TestCase {
+
+    public NDCTest(final String name) {
+        super(name);
+    }
+
+    public void tearDown() {
+        NDC.remove();
+    }
+
+    /**
+     * Tests push, peek, get and pop.
+     */
+    public void testPushPop() {
+        assertNull(NDC.get());
+        assertEquals("", NDC.pop());
+        NDC.push("a");
+        NDC.push("b");
+        assertEquals(2, NDC.getDepth());
+        assertEquals("b", NDC.peek());
+        assertEquals("a b", NDC.get());
+        assertEquals("b", NDC.pop());
+        assertEquals("a", NDC.get());
+        NDC.setMaxDepth(0);
+        assertNull(NDC.get());
+    }
+
+    /**
+     * Contexts of other threads are neither visible nor affected.
+     */
+    public void testThreadIsolation() throws InterruptedException {
+        NDC.push("main");
+        final Stack parent = NDC.cloneStack();
+        final String[] seen = new String[2];
+        Thread thread = new Thread() {
+            public void run() {
+                seen[0] = NDC.get();
+                NDC.inherit(parent);
+                NDC.push("child");
+                seen[1] = NDC.get();
+                NDC.remove();
+            }
+        };
+        thread.start();
+        thread.join();
+        assertNull(seen[0]);
+        assertEquals("main child", seen[1]);
+        assertEquals("main", NDC.get());
+    }
+
+    /**
+     * Tests remove.
+     */
+    public void testRemove() {
+        NDC.push("a");
+        NDC.remove();
+        assertEquals(0, NDC.getDepth());
+        assertNull(NDC.cloneStack());
+    }
+}
@@ -113,6 +113,39 @@ public class PatternLayoutTest extends LayoutTest {
     assertEquals("[", result.substring(0, 1));
   }
 
+  /**
+   * Tests format(LoggingEvent, StringBuffer).
+   */
+  public void testFormatIntoBuffer() {
+    Logger logger = Logger.getLogger("org.apache.log4j.LayoutTest");
+    LoggingEvent event =
+      new LoggingEvent(
+        "org.apache.log4j.Logger", logger, Level.INFO, "Hello, World", null);
+    PatternLayout layout = (PatternLayout) createLayout();
+    StringBuffer buf = new StringBuffer("prefix");
+    layout.format(event, buf);
+    assertEquals("prefix" + layout.format(event), buf.toString());
+  }
+
+  /**
+   * Tests that format(LoggingEvent, StringBuffer) honours a subclass
+   * overriding format(LoggingEvent).
+   */
+  public void testFormatIntoBufferOverridden() {
+    Logger logger = Logger.getLogger("org.apache.log4j.LayoutTest");
+    LoggingEvent event =
+      new LoggingEvent(
+        "org.apache.log4j.Logger", logger, Level.INFO, "Hello, World", null);
+    PatternLayout layout = new PatternLayout("%m") {
+        public String format(final LoggingEvent e) {
+            return "[" + super.format(e) + "]";
+        }
+    };
+    StringBuffer buf = new StringBuffer();
+    layout.format(event, buf);
+    assertEquals("[Hello, World]", buf.toString());
+  }
+
   /**
    * Class to ensure that protected members are still available.
    */
@@ -92,6 +92,105 @@ public class RFATestCase extends TestCase {
       assertFalse(new File("output/RFA-test2.log.4").exists());
     }
 
+    /**
+     * Test rolling with backup files renamed in the background.
+     */
+    public void testAsyncRollover() throws Exception {
+      Logger logger = Logger.getLogger(RFATestCase.class);
+      Logger root = Logger.getRootLogger();
+      PatternLayout layout = new PatternLayout("%m\n");
+      org.apache.log4j.RollingFileAppender rfa =
+        new org.apache.log4j.RollingFileAppender();
+      rfa.setName("ROLLING");
+      rfa.setLayout(layout);
+      rfa.setAppend(false);
+      rfa.setMaxBackupIndex(3);
+      rfa.setMaximumFileSize(100);
+      rfa.setAsyncRollover(true);
+      rfa.setFile("output/RFA-async.log");
+      for (int i = 1; i <= 4; i++) {
+        new File("output/RFA-async.log." + i).delete();
+      }
+      rfa.activateOptions();
+      root.addAppender(rfa);
+
+      // Write exactly 10 bytes with each log
+      for (int i = 0; i < 55; i++) {
+        if (i < 10) {
+          logger.debug("Hello---" + i);
+        } else if (i < 100) {
+          logger.debug("Hello--" + i);
+        }
+      }
+      root.removeAppender(rfa);
+      rfa.close();
+
+      assertTrue(new File("output/RFA-async.log").exists());
+      assertEquals(100, new File("output/RFA-async.log.1").length());
+      assertTrue(new File("output/RFA-async.log.2").exists());
+      assertTrue(new File("output/RFA-async.log.3").exists());
+      assertFalse(new File("output/RFA-async.log.4").exists());
+      String[] pending = new File("output").list();
+      for (int i = 0; i < pending.length; i++) {
+        assertFalse(pending[i],
+          pending[i].startsWith("RFA-async.log") && pending[i].endsWith(".pending"));
+      }
+    }
+
+    /**
+     * Test compression of backup files.
+     */
+    public void testCompressedRollover() throws Exception {
+      Logger logger = Logger.getLogger(RFATestCase.class);
+      Logger root = Logger.getRootLogger();
+      PatternLayout layout = new PatternLayout("%m\n");
+      org.apache.log4j.RollingFileAppender rfa =
+        new org.apache.log4j.RollingFileAppender();
+      rfa.setName("ROLLING");
+      rfa.setLayout(layout);
+      rfa.setAppend(false);
+      rfa.setMaxBackupIndex(2);
+      rfa.setMaximumFileSize(100);
+      rfa.setCompressBackups(true);
+      rfa.setCompressionLevel(9);
+      rfa.setFile("output/RFA-gzip.log");
+      for (int i = 1; i <= 3; i++) {
+        new File("output/RFA-gzip.log." + i).delete();
+        new File("output/RFA-gzip.log." + i + ".gz").delete();
+      }
+      rfa.activateOptions();
+      root.addAppender(rfa);
+
+      // Write exactly 10 bytes with each log
+      for (int i = 0; i < 35; i++) {
+        if (i < 10) {
+          logger.debug("Hello---" + i);
+        } else if (i < 100) {
+          logger.debug("Hello--" + i);
+        }
+      }
+      root.removeAppender(rfa);
+      rfa.close();
+
+      assertFalse(new File("output/RFA-gzip.log.1").exists());
+      assertTrue(new File("output/RFA-gzip.log.2.gz").exists());
+      assertFalse(new File("output/RFA-gzip.log.3.gz").exists());
+      java.io.InputStream in = new java.util.zip.GZIPInputStream(
+        new java.io.FileInputStream("output/RFA-gzip.log.1.gz"));
+      try {
+        byte[] buf = new byte[200];
+        int total = 0;
+        int n;
+        while ((n = in.read(buf, total, buf.length - total)) > 0) {
+          total += n;
+        }
+        assertEquals(100, total);
+        assertEquals("Hello--20", new String(buf, 0, 9, "US-ASCII"));
+      } finally {
+        in.close();
+      }
+    }
+
     /**
      * Tests 2 parameter constructor.
      * @throws IOException if IOException during test.
@@ -0,0 +1,100 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.log4j.config;
+
+import java.util.Properties;
+
+import junit.framework.TestCase;
+import org.apache.log4j.Level;
+import org.apache.log4j.spi.OptionHandler;
+
+/**
+ * Tests for PropertySetter.
+ */
+public class PropertySetterTest extends TestCase {
+
+    public PropertySetterTest(final String name) {
+        super(name);
+    }
+
+    /**
+     * Tests that properties of the supported types are set and that
+     * the object is activated.
+     */
+    public void testSetProperties() {
+        Properties props = new Properties();
+        props.setProperty("bean.Name", "Joe");
+        props.setProperty("bean.age", " 32 ");
+        props.setProperty("bean.male", "true");
+        props.setProperty("bean.threshold", "WARN");
+        props.setProperty("bean.missing", "ignored");
+        props.setProperty("bean.nested.name", "ignored");
+        Bean bean = new Bean();
+        PropertySetter.setProperties(bean, props, "bean.");
+        assertEquals("Joe", bean.name);
+        assertEquals(32, bean.age);
+        assertTrue(bean.male);
+        assertEquals(Level.WARN, bean.threshold);
+        assertTrue(bean.activated);
+    }
+
+    /**
+     * Tests that objects of the same class share their introspected
+     * properties.
+     */
+    public void testIntrospectedOnce() {
+        PropertySetter setter1 = new PropertySetter(new Bean());
+        PropertySetter setter2 = new PropertySetter(new Bean());
+        setter1.setProperty("name", "Joe");
+        setter2.setProperty("name", "Jim");
+        assertSame(setter1.props, setter2.props);
+        assertSame(setter1.getPropertyDescriptor("name"), setter2.getPropertyDescriptor("name"));
+        assertNull(setter1.getPropertyDescriptor("missing"));
+        assertEquals("Jim", ((Bean) setter2.obj).name);
+    }
+
+    /**
+     * Object with properties of several types.
+     */
+    public static final class Bean implements OptionHandler {
+        private String name;
+        private int age;
+        private boolean male;
+        private Level threshold;
+        private boolean activated;
+
+        public void setName(final String name) {
+            this.name = name;
+        }
+
+        public void setAge(final int age) {
+            this.age = age;
+        }
+
+        public void setMale(final boolean male) {
+            this.male = male;
+        }
+
+        public void setThreshold(final Level threshold) {
+            this.threshold = threshold;
+        }
+
+        public void activateOptions() {
+            activated = true;
+        }
+    }
+}
@@ -0,0 +1,127 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.log4j.config;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+
+import junit.framework.TestCase;
+import org.apache.log4j.ConsoleAppender;
+import org.apache.log4j.Hierarchy;
+import org.apache.log4j.Level;
+import org.apache.log4j.PatternLayout;
+import org.apache.log4j.helpers.OptionConverter;
+import org.apache.log4j.spi.RootLogger;
+
+/**
+ * Tests for SnapshotConfigurator.
+ */
+public class SnapshotConfiguratorTest extends TestCase {
+
+    private static final String XML_HEADER =
+        "<?xml version='1.0' encoding='UTF-8'?>\n"
+        + "<!DOCTYPE log4j:configuration SYSTEM 'log4j.dtd'>\n"
+        + "<log4j:configuration xmlns:log4j='http://jakarta.apache.org/log4j/'>\n";
+
+    private Hierarchy hierarchy;
+
+    public SnapshotConfiguratorTest(final String name) {
+        super(name);
+    }
+
+    protected void setUp() {
+        hierarchy = new Hierarchy(new RootLogger(Level.DEBUG));
+    }
+
+    protected void tearDown() {
+        System.getProperties().remove("snapshot.test.pattern");
+    }
+
+    private static File write(final String name, final String content) throws IOException {
+        File file = new File("output/" + name);
+        Writer writer = new OutputStreamWriter(new FileOutputStream(file), "UTF-8");
+        writer.write(content);
+        writer.close();
+        return file;
+    }
+
+    /**
+     * Tests that an XML configuration is restored from its snapshot,
+     * with variables substituted when the snapshot is loaded.
+     */
+    public void testXmlSnapshot() throws Exception {
+        File source = write("snapshot1.xml", XML_HEADER
+            + "  <appender name='A1' class='org.apache.log4j.ConsoleAppender'>\n"
+            + "    <layout class='org.apache.log4j.PatternLayout'>\n"
+            + "      <param name='ConversionPattern' value='${snapshot.test.pattern}'/>\n"
+            + "    </layout>\n"
+            + "  </appender>\n"
+            + "  <logger name='org.example'><level value='warn'/></logger>\n"
+            + "  <root><appender-ref ref='A1'/></root>\n"
+            + "</log4j:configuration>\n");
+        ByteArrayOutputStream snapshot = new ByteArrayOutputStream();
+        assertTrue(SnapshotConfigurator.compile(source.toURL(), snapshot));
+
+        System.setProperty("snapshot.test.pattern", "%m%n");
+        new SnapshotConfigurator().doConfigure(
+            new ByteArrayInputStream(snapshot.toByteArray()), hierarchy);
+        assertEquals(Level.WARN, hierarchy.getLogger("org.example").getLevel());
+        ConsoleAppender appender = (ConsoleAppender) hierarchy.getRootLogger().getAppender("A1");
+        assertEquals("%m%n", ((PatternLayout) appender.getLayout()).getConversionPattern());
+    }
+
+    /**
+     * Tests that the source of a snapshot is parsed instead of the
+     * snapshot once it has been modified.
+     */
+    public void testSourceNewer() throws Exception {
+        File source = write("snapshot2.properties", "log4j.rootLogger=INFO\n");
+        File snapshot = new File("output/snapshot2.snapshot");
+        OutputStream out = new FileOutputStream(snapshot);
+        assertTrue(SnapshotConfigurator.compile(source.toURL(), out));
+        out.close();
+
+        OptionConverter.selectAndConfigure(snapshot.toURL(), null, hierarchy);
+        assertEquals(Level.INFO, hierarchy.getRootLogger().getLevel());
+
+        long lastModified = source.lastModified();
+        write("snapshot2.properties", "log4j.rootLogger=ERROR\n");
+        source.setLastModified(lastModified + 10000);
+        OptionConverter.selectAndConfigure(snapshot.toURL(), null, hierarchy);
+        assertEquals(Level.ERROR, hierarchy.getRootLogger().getLevel());
+    }
+
+    /**
+     * Tests that no snapshot is written for a configuration naming an
+     * unknown class.
+     */
+    public void testUnknownClass() throws Exception {
+        File source = write("snapshot3.xml", XML_HEADER
+            + "  <appender name='A1' class='org.example.NoSuchAppender'/>\n"
+            + "  <root/>\n"
+            + "</log4j:configuration>\n");
+        ByteArrayOutputStream snapshot = new ByteArrayOutputStream();
+        assertFalse(SnapshotConfigurator.compile(source.toURL(), snapshot));
+        assertEquals(0, snapshot.size());
+    }
+}
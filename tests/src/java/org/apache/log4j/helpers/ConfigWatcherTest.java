@@ -0,0 +1,109 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.log4j.helpers;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+
+import junit.framework.TestCase;
+
+/**
+ * Tests for ConfigWatcher.
+ */
+public class ConfigWatcherTest extends TestCase {
+
+    public ConfigWatcherTest(final String name) {
+        super(name);
+    }
+
+    public void tearDown() {
+        ConfigWatcher.shutdown();
+    }
+
+    private static final class CountingWatchdog extends FileWatchdog {
+        int changes;
+
+        CountingWatchdog(String filename) {
+            super(filename);
+        }
+
+        protected synchronized void doOnChange() {
+            changes++;
+            notifyAll();
+        }
+
+        synchronized boolean awaitChanges(int expected, long timeout)
+                throws InterruptedException {
+            long end = System.currentTimeMillis() + timeout;
+            while (changes < expected && System.currentTimeMillis() < end) {
+                wait(end - System.currentTimeMillis());
+            }
+            return changes >= expected;
+        }
+    }
+
+    private static void write(File file, String content, long lastModified)
+            throws IOException {
+        FileWriter writer = new FileWriter(file);
+        writer.write(content);
+        writer.close();
+        file.setLastModified(lastModified);
+    }
+
+    /**
+     * A modification must be noticed well before the polling delay.
+     */
+    public void testModification() throws Exception {
+        File file = new File("output/ConfigWatcherTest.properties");
+        new File("output").mkdirs();
+        long time = System.currentTimeMillis() - 60000;
+        write(file, "a=1", time);
+        CountingWatchdog watchdog = new CountingWatchdog(file.getPath());
+        watchdog.setDelay(60000);
+        assertEquals(1, watchdog.changes);
+        ConfigWatcher.watch(watchdog);
+
+        write(file, "a=2", time + 2000);
+        assertTrue(watchdog.awaitChanges(2, 5000));
+
+        // Several quick writes cause a single reconfiguration.
+        write(file, "a=3", time + 4000);
+        write(file, "a=4", time + 6000);
+        assertTrue(watchdog.awaitChanges(3, 5000));
+        Thread.sleep(1500);
+        assertEquals(3, watchdog.changes);
+    }
+
+    /**
+     * No change may be reported after shutdown.
+     */
+    public void testShutdown() throws Exception {
+        File file = new File("output/ConfigWatcherTest2.properties");
+        new File("output").mkdirs();
+        long time = System.currentTimeMillis() - 60000;
+        write(file, "a=1", time);
+        CountingWatchdog watchdog = new CountingWatchdog(file.getPath());
+        watchdog.setDelay(100);
+        ConfigWatcher.watch(watchdog);
+        ConfigWatcher.shutdown();
+
+        write(file, "a=2", time + 2000);
+        assertFalse(watchdog.awaitChanges(2, 1000));
+    }
+}
@@ -0,0 +1,168 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.log4j.jdbc;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.util.ArrayList;
+import java.util.List;
+
+import junit.framework.TestCase;
+import org.apache.log4j.Level;
+import org.apache.log4j.Logger;
+import org.apache.log4j.spi.LoggingEvent;
+
+/**
+ * Tests for JDBCAppender, against a connection recording the calls
+ * made to it.
+ */
+public class JDBCAppenderTest extends TestCase {
+
+    private final List prepared = new ArrayList();
+    private final List rows = new ArrayList();
+    private final List batches = new ArrayList();
+    private final List threads = new ArrayList();
+
+    public JDBCAppenderTest(final String name) {
+        super(name);
+    }
+
+    /**
+     * Connection whose prepared statements record their rows and batches.
+     */
+    private Connection createConnection() {
+        final InvocationHandler statement = new InvocationHandler() {
+            private List row = new ArrayList();
+            private List batch = new ArrayList();
+
+            public Object invoke(final Object proxy, final Method method, final Object[] args) {
+                String name = method.getName();
+                synchronized (JDBCAppenderTest.this) {
+                    if ("setString".equals(name)) {
+                        row.add(args[1]);
+                    } else if ("addBatch".equals(name)) {
+                        rows.add(row);
+                        batch.add(row);
+                        row = new ArrayList();
+                    } else if ("executeBatch".equals(name)) {
+                        batches.add(new Integer(batch.size()));
+                        threads.add(Thread.currentThread());
+                        batch = new ArrayList();
+                        JDBCAppenderTest.this.notifyAll();
+                        return new int[0];
+                    }
+                }
+                return null;
+            }
+        };
+        return (Connection) Proxy.newProxyInstance(getClass().getClassLoader(),
+                new Class[] { Connection.class }, new InvocationHandler() {
+                    public Object invoke(final Object proxy, final Method method, final Object[] args) {
+                        if ("prepareStatement".equals(method.getName())) {
+                            prepared.add(args[0]);
+                            return Proxy.newProxyInstance(getClass().getClassLoader(),
+                                    new Class[] { PreparedStatement.class }, statement);
+                        }
+                        if ("isClosed".equals(method.getName())) {
+                            return Boolean.FALSE;
+                        }
+                        return null;
+                    }
+                });
+    }
+
+    private JDBCAppender createAppender() {
+        JDBCAppender appender = new JDBCAppender() {
+            protected Connection getConnection() {
+                if (connection == null) {
+                    connection = createConnection();
+                }
+                return connection;
+            }
+        };
+        appender.setSql("insert into LOG (LEVEL, MSG) values ('%p', 'it''s %m')");
+        appender.setPrepared(true);
+        assertTrue(appender.getPrepared());
+        return appender;
+    }
+
+    private static void append(final JDBCAppender appender, final String message) {
+        appender.doAppend(new LoggingEvent(null, Logger.getLogger(JDBCAppenderTest.class),
+                Level.INFO, message, null));
+    }
+
+    public void testToPreparedSql() {
+        List literals = new ArrayList();
+        assertEquals("values (?, ?, 1)",
+                JDBCAppender.toPreparedSql("values ('%p', 'it''s ''%m''', 1)", literals));
+        assertEquals(2, literals.size());
+        assertEquals("%p", literals.get(0));
+        assertEquals("it's '%m'", literals.get(1));
+        assertNull(JDBCAppender.toPreparedSql("values ('%m)", new ArrayList()));
+    }
+
+    /**
+     * Tests that events are sent in batches of a single prepared statement.
+     */
+    public void testPreparedBatches() {
+        JDBCAppender appender = createAppender();
+        appender.setBufferSize(3);
+        appender.activateOptions();
+        append(appender, "a'); drop table LOG; --");
+        append(appender, "b");
+        assertTrue(batches.isEmpty());
+        append(appender, "c");
+        append(appender, "d");
+        appender.close();
+
+        assertEquals(1, prepared.size());
+        assertEquals("insert into LOG (LEVEL, MSG) values (?, ?)", prepared.get(0));
+        assertEquals(2, batches.size());
+        assertEquals(new Integer(3), batches.get(0));
+        assertEquals(new Integer(1), batches.get(1));
+        List row = (List) rows.get(0);
+        assertEquals("INFO", row.get(0));
+        assertEquals("it's a'); drop table LOG; --", row.get(1));
+    }
+
+    /**
+     * Tests that a flusher thread sends the buffer once the flush
+     * interval has elapsed.
+     */
+    public void testFlushInterval() throws InterruptedException {
+        JDBCAppender appender = createAppender();
+        appender.setBufferSize(100);
+        appender.setFlushInterval(50);
+        assertEquals(50, appender.getFlushInterval());
+        appender.activateOptions();
+        append(appender, "a");
+        append(appender, "b");
+        synchronized (this) {
+            long deadline = System.currentTimeMillis() + 5000;
+            while (batches.isEmpty() && System.currentTimeMillis() < deadline) {
+                wait(100);
+            }
+        }
+        appender.close();
+        assertEquals(new Integer(2), batches.get(0));
+        assertNotSame(Thread.currentThread(), threads.get(0));
+        assertEquals(2, rows.size());
+    }
+}
@@ -0,0 +1,239 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.log4j.net;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.HashMap;
+import java.util.Map;
+
+import junit.framework.TestCase;
+import org.apache.log4j.Hierarchy;
+import org.apache.log4j.Level;
+import org.apache.log4j.Logger;
+import org.apache.log4j.VectorAppender;
+import org.apache.log4j.spi.LocationInfo;
+import org.apache.log4j.spi.LoggingEvent;
+import org.apache.log4j.spi.RootLogger;
+import org.apache.log4j.spi.ThrowableInformation;
+import org.apache.log4j.xml.XLevel;
+
+/**
+ * Tests for EventEncoder and EventDecoder.
+ */
+public class EventCodecTest extends TestCase {
+
+    public EventCodecTest(final String name) {
+        super(name);
+    }
+
+    private static LoggingEvent createEvent(final long timeStamp,
+                                            final Level level,
+                                            final String message,
+                                            final Map mdc) {
+        return new LoggingEvent(null, Logger.getLogger("org.example.Codec"),
+                timeStamp, level, message, "main",
+                new ThrowableInformation(new String[] { "java.lang.Exception: x",
+                                                        "\tat Foo.bar" }),
+                "ndc \u00e9t\u00e9",
+                new LocationInfo("Foo.java", "org.example.Foo", "bar", "12"),
+                mdc);
+    }
+
+    /**
+     * Tests that all the fields of an event survive a round trip.
+     */
+    public void testRoundTrip() throws IOException {
+        Map mdc = new HashMap();
+        mdc.put("user", "alice");
+        mdc.put("count", new Integer(3));
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        EventEncoder encoder = new EventEncoder(bytes);
+        encoder.write(createEvent(1000L, Level.WARN, "first", mdc), true);
+        encoder.write(createEvent(900L, XLevel.TRACE, "second", null), false);
+
+        EventDecoder decoder =
+                new EventDecoder(new ByteArrayInputStream(bytes.toByteArray()));
+        LoggingEvent event = decoder.read();
+        assertEquals(1000L, event.timeStamp);
+        assertEquals(Level.WARN, event.getLevel());
+        assertEquals("org.example.Codec", event.getLoggerName());
+        assertEquals("main", event.getThreadName());
+        assertEquals("first", event.getRenderedMessage());
+        assertEquals("ndc \u00e9t\u00e9", event.getNDC());
+        assertEquals("alice", event.getMDC("user"));
+        assertEquals("3", event.getMDC("count"));
+        String[] rep = event.getThrowableStrRep();
+        assertEquals(2, rep.length);
+        assertEquals("\tat Foo.bar", rep[1]);
+        LocationInfo location = event.getLocationInformation();
+        assertEquals("org.example.Foo", location.getClassName());
+        assertEquals("bar", location.getMethodName());
+        assertEquals("Foo.java", location.getFileName());
+        assertEquals("12", location.getLineNumber());
+
+        event = decoder.read();
+        assertEquals(900L, event.timeStamp);
+        assertSame(XLevel.TRACE, event.getLevel());
+        assertEquals("org.example.Codec", event.getLoggerName());
+        assertEquals("second", event.getRenderedMessage());
+        assertTrue(event.getProperties().isEmpty());
+        assertEquals("?", event.getLocationInformation().getClassName());
+
+        try {
+            decoder.read();
+            fail("Expected EOFException");
+        } catch(EOFException expected) {
+        }
+    }
+
+    /**
+     * Tests that recurring names are only sent once.
+     */
+    public void testNamesSentOnce() throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        EventEncoder encoder = new EventEncoder(bytes);
+        encoder.write(createEvent(1000L, Level.INFO, "m", null), true);
+        int first = bytes.size() - EventEncoder.HEADER_LENGTH;
+        encoder.write(createEvent(1000L, Level.INFO, "m", null), true);
+        int second = bytes.size() - EventEncoder.HEADER_LENGTH - first;
+        assertTrue(second < first - "org.example.Codec".length());
+    }
+
+    /**
+     * Tests that corrupt streams are rejected.
+     */
+    public void testCorruptInput() throws IOException {
+        try {
+            new EventDecoder(new ByteArrayInputStream(new byte[] { 0, 1, 2, 3, 4 }));
+            fail("Expected IOException");
+        } catch(IOException expected) {
+        }
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        new EventEncoder(bytes).write(createEvent(1L, Level.INFO, "m", null), true);
+        byte[] data = bytes.toByteArray();
+        int offset = EventEncoder.HEADER_LENGTH
+                + ((data[EventEncoder.HEADER_LENGTH] & 0x80) != 0 ? 2 : 1);
+        // a frame missing its last byte
+        try {
+            new EventDecoder().decode(data, offset, data.length - offset - 1);
+            fail("Expected IOException");
+        } catch(IOException expected) {
+        }
+        try {
+            new EventDecoder().decode(new byte[] { 0, 0, 20, 9 }, 0, 4);
+            fail("Expected IOException");
+        } catch(IOException expected) {
+        }
+    }
+
+    /**
+     * Tests that a level class name which does not name a Level is
+     * neither initialized nor used.
+     */
+    public void testLevelClassNotALevel() throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        EventEncoder encoder = new EventEncoder(bytes);
+        encoder.write(createEvent(1L, CodecLevel.CUSTOM, "m", null), true);
+        encoder.write(createEvent(2L, CodecLevel.CUSTOM, "m", null), true);
+        // the class name is sent once, as ASCII
+        byte[] data = bytes.toByteArray();
+        String s = new String(data, "ISO-8859-1");
+        int index = s.indexOf(CodecLevel.class.getName());
+        byte[] name = PlainClass.class.getName().getBytes("US-ASCII");
+        System.arraycopy(name, 0, data, index, name.length);
+
+        // without a context class loader classes are found by name
+        Thread thread = Thread.currentThread();
+        ClassLoader tcl = thread.getContextClassLoader();
+        thread.setContextClassLoader(null);
+        try {
+            EventDecoder decoder = new EventDecoder(new ByteArrayInputStream(data));
+            assertEquals(Level.WARN, decoder.read().getLevel());
+            assertEquals(Level.WARN, decoder.read().getLevel());
+        } finally {
+            thread.setContextClassLoader(tcl);
+        }
+        assertFalse(plainInitialized);
+    }
+
+    /**
+     * Tests that SocketNode recognizes events sent in the binary format.
+     */
+    public void testSocketNode() throws Exception {
+        ServerSocket server = new ServerSocket(0);
+        SocketAppender appender = new SocketAppender();
+        appender.setWireFormat(SocketAppender.BINARY_FORMAT);
+        assertEquals(SocketAppender.BINARY_FORMAT, appender.getWireFormat());
+        appender.setRemoteHost(InetAddress.getLocalHost().getHostAddress());
+        appender.setPort(server.getLocalPort());
+        appender.setReconnectionDelay(0);
+        appender.activateOptions();
+        Socket socket = server.accept();
+        server.close();
+
+        Hierarchy hierarchy = new Hierarchy(new RootLogger(Level.DEBUG));
+        VectorAppender vector = new VectorAppender();
+        hierarchy.getRootLogger().addAppender(vector);
+        Thread node = new Thread(new SocketNode(socket, hierarchy));
+        node.start();
+
+        appender.doAppend(createEvent(5L, Level.ERROR, "remote", null));
+        appender.close();
+        node.join(5000);
+        assertEquals(1, vector.getVector().size());
+        LoggingEvent event = (LoggingEvent) vector.getVector().elementAt(0);
+        assertEquals("remote", event.getRenderedMessage());
+        assertEquals("org.example.Codec", event.getLoggerName());
+    }
+
+    private static boolean plainInitialized;
+
+    /**
+     * Custom level sent by the encoder.
+     */
+    public static final class CodecLevel extends Level {
+        public static final CodecLevel CUSTOM = new CodecLevel(Level.WARN_INT, "CUSTOM", 4);
+
+        private CodecLevel(final int level, final String name, final int syslog) {
+            super(level, name, syslog);
+        }
+
+        public static Level toLevel(final int level) {
+            return CUSTOM;
+        }
+    }
+
+    /**
+     * Class with a name as long as CodecLevel which is not a Level.
+     */
+    public static final class PlainClass {
+        static {
+            plainInitialized = true;
+        }
+
+        public static Level toLevel(final int level) {
+            return Level.FATAL;
+        }
+    }
+}
@@ -16,9 +16,21 @@
  */
 package org.apache.log4j.net;
 
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.List;
+
 import junit.framework.TestCase;
+import org.apache.log4j.Level;
 import org.apache.log4j.LogManager;
 import org.apache.log4j.Logger;
+import org.apache.log4j.PatternLayout;
 import org.apache.log4j.spi.LoggingEvent;
 import org.apache.log4j.spi.TriggeringEventEvaluator;
 import org.apache.log4j.xml.DOMConfigurator;
@@ -27,14 +39,20 @@ import org.apache.log4j.xml.DOMConfigurator;
  * Tests for SMTPAppender.
  */
 public class SMTPAppenderTest extends TestCase {
+    private SmtpServer server;
+
     public SMTPAppenderTest(final String testName) {
         super(testName);
     }
 
     /**
-     * Reset configuration after every test.
+     * Stop the server and reset configuration after every test.
      */
-  public void tearDown() {
+  public void tearDown() throws Exception {
+      if (server != null) {
+          server.close();
+          server = null;
+      }
       LogManager.resetConfiguration();
   }
 
@@ -59,4 +77,187 @@ public class SMTPAppenderTest extends TestCase {
       TriggeringEventEvaluator evaluator = appender.getEvaluator();
       assertTrue(evaluator instanceof MockTriggeringEventEvaluator);
   }
+
+    /**
+     * Creates an asynchronous appender sending to the given server.
+     */
+  private static SMTPAppender createAppender(final SmtpServer server) {
+      SMTPAppender appender = new SMTPAppender();
+      appender.setLayout(new PatternLayout("%m%n"));
+      appender.setFrom("log4j@localhost");
+      appender.setTo("admin@localhost");
+      appender.setSMTPHost("localhost");
+      appender.setSMTPPort(server.getPort());
+      appender.setAsynchronous(true);
+      assertTrue(appender.getAsynchronous());
+      return appender;
+  }
+
+  private static void append(final SMTPAppender appender, final String message) {
+      appender.doAppend(new LoggingEvent(null, Logger.getLogger(SMTPAppenderTest.class),
+              Level.ERROR, message, null));
+  }
+
+    /**
+     * Tests that triggers fired within the digest interval are sent
+     * in a single e-mail.
+     */
+  public void testDigest() throws Exception {
+      server = new SmtpServer(0);
+      SMTPAppender appender = createAppender(server);
+      appender.setDigestInterval(1000);
+      appender.activateOptions();
+      append(appender, "alpha");
+      server.await(1);
+      append(appender, "beta");
+      append(appender, "gamma");
+      server.await(2);
+      appender.close();
+      server.close();
+
+      List messages = server.getMessages();
+      assertEquals(2, messages.size());
+      String first = (String) messages.get(0);
+      String second = (String) messages.get(1);
+      assertTrue(first.indexOf("alpha") >= 0);
+      assertTrue(first.indexOf("beta") < 0);
+      assertTrue(second.indexOf("beta") >= 0);
+      assertTrue(second.indexOf("gamma") >= 0);
+  }
+
+    /**
+     * Tests that logging does not wait for a slow server and that
+     * pending e-mails are sent when the appender is closed.
+     */
+  public void testSlowServer() throws Exception {
+      server = new SmtpServer(2000);
+      SMTPAppender appender = createAppender(server);
+      appender.activateOptions();
+      long start = System.currentTimeMillis();
+      append(appender, "alpha");
+      append(appender, "beta");
+      assertTrue(System.currentTimeMillis() - start < 1000);
+      appender.close();
+      server.close();
+
+      List messages = server.getMessages();
+      assertFalse(messages.isEmpty());
+      String last = (String) messages.get(messages.size() - 1);
+      assertTrue(last.indexOf("beta") >= 0);
+  }
+
+    /**
+     * Minimal SMTP server recording the data of the messages it receives.
+     */
+  private static final class SmtpServer implements Runnable {
+      private final ServerSocket serverSocket;
+      private final long delay;
+      private final List messages = new ArrayList();
+      private final Thread thread;
+      private Socket client;
+
+      public SmtpServer(final long delay) throws IOException {
+          this.delay = delay;
+          serverSocket = new ServerSocket(0);
+          thread = new Thread(this, "SmtpServer");
+          thread.setDaemon(true);
+          thread.start();
+      }
+
+      public int getPort() {
+          return serverSocket.getLocalPort();
+      }
+
+      public void run() {
+          try {
+              while (true) {
+                  Socket socket = serverSocket.accept();
+                  synchronized (this) {
+                      if (serverSocket.isClosed()) {
+                          socket.close();
+                          return;
+                      }
+                      client = socket;
+                  }
+                  try {
+                      serve(socket);
+                  } catch (IOException e) {
+                  } finally {
+                      socket.close();
+                  }
+              }
+          } catch (IOException closed) {
+          }
+      }
+
+      private void serve(final Socket socket) throws IOException {
+          BufferedReader in = new BufferedReader(
+                  new InputStreamReader(socket.getInputStream(), "US-ASCII"));
+          Writer out = new OutputStreamWriter(socket.getOutputStream(), "US-ASCII");
+          if (delay > 0) {
+              try {
+                  Thread.sleep(delay);
+              } catch (InterruptedException e) {
+                  Thread.currentThread().interrupt();
+              }
+          }
+          reply(out, "220 localhost");
+          String line;
+          while ((line = in.readLine()) != null) {
+              String command = line.toUpperCase();
+              if (command.startsWith("DATA")) {
+                  reply(out, "354 go ahead");
+                  StringBuffer data = new StringBuffer();
+                  while ((line = in.readLine()) != null && !".".equals(line)) {
+                      data.append(line).append('\n');
+                  }
+                  synchronized (messages) {
+                      messages.add(data.toString());
+                      messages.notifyAll();
+                  }
+                  reply(out, "250 OK");
+              } else if (command.startsWith("QUIT")) {
+                  reply(out, "221 bye");
+                  return;
+              } else {
+                  reply(out, "250 OK");
+              }
+          }
+      }
+
+      private static void reply(final Writer out, final String reply) throws IOException {
+          out.write(reply);
+          out.write("\r\n");
+          out.flush();
+      }
+
+      public void await(final int count) throws InterruptedException {
+          long deadline = System.currentTimeMillis() + 10000;
+          synchronized (messages) {
+              while (messages.size() < count) {
+                  long wait = deadline - System.currentTimeMillis();
+                  if (wait <= 0) {
+                      return;
+                  }
+                  messages.wait(wait);
+              }
+          }
+      }
+
+      public List getMessages() {
+          synchronized (messages) {
+              return new ArrayList(messages);
+          }
+      }
+
+      public void close() throws IOException, InterruptedException {
+          synchronized (this) {
+              serverSocket.close();
+              if (client != null) {
+                  client.close();
+              }
+          }
+          thread.join();
+      }
+  }
 }
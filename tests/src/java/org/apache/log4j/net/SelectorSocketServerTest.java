@@ -0,0 +1,195 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.log4j.net;
+
+import java.net.InetAddress;
+import java.util.ArrayList;
+import java.util.List;
+
+import junit.framework.TestCase;
+import org.apache.log4j.AppenderSkeleton;
+import org.apache.log4j.Hierarchy;
+import org.apache.log4j.Level;
+import org.apache.log4j.Logger;
+import org.apache.log4j.spi.LoggingEvent;
+import org.apache.log4j.spi.RootLogger;
+
+/**
+ * Tests for SelectorSocketServer.
+ */
+public class SelectorSocketServerTest extends TestCase {
+
+    private Hierarchy hierarchy;
+    private ListAppender received;
+    private SelectorSocketServer server;
+    private Thread thread;
+
+    public SelectorSocketServerTest(final String name) {
+        super(name);
+    }
+
+    protected void setUp() throws Exception {
+        hierarchy = new Hierarchy(new RootLogger(Level.DEBUG));
+        received = new ListAppender();
+        hierarchy.getRootLogger().addAppender(received);
+        server = new SelectorSocketServer(0, hierarchy, 2);
+        thread = new Thread(server);
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    protected void tearDown() throws InterruptedException {
+        server.close();
+        thread.join();
+    }
+
+    private SocketAppender createAppender(final String wireFormat) throws Exception {
+        SocketAppender appender = new SocketAppender();
+        appender.setWireFormat(wireFormat);
+        appender.setRemoteHost(InetAddress.getLocalHost().getHostAddress());
+        appender.setPort(server.getLocalPort());
+        appender.setReconnectionDelay(0);
+        appender.activateOptions();
+        return appender;
+    }
+
+    private static void send(final SocketAppender appender, final String message) {
+        appender.doAppend(new LoggingEvent(null, Logger.getLogger("org.example.Remote"),
+                Level.INFO, message, null));
+    }
+
+    /**
+     * Tests that events of several clients, in either format, are logged.
+     */
+    public void testClients() throws Exception {
+        SocketAppender binary1 = createAppender(SocketAppender.BINARY_FORMAT);
+        SocketAppender binary2 = createAppender(SocketAppender.BINARY_FORMAT);
+        SocketAppender serialized = createAppender(SocketAppender.SERIALIZED_FORMAT);
+        send(binary1, "one");
+        send(binary2, "two");
+        send(serialized, "three");
+        received.await(3);
+        binary1.close();
+        binary2.close();
+        serialized.close();
+        List messages = received.getMessages();
+        assertEquals(3, messages.size());
+        assertTrue(messages.contains("one"));
+        assertTrue(messages.contains("two"));
+        assertTrue(messages.contains("three"));
+    }
+
+    /**
+     * Tests that closing the server ends the threads serving clients
+     * sending serialized events.
+     */
+    public void testCloseEndsSerializedClients() throws Exception {
+        SocketAppender serialized = createAppender(SocketAppender.SERIALIZED_FORMAT);
+        send(serialized, "one");
+        received.await(1);
+        String name = "SelectorSocketServer-" + server.getLocalPort();
+        assertTrue(isAlive(name));
+        server.close();
+        thread.join(5000);
+        assertFalse(thread.isAlive());
+        assertFalse(isAlive(name));
+        serialized.close();
+    }
+
+    private static boolean isAlive(final String name) {
+        Thread[] threads = new Thread[Thread.activeCount() + 10];
+        int count = Thread.enumerate(threads);
+        for (int i = 0; i < count; i++) {
+            if (name.equals(threads[i].getName())) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Tests that the events of a client are logged in order when
+     * reading is suspended to apply back pressure.
+     */
+    public void testBackPressure() throws Exception {
+        server.setMaxPendingBytes(64);
+        received.setDelay(1);
+        SocketAppender appender = createAppender(SocketAppender.BINARY_FORMAT);
+        for (int i = 0; i < 200; i++) {
+            send(appender, String.valueOf(i));
+        }
+        received.await(200);
+        appender.close();
+        List messages = received.getMessages();
+        assertEquals(200, messages.size());
+        for (int i = 0; i < 200; i++) {
+            assertEquals(String.valueOf(i), messages.get(i));
+        }
+    }
+
+    /**
+     * Appender collecting the messages it receives.
+     */
+    private static final class ListAppender extends AppenderSkeleton {
+        private final List messages = new ArrayList();
+        private long delay;
+
+        public void setDelay(final long delay) {
+            this.delay = delay;
+        }
+
+        protected void append(final LoggingEvent event) {
+            if (delay > 0) {
+                try {
+                    Thread.sleep(delay);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            synchronized (messages) {
+                messages.add(event.getRenderedMessage());
+                messages.notifyAll();
+            }
+        }
+
+        public void await(final int count) throws InterruptedException {
+            long deadline = System.currentTimeMillis() + 10000;
+            synchronized (messages) {
+                while (messages.size() < count) {
+                    long wait = deadline - System.currentTimeMillis();
+                    if (wait <= 0) {
+                        return;
+                    }
+                    messages.wait(wait);
+                }
+            }
+        }
+
+        public List getMessages() {
+            synchronized (messages) {
+                return new ArrayList(messages);
+            }
+        }
+
+        public boolean requiresLayout() {
+            return false;
+        }
+
+        public void close() {
+        }
+    }
+}
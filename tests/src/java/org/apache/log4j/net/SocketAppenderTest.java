@@ -16,9 +16,16 @@
  */
 package org.apache.log4j.net;
 
+import java.net.InetAddress;
+import java.net.ServerSocket;
+
 import junit.framework.TestCase;
 import org.apache.log4j.AppenderSkeleton;
+import org.apache.log4j.Hierarchy;
+import org.apache.log4j.Level;
 import org.apache.log4j.Logger;
+import org.apache.log4j.VectorAppender;
+import org.apache.log4j.spi.RootLogger;
 import org.apache.log4j.spi.LoggingEvent;
 import org.apache.log4j.xml.DOMConfigurator;
 
@@ -54,6 +61,73 @@ public class SocketAppenderTest extends TestCase {
         assertEquals("SocketAppender with FallbackErrorHandler", msg, secondary.getLastMessage());
     }
 
+    /**
+     * Tests that events queued while the server is down are sent
+     * once it is up, in either wire format.
+     */
+    public void testBufferedEventsResent() throws Exception {
+        assertResent(SocketAppender.BINARY_FORMAT);
+        assertResent(SocketAppender.SERIALIZED_FORMAT);
+    }
+
+    private void assertResent(final String wireFormat) throws Exception {
+        ServerSocket probe = new ServerSocket(0);
+        int port = probe.getLocalPort();
+        probe.close();
+
+        SocketAppender appender = new SocketAppender();
+        appender.setRemoteHost(InetAddress.getLocalHost().getHostAddress());
+        appender.setPort(port);
+        appender.setWireFormat(wireFormat);
+        appender.setReconnectionDelay(100);
+        appender.setBufferSize(16);
+        assertEquals(16, appender.getBufferSize());
+        appender.activateOptions();
+        for (int i = 0; i < 3; i++) {
+            appender.doAppend(new LoggingEvent(null, logger, Level.INFO,
+                    String.valueOf(i), null));
+        }
+
+        Hierarchy hierarchy = new Hierarchy(new RootLogger(Level.DEBUG));
+        VectorAppender received = new VectorAppender();
+        hierarchy.getRootLogger().addAppender(received);
+        SelectorSocketServer server = new SelectorSocketServer(port, hierarchy, 1);
+        new Thread(server).start();
+        try {
+            for (int i = 0; i < 100 && received.getVector().size() < 3; i++) {
+                Thread.sleep(100);
+            }
+            appender.close();
+            assertEquals(3, received.getVector().size());
+            for (int i = 0; i < 3; i++) {
+                LoggingEvent event = (LoggingEvent) received.getVector().elementAt(i);
+                assertEquals(String.valueOf(i), event.getRenderedMessage());
+            }
+        } finally {
+            server.close();
+        }
+    }
+
+    /**
+     * Tests that closing an appender whose host does not answer does
+     * not wait for the connection attempt of the operating system.
+     */
+    public void testCloseWhileConnecting() throws Exception {
+        SocketAppender appender = new SocketAppender();
+        // reserved for documentation, never routed
+        appender.setRemoteHost("192.0.2.1");
+        appender.setPort(4560);
+        appender.setReconnectionDelay(100);
+        appender.setBufferSize(16);
+        appender.activateOptions();
+        appender.doAppend(new LoggingEvent(null, logger, Level.INFO, "lost", null));
+        Thread.sleep(100);
+        long start = System.currentTimeMillis();
+        appender.close();
+        assertTrue(System.currentTimeMillis() - start
+                < SocketAppender.CLOSE_TIMEOUT + 2000);
+    }
+
     /* Fields */
 
     private static Logger logger;
@@ -0,0 +1,185 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.log4j.net;
+
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.net.ConnectException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+
+import junit.framework.TestCase;
+import org.apache.log4j.Level;
+import org.apache.log4j.Logger;
+import org.apache.log4j.spi.LoggingEvent;
+
+/**
+ * Tests for SocketHubAppender.
+ */
+public class SocketHubAppenderTest extends TestCase {
+
+    private SocketHubAppender appender;
+    private int port;
+
+    public SocketHubAppenderTest(final String name) {
+        super(name);
+    }
+
+    protected void setUp() throws IOException {
+        ServerSocket probe = new ServerSocket(0);
+        port = probe.getLocalPort();
+        probe.close();
+        appender = new SocketHubAppender();
+        appender.setPort(port);
+    }
+
+    protected void tearDown() {
+        appender.close();
+    }
+
+    private void append(final String message) {
+        appender.doAppend(new LoggingEvent(null, Logger.getLogger(SocketHubAppenderTest.class),
+                Level.INFO, message, null));
+    }
+
+    private Socket connect(final int receiveBufferSize) throws Exception {
+        // the server socket is opened by the monitor thread
+        for (int i = 0; ; i++) {
+            Socket socket = new Socket();
+            if (receiveBufferSize > 0) {
+                socket.setReceiveBufferSize(receiveBufferSize);
+            }
+            try {
+                socket.connect(new InetSocketAddress(InetAddress.getLocalHost(), port), 5000);
+                socket.setSoTimeout(5000);
+                return socket;
+            } catch (ConnectException e) {
+                socket.close();
+                if (i == 50) {
+                    throw e;
+                }
+                Thread.sleep(100);
+            }
+        }
+    }
+
+    /**
+     * Tests that every client receives the events logged once it is
+     * connected, in order.
+     */
+    public void testFanOut() throws Exception {
+        appender.activateOptions();
+        Socket socket1 = connect(0);
+        Socket socket2 = connect(0);
+        // the stream header is sent once the client is registered
+        ObjectInputStream in1 = new ObjectInputStream(new BufferedInputStream(socket1.getInputStream()));
+        ObjectInputStream in2 = new ObjectInputStream(new BufferedInputStream(socket2.getInputStream()));
+        for (int i = 0; i < 10; i++) {
+            append(String.valueOf(i));
+        }
+        for (int i = 0; i < 10; i++) {
+            assertEquals(String.valueOf(i), ((LoggingEvent) in1.readObject()).getRenderedMessage());
+            assertEquals(String.valueOf(i), ((LoggingEvent) in2.readObject()).getRenderedMessage());
+        }
+        socket1.close();
+        socket2.close();
+    }
+
+    /**
+     * Tests that the cached events are sent to new clients.
+     */
+    public void testCachedEvents() throws Exception {
+        appender.setBufferSize(2);
+        appender.activateOptions();
+        append("a");
+        append("b");
+        append("c");
+        Socket socket = connect(0);
+        ObjectInputStream in = new ObjectInputStream(socket.getInputStream());
+        append("d");
+        assertEquals("b", ((LoggingEvent) in.readObject()).getRenderedMessage());
+        assertEquals("c", ((LoggingEvent) in.readObject()).getRenderedMessage());
+        assertEquals("d", ((LoggingEvent) in.readObject()).getRenderedMessage());
+        socket.close();
+    }
+
+    /**
+     * Tests that a client which does not read neither blocks logging
+     * nor stays connected with the disconnect policy.
+     */
+    public void testSlowClientDisconnected() throws Exception {
+        appender.setClientBufferSize(16);
+        appender.setSlowClientPolicy(SocketHubAppender.DISCONNECT_POLICY);
+        assertEquals(SocketHubAppender.DISCONNECT_POLICY, appender.getSlowClientPolicy());
+        appender.activateOptions();
+        Socket socket = connect(4096);
+        ObjectInputStream in = new ObjectInputStream(socket.getInputStream());
+
+        StringBuffer message = new StringBuffer();
+        for (int i = 0; i < 10000; i++) {
+            message.append('x');
+        }
+        long start = System.currentTimeMillis();
+        for (int i = 0; i < 1000; i++) {
+            append(message.toString());
+        }
+        assertTrue(System.currentTimeMillis() - start < 5000);
+
+        int received = 0;
+        try {
+            while (true) {
+                in.readObject();
+                received++;
+            }
+        } catch (IOException expected) {
+        }
+        assertTrue(received < 1000);
+        socket.close();
+    }
+
+    /**
+     * Tests that closing the appender while a client is connecting
+     * does not wait for the lock on the appender held by close().
+     */
+    public void testCloseWhileConnecting() throws Exception {
+        appender.activateOptions();
+        final Exception[] failure = new Exception[1];
+        Thread closer = new Thread() {
+            public void run() {
+                synchronized (appender) {
+                    try {
+                        Socket socket = connect(0);
+                        // let the monitor accept the client
+                        Thread.sleep(500);
+                        appender.close();
+                        socket.close();
+                    } catch (Exception e) {
+                        failure[0] = e;
+                    }
+                }
+            }
+        };
+        closer.setDaemon(true);
+        closer.start();
+        closer.join(5000);
+        assertFalse(closer.isAlive());
+        assertNull(failure[0]);
+    }
+}
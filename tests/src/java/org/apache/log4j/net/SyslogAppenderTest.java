@@ -29,8 +29,11 @@ import org.apache.log4j.VectorErrorHandler;
 import org.apache.log4j.HTMLLayout;
 
 import java.util.StringTokenizer;
+import java.io.DataInputStream;
 import java.net.DatagramSocket;
 import java.net.DatagramPacket;
+import java.net.ServerSocket;
+import java.net.Socket;
 import java.text.SimpleDateFormat;
 import java.util.Locale;
 import java.util.Date;
@@ -682,4 +685,95 @@ public class SyslogAppenderTest extends TestCase {
       assertEquals(msg, rcvbuf.toString());
     }
 
+    /**
+     * Reads an octet-counted message.
+     */
+    private static String readFrame(final DataInputStream in) throws Exception {
+        int length = 0;
+        int c;
+        while ((c = in.read()) != ' ') {
+            assertTrue(c >= '0' && c <= '9');
+            length = length * 10 + c - '0';
+        }
+        byte[] message = new byte[length];
+        in.readFully(message);
+        return new String(message, "UTF-8");
+    }
+
+    /**
+     * Tests that RFC 5424 messages are sent over TCP with
+     * octet-counting framing.
+     * @throws Exception if exception during test.
+     */
+    public void testTcpLogging() throws Exception {
+      ServerSocket server = new ServerSocket(0);
+      SyslogAppender appender = new SyslogAppender();
+      appender.setSyslogHost("localhost:" + server.getLocalPort());
+      appender.setProtocol("TCP");
+      assertEquals(SyslogAppender.TCP_PROTOCOL, appender.getProtocol());
+      appender.setName("name");
+      appender.setTag("app");
+      appender.setLayout(new PatternLayout("%m"));
+      appender.activateOptions();
+
+      Logger l = Logger.getRootLogger();
+      l.addAppender(appender);
+      l.info("greetings \u00e9");
+      l.error("failure", new MishandledException());
+      appender.close();
+
+      server.setSoTimeout(2000);
+      Socket socket = server.accept();
+      socket.setSoTimeout(2000);
+      DataInputStream in = new DataInputStream(socket.getInputStream());
+      String first = readFrame(in);
+      String second = readFrame(in);
+      assertEquals(-1, in.read());
+      socket.close();
+      server.close();
+
+      assertTrue(first, first.matches(
+              "<14>1 \\d{4}-\\d\\d-\\d\\dT\\d\\d:\\d\\d:\\d\\d\\.\\d{3}Z \\S+ app - - - greetings \u00e9"));
+      assertTrue(second, second.startsWith("<11>1 "));
+      assertTrue(second.indexOf(" app - - - failure") > 0);
+      assertTrue(second.indexOf("No tab here") > 0);
+    }
+
+    private static Thread findThread(final String name) {
+        Thread[] threads = new Thread[Thread.activeCount() + 10];
+        int count = Thread.enumerate(threads);
+        for (int i = 0; i < count; i++) {
+            if (name.equals(threads[i].getName())) {
+                return threads[i];
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Tests that the TCP sender survives a syslog host which cannot
+     * be resolved.
+     * @throws Exception if exception during test.
+     */
+    public void testTcpUnknownHost() throws Exception {
+      SyslogAppender appender = new SyslogAppender();
+      appender.setSyslogHost("no-such-host.invalid:1514");
+      appender.setProtocol(SyslogAppender.TCP_PROTOCOL);
+      appender.setReconnectionDelay(60000);
+      appender.setLayout(new PatternLayout("%m"));
+      appender.activateOptions();
+
+      Logger l = Logger.getRootLogger();
+      l.addAppender(appender);
+      l.info("greetings");
+      Thread.sleep(500);
+      Thread sender = findThread("SyslogAppender-sender");
+      assertNotNull(sender);
+      assertTrue(sender.isAlive());
+      long start = System.currentTimeMillis();
+      appender.close();
+      assertTrue(System.currentTimeMillis() - start < 10000);
+      assertFalse(sender.isAlive());
+    }
+
 }
@@ -187,6 +187,51 @@ public class ORTestCase extends TestCase {
     assertEquals(r, xor);
   }
 
+  // Get: B, then add: X
+  // Expect: default, then X
+  public
+  void test11() {
+    RendererMap map = new RendererMap();
+    assertEquals(map.get(B.class), map.getDefaultRenderer());
+    assertEquals(map.get(B.class), map.getDefaultRenderer());
+    map.put(X.class, xor);
+    assertEquals(map.get(B.class), xor);
+    assertEquals(map.get(B.class), xor);
+    map.put(A.class, aor);
+    assertEquals(map.get(B.class), aor);
+  }
+
+  // Add: Number, get: Integer, clear
+  // Expect: Number, then default
+  public
+  void test12() {
+    RendererMap map = new RendererMap();
+    map.put(Number.class, nor);
+    assertEquals(map.get(Integer.class), nor);
+    map.clear();
+    assertEquals(map.get(Integer.class), map.getDefaultRenderer());
+  }
+
+  // Get: Integer, add: Integer while searching
+  // Expect: Integer on the next get
+  public
+  void test13() {
+    RendererMap map = new RendererMap() {
+      boolean searched = false;
+      ObjectRenderer search(Class clazz) {
+        ObjectRenderer r = super.search(clazz);
+        if(!searched) {
+          searched = true;
+          put(Integer.class, ior);
+        }
+        return r;
+      }
+    };
+    map.put(Comparable.class, cor);
+    assertEquals(map.get(Integer.class), cor);
+    assertEquals(map.get(Integer.class), ior);
+  }
+
 
 
 
@@ -204,6 +249,9 @@ public class ORTestCase extends TestCase {
     suite.addTest(new ORTestCase("test8"));
     suite.addTest(new ORTestCase("test9"));
     suite.addTest(new ORTestCase("test10"));
+    suite.addTest(new ORTestCase("test11"));
+    suite.addTest(new ORTestCase("test12"));
+    suite.addTest(new ORTestCase("test13"));
     return suite;
   }
 
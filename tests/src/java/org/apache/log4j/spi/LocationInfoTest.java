@@ -82,4 +82,76 @@ public class LocationInfoTest extends TestCase {
          assertEquals("getInfo", li.getMethodName());
      }
 
+    /**
+     * Returns the cached location of its caller.
+     * @return location info.
+     */
+    private static LocationInfo getCachedInfo() {
+        return LocationInfo.getLocationInfo(new Throwable(), LocationInfoTest.class.getName());
+    }
+
+    /**
+     * Class calling a method of LocationInfoTest from a fixed call site.
+     */
+    private static class CachedCaller {
+        /**
+         * @return location info of the call site.
+         */
+        public static LocationInfo getInfo() {
+            return getCachedInfo();
+        }
+    }
+
+    /**
+     * Tests that getLocationInfo resolves the caller once per call site.
+     */
+    public void testGetLocationInfo() {
+        LocationInfo li = CachedCaller.getInfo();
+        assertEquals(CachedCaller.class.getName(), li.getClassName());
+        assertEquals("getInfo", li.getMethodName());
+        assertEquals("LocationInfoTest.java", li.getFileName());
+        assertSame(li, CachedCaller.getInfo());
+    }
+
+    /**
+     * Returns the location of its caller found from the current thread.
+     * @return location info.
+     */
+    private static LocationInfo getWalkedInfo() {
+        return LocationInfo.getLocationInfo(LocationInfoTest.class.getName());
+    }
+
+    /**
+     * Class calling a method of LocationInfoTest without a Throwable.
+     */
+    private static class WalkingCaller {
+        /**
+         * @return location info of the call site.
+         */
+        public static LocationInfo getInfo() {
+            return getWalkedInfo();
+        }
+    }
+
+    /**
+     * Tests that getLocationInfo finds the caller from the current thread
+     * as it does from a Throwable.
+     */
+    public void testGetLocationInfoWithoutThrowable() {
+        LocationInfo li = WalkingCaller.getInfo();
+        assertEquals(WalkingCaller.class.getName(), li.getClassName());
+        assertEquals("getInfo", li.getMethodName());
+        assertEquals("LocationInfoTest.java", li.getFileName());
+        assertSame(li, WalkingCaller.getInfo());
+    }
+
+    /**
+     * Tests that getLocationInfo returns unavailable information
+     * when the class is not on the stack.
+     */
+    public void testGetLocationInfoNotCalled() {
+        LocationInfo li = LocationInfo.getLocationInfo("org.example.NotCalled");
+        assertEquals(LocationInfo.NA, li.getClassName());
+    }
+
 }
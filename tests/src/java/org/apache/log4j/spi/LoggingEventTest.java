@@ -19,7 +19,9 @@ package org.apache.log4j.spi;
 
 import junit.framework.TestCase;
 
+import org.apache.log4j.AppenderSkeleton;
 import org.apache.log4j.Level;
+import org.apache.log4j.LogEventBase;
 import org.apache.log4j.Logger;
 import org.apache.log4j.MDC;
 import org.apache.log4j.NDC;
@@ -267,5 +269,54 @@ public class LoggingEventTest extends TestCase {
         event.getRenderedMessage();
     }
 
+    /**
+     * Tests that events are recycled when reuse is enabled, that
+     * immutable copies are not, and that a logging request issued from
+     * within an appender gets an event of its own.
+     */
+    public void testReuseEvents() {
+        final java.util.List seen = new java.util.ArrayList();
+        final java.util.List kept = new java.util.ArrayList();
+        final Logger logger = Logger.getLogger("org.example.reuse");
+        logger.setAdditivity(false);
+        logger.addAppender(new AppenderSkeleton() {
+            protected void append(final LoggingEvent event) {
+                seen.add(event);
+                kept.add(event.toImmutable());
+                if ("outer".equals(event.getMessage())) {
+                    logger.info("inner");
+                    assertEquals("outer", event.getMessage());
+                }
+            }
+            public void close() {
+            }
+            public boolean requiresLayout() {
+                return false;
+            }
+        });
+        LogEventBase.setReuseEvents(true);
+        try {
+            NDC.clear();
+            NDC.push("ndc");
+            logger.info("first");
+            logger.info("outer");
+            NDC.clear();
+        } finally {
+            LogEventBase.setReuseEvents(false);
+            logger.removeAllAppenders();
+        }
+        assertEquals(3, seen.size());
+        LoggingEvent first = (LoggingEvent) seen.get(0);
+        assertTrue(first.isReusable());
+        assertSame(first, seen.get(1));
+        assertNotSame(first, seen.get(2));
+        assertNull(first.getMessage());
 
+        assertEquals("first", ((LoggingEvent) kept.get(0)).getMessage());
+        assertEquals("ndc", ((LoggingEvent) kept.get(0)).getNDC());
+        assertEquals("outer", ((LoggingEvent) kept.get(1)).getMessage());
+        assertEquals("inner", ((LoggingEvent) kept.get(2)).getMessage());
+        assertFalse(((LoggingEvent) kept.get(0)).isReusable());
+        assertSame(seen.get(2), kept.get(2));
+    }
 }
@@ -0,0 +1,156 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.log4j.varia;
+
+import java.util.Properties;
+
+import junit.framework.TestCase;
+import org.apache.log4j.Level;
+import org.apache.log4j.LogManager;
+import org.apache.log4j.Logger;
+import org.apache.log4j.VectorAppender;
+
+/**
+ * Tests for ReloadingPropertyConfigurator.
+ */
+public class ReloadingPropertyConfiguratorTest extends TestCase {
+
+    public ReloadingPropertyConfiguratorTest(final String name) {
+        super(name);
+    }
+
+    public void tearDown() {
+        LogManager.resetConfiguration();
+    }
+
+    private static Properties baseProperties() {
+        Properties props = new Properties();
+        props.put("log4j.rootLogger", "WARN, A1");
+        props.put("log4j.appender.A1", VectorAppender.class.getName());
+        props.put("log4j.logger.org.example", "DEBUG");
+        return props;
+    }
+
+    /**
+     * A change of level must leave running appenders untouched.
+     */
+    public void testLevelChangeKeepsAppenders() {
+        ReloadingPropertyConfigurator configurator = new ReloadingPropertyConfigurator();
+        Properties props = baseProperties();
+        configurator.doConfigure(props, LogManager.getLoggerRepository());
+        Logger root = Logger.getRootLogger();
+        VectorAppender a1 = (VectorAppender) root.getAppender("A1");
+        assertNotNull(a1);
+        assertEquals(Level.WARN, root.getLevel());
+
+        props.put("log4j.rootLogger", "ERROR, A1");
+        props.put("log4j.logger.org.example", "INFO");
+        configurator.doConfigure(props, LogManager.getLoggerRepository());
+        assertEquals(Level.ERROR, root.getLevel());
+        assertEquals(Level.INFO, Logger.getLogger("org.example").getLevel());
+        assertSame(a1, root.getAppender("A1"));
+        assertFalse(a1.isClosed());
+    }
+
+    /**
+     * A changed appender definition must replace and close the old
+     * instance.
+     */
+    public void testAppenderChangeReplacesAppender() {
+        ReloadingPropertyConfigurator configurator = new ReloadingPropertyConfigurator();
+        Properties props = baseProperties();
+        props.put("log4j.logger.org.example", "DEBUG, A1");
+        props.put("log4j.additivity.org.example", "false");
+        configurator.doConfigure(props, LogManager.getLoggerRepository());
+        Logger root = Logger.getRootLogger();
+        Logger example = Logger.getLogger("org.example");
+        VectorAppender a1 = (VectorAppender) root.getAppender("A1");
+        assertSame(a1, example.getAppender("A1"));
+
+        props.put("log4j.appender.A1.threshold", "ERROR");
+        configurator.doConfigure(props, LogManager.getLoggerRepository());
+        VectorAppender replacement = (VectorAppender) root.getAppender("A1");
+        assertNotSame(a1, replacement);
+        assertSame(replacement, example.getAppender("A1"));
+        assertEquals(Level.ERROR, replacement.getThreshold());
+        assertTrue(a1.isClosed());
+        assertFalse(example.getAdditivity());
+    }
+
+    /**
+     * A change of a variable used by an appender definition must replace
+     * the appender even though its own entries are unchanged.
+     */
+    public void testSubstitutedVariableChange() {
+        ReloadingPropertyConfigurator configurator = new ReloadingPropertyConfigurator();
+        Properties props = baseProperties();
+        props.put("a1.threshold", "INFO");
+        props.put("log4j.appender.A1.threshold", "${a1.threshold}");
+        configurator.doConfigure(props, LogManager.getLoggerRepository());
+        Logger root = Logger.getRootLogger();
+        VectorAppender a1 = (VectorAppender) root.getAppender("A1");
+        assertEquals(Level.INFO, a1.getThreshold());
+
+        props.put("a1.threshold", "ERROR");
+        configurator.doConfigure(props, LogManager.getLoggerRepository());
+        VectorAppender replacement = (VectorAppender) root.getAppender("A1");
+        assertNotSame(a1, replacement);
+        assertEquals(Level.ERROR, replacement.getThreshold());
+        assertTrue(a1.isClosed());
+    }
+
+    /**
+     * A change of a variable used by a logger entry must change the
+     * level of the logger.
+     */
+    public void testSubstitutedLevelChange() {
+        ReloadingPropertyConfigurator configurator = new ReloadingPropertyConfigurator();
+        Properties props = baseProperties();
+        props.put("example.level", "DEBUG");
+        props.put("log4j.logger.org.example", "${example.level}");
+        configurator.doConfigure(props, LogManager.getLoggerRepository());
+        Logger example = Logger.getLogger("org.example");
+        assertEquals(Level.DEBUG, example.getLevel());
+
+        props.put("example.level", "ERROR");
+        configurator.doConfigure(props, LogManager.getLoggerRepository());
+        assertEquals(Level.ERROR, example.getLevel());
+    }
+
+    /**
+     * Removing an entry must restore the inherited level and detach the
+     * appenders it added.
+     */
+    public void testRemovedLogger() {
+        ReloadingPropertyConfigurator configurator = new ReloadingPropertyConfigurator();
+        Properties props = baseProperties();
+        props.put("log4j.logger.org.example", "DEBUG, A2");
+        props.put("log4j.appender.A2", VectorAppender.class.getName());
+        configurator.doConfigure(props, LogManager.getLoggerRepository());
+        Logger example = Logger.getLogger("org.example");
+        VectorAppender a2 = (VectorAppender) example.getAppender("A2");
+        assertNotNull(a2);
+
+        props.remove("log4j.logger.org.example");
+        configurator.doConfigure(props, LogManager.getLoggerRepository());
+        assertNull(example.getLevel());
+        assertNull(example.getAppender("A2"));
+        assertTrue(a2.isClosed());
+        assertFalse(((VectorAppender) Logger.getRootLogger().getAppender("A1")).isClosed());
+    }
+}